@@ -1,88 +1,99 @@
 
-import ilog.concert.*;
-import ilog.cplex.*;
+/*
+ * Usage: java [-Dsolver=java] B0 [file (deadline | -sweep [step])]
+ * Solves the project crashing problem with cplex, or with the Java solver if
+ * solver is set to java. See LinearSolver. Without a file the project of the
+ * exercise is solved with a deadline of 23 days; otherwise the project in the
+ * file (see ProjectCrashing) is solved for the deadline, or for every
+ * deadline from the shortest to the cheapest length of the project, in steps
+ * of step (1 by default), which prints the trade-off between time and cost.
+ */
+import java.io.IOException;
+import java.util.ArrayList;
 
 public class B0 {
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			solveExercise();
+			return;
+		}
+		if (args.length < 2) {
+			System.out.println("Usage: java [-Dsolver=java] B0 [file (deadline | -sweep [step])]");
+			return;
+		}
+		ProjectCrashing project = new ProjectCrashing(args[0]);
 		try {
-			// initializes a new cplex object
-			IloCplex cplex = new IloCplex();
+			long startTime = System.currentTimeMillis();
+			if (args[1].equals("-sweep")) {
+				double step = (args.length > 2) ? Double.parseDouble(args[2]) : 1;
+				if (!(step > 0)) {
+					System.out.println("The step of -sweep must be more than 0");
+					System.out.println("Usage: java [-Dsolver=java] B0 [file (deadline | -sweep [step])]");
+					return;
+				}
+				ArrayList<double[]> curve = project.sweep(step);
+				System.out.println("Deadline\tCost");
+				for (double[] point : curve) {
+					System.out.println(point[0] + "\t" + point[1]);
+				}
+			} else {
+				double deadline = Double.parseDouble(args[1]);
+				if (!project.solve(deadline)) {
+					System.out.println("The project cannot finish within " + deadline + ", it takes at least "
+							+ project.getProjectLength(true));
+					return;
+				}
+				System.out.println("Value" + project.getObjValue() + "\n");
+				for (int i = 0; i < project.getNumberOfTasks(); i++) {
+					System.out.println("Task " + i + " at level " + project.getChosenLevel(i) + ", starts at "
+							+ project.getStartTime(i) + " and takes " + project.getDuration(i));
+				}
+			}
+			System.out.println("Running time = " + (System.currentTimeMillis() - startTime) + "ms");
+		} finally {
+			project.end();
+		}
+	}
 
-			int[] normalDuration = {3, 10, 6, 3, 15, 7, 3};
-			int[] fastDuration = { 2, 5, 4, 2, 10, 4, 1};
-			int[] costNormal = { 2, 2, 10, 2, 12, 3, 2};
-			int[] costFast = {3, 4, 14, 3, 16, 5, 5};
+	// solves the project of the exercise: every task is done normally (level 0) or quickly
+	// (level 1), and the project has to finish within 23 days
+	private static void solveExercise() {
+		int[] normalDuration = {3, 10, 6, 3, 15, 7, 3};
+		int[] fastDuration = { 2, 5, 4, 2, 10, 4, 1};
+		int[] costNormal = { 2, 2, 10, 2, 12, 3, 2};
+		int[] costFast = {3, 4, 14, 3, 16, 5, 5};
+		// the paths 0-2-3-4-6, 0-1-4-6 and 0-5-6 as arcs
+		int[] arcFrom = { 0, 0, 0, 1, 2, 3, 4, 5 };
+		int[] arcTo = { 1, 2, 5, 4, 3, 4, 6, 6 };
 
-			int numberTasks = normalDuration.length;
-			// creates an array of binary variables of size numberBuildings
-			IloNumVar[] chosenNormal = cplex.numVarArray(numberTasks, 0, 1, IloNumVarType.Int);
-			IloNumVar[] chosenFast = cplex.numVarArray(numberTasks, 0, 1, IloNumVarType.Int);
-			// need to minimize costs
-			IloNumVar costs = cplex.numVar(0, Integer.MAX_VALUE, IloNumVarType.Int);
-			cplex.addMinimize(costs);
-			IloLinearNumExpr expression = cplex.linearNumExpr();
-			// add costs of doing tasks
-			for (int i = 0; i < numberTasks; i++) {
-				expression.addTerm(chosenNormal[i], costNormal[i]);
-				expression.addTerm(chosenFast[i], costFast[i]);
-			}
-			cplex.addEq(expression, costs);
-			
+		int numberTasks = normalDuration.length;
+		int[] levelStart = new int[numberTasks + 1];
+		double[] duration = new double[2 * numberTasks];
+		double[] cost = new double[2 * numberTasks];
+		for (int i = 0; i < numberTasks; i++) {
+			levelStart[i + 1] = 2 * (i + 1);
+			duration[2 * i] = normalDuration[i];
+			cost[2 * i] = costNormal[i];
+			duration[2 * i + 1] = fastDuration[i];
+			cost[2 * i + 1] = costFast[i];
+		}
+		ProjectCrashing project = new ProjectCrashing(levelStart, duration, cost, arcFrom, arcTo);
+		try {
 			// finish within 23 days
-			IloLinearNumExpr const1 = cplex.linearNumExpr();
-			IloLinearNumExpr const2 = cplex.linearNumExpr();
-			IloLinearNumExpr const3 = cplex.linearNumExpr();
-			// path 1
-			const1.addTerm(chosenNormal[0], normalDuration[0]);
-			const1.addTerm(chosenNormal[2], normalDuration[2]);
-			const1.addTerm(chosenNormal[3], normalDuration[3]);
-			const1.addTerm(chosenNormal[4], normalDuration[4]);
-			const1.addTerm(chosenNormal[6], normalDuration[6]);
-			const1.addTerm(chosenFast[0], fastDuration[0]);
-			const1.addTerm(chosenFast[2], fastDuration[2]);
-			const1.addTerm(chosenFast[3], fastDuration[3]);
-			const1.addTerm(chosenFast[4], fastDuration[4]);
-			const1.addTerm(chosenFast[6], fastDuration[6]);
-			// path 2
-			const2.addTerm(chosenNormal[0], normalDuration[0]);
-			const2.addTerm(chosenNormal[1], normalDuration[1]);
-			const2.addTerm(chosenNormal[4], normalDuration[4]);
-			const2.addTerm(chosenNormal[6], normalDuration[6]);
-			const2.addTerm(chosenFast[0], fastDuration[0]);
-			const2.addTerm(chosenFast[1], fastDuration[1]);
-			const2.addTerm(chosenFast[4], fastDuration[4]);
-			const2.addTerm(chosenFast[6], fastDuration[6]);
-			// path 3
-			const3.addTerm(chosenNormal[0], normalDuration[0]);
-			const3.addTerm(chosenNormal[5], normalDuration[5]);
-			const3.addTerm(chosenNormal[6], normalDuration[6]);
-			const3.addTerm(chosenFast[0], fastDuration[0]);
-			const3.addTerm(chosenFast[5], fastDuration[5]);
-			const3.addTerm(chosenFast[6], fastDuration[6]);
-			
-			cplex.addLe(const1, 23);
-			cplex.addLe(const2, 23);
-			cplex.addLe(const3, 23);
-			
-			// choose each task once
-			for (int i = 0; i < numberTasks; i++) {
-				IloLinearNumExpr constraint = cplex.linearNumExpr();
-				constraint.addTerm(chosenNormal[i], 1);
-				constraint.addTerm(chosenFast[i], 1);
-				cplex.addEq(constraint, 1);
+			if (!project.solve(23)) {
+				System.out.println("The project cannot finish within 23 days");
+				return;
 			}
-			// solve ILP
-			cplex.solve();
 			// output the optimal solution value of the objective function
-			System.out.println("Value" + cplex.getObjValue() + "\n");
+			System.out.println("Value" + project.getObjValue() + "\n");
 			// print which tasks were completed quickly and which were completed normally
 			for (int i = 0; i < numberTasks; i++) {
-				System.out.println("Task " + i  + " completed normally: " + cplex.getValue(chosenNormal[i]) 
-				+ " or quickly " + cplex.getValue(chosenFast[i]));
+				boolean quickly = project.getChosenLevel(i) == 1;
+				System.out.println("Task " + i  + " completed normally: " + (quickly ? 0.0 : 1.0)
+				+ " or quickly " + (quickly ? 1.0 : 0.0));
 			}
-			// close cplex object
-			cplex.end();
+		} finally {
+			project.end();
 		}
-		catch (IloException e) {}
 	}
 }
@@ -0,0 +1,376 @@
+/*******************************************************************************
+  * File: Benchmark.java
+  * Benchmarks for parsing, model building and solving, measured per phase.
+  * Usage: java [-Dsolver=java] Benchmark [-warmup N] [-iterations N]
+  *        [-synthetic [family:]nodes:edges]... [-json file] [files...]
+  * Without files, B1.txt to B5.txt and instance1.txt to instance5.txt are
+  * used. Files in the format of B*.txt are parsed as Graph and Graph2, and
+  * the dominating set (build, LP and ILP separately) and vertex cover
+  * problems are solved on them; instance files are parsed as Graph2 and their
+  * shortest paths are computed with the LP (build and solve separately) and
+  * with Dijkstra. The fixed models of A0, B0, InvestmentPlan and C2 are run
+  * once per iteration as well. For -synthetic, InstanceGenerator writes an
+  * instance of the family (random, geometric, powerlaw or grid; random by
+  * default) with the given number of nodes and edges to temporary files in
+  * the formats of both B*.txt and instance*.txt, with seed 1; the results
+  * name them without the temporary directory.
+  *
+  * Every benchmark is run for a number of warmup iterations whose times are
+  * thrown away, and then for the measured iterations; output of the code
+  * under test is suppressed while it runs. The results are printed as a table
+  * and written as JSON (benchmark.json by default) in the layout of JMH, so
+  * that the usual JMH tools can compare the results of two runs. The cache
+  * of SolveCache is off unless -Dcache.size is given.
+  ******************************************************************************/
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class Benchmark {
+
+	// records the time of the phases of one iteration
+	public static class Timer {
+		private LinkedHashMap<String, Long> laps = new LinkedHashMap<String, Long>();
+		private long last = System.nanoTime();
+
+		// restarts the clock without recording a phase
+		public void reset() {
+			this.last = System.nanoTime();
+		}
+
+		// records the time since the last lap as the time of the phase
+		public void lap(String phase) {
+			long now = System.nanoTime();
+			laps.put(phase, now - last);
+			last = System.nanoTime();
+		}
+	}
+
+	// a benchmark: one iteration of the code under test, timed with laps
+	public interface Task {
+		void run(Timer timer) throws Exception;
+	}
+
+	// the measured times of one phase of a benchmark
+	public static class Result {
+		private String benchmark;
+		private String file;
+		private double[] millis;
+
+		public Result(String benchmark, String file, double[] millis) {
+			this.benchmark = benchmark;
+			this.file = file;
+			this.millis = millis;
+		}
+
+		// returns the mean time in ms
+		public double getMean() {
+			double sum = 0;
+			for (double t : millis) {
+				sum += t;
+			}
+			return sum / millis.length;
+		}
+
+		// returns the sample standard deviation in ms
+		public double getStandardDeviation() {
+			if (millis.length < 2) {
+				return 0;
+			}
+			double mean = getMean();
+			double sum = 0;
+			for (double t : millis) {
+				sum += (t - mean) * (t - mean);
+			}
+			return Math.sqrt(sum / (millis.length - 1));
+		}
+
+		// returns the half width of the 99.9% confidence interval of the mean, in the
+		// normal approximation
+		public double getError() {
+			return 3.291 * getStandardDeviation() / Math.sqrt(millis.length);
+		}
+
+		// returns the median time in ms
+		public double getMedian() {
+			double[] sorted = millis.clone();
+			Arrays.sort(sorted);
+			int n = sorted.length;
+			return (n % 2 == 1) ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+		}
+	}
+
+	// results are added to this value, so that the JIT cannot remove the work
+	public static volatile double sink;
+
+	private int warmup = 3;
+	private int iterations = 10;
+	private List<Result> results = new ArrayList<Result>();
+	private PrintStream console = System.out;
+	private PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+
+	public static void main(String[] args) throws IOException {
+		// every iteration solves the model, not a lookup in the cache of SolveCache
+		if (System.getProperty("cache.size") == null) {
+			System.setProperty("cache.size", "0");
+		}
+		Benchmark benchmark = new Benchmark();
+		List<String> files = new ArrayList<String>();
+		String json = "benchmark.json";
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-warmup") && i + 1 < args.length) {
+				benchmark.warmup = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-iterations") && i + 1 < args.length) {
+				benchmark.iterations = Math.max(1, Integer.parseInt(args[++i]));
+			} else if (args[i].equals("-json") && i + 1 < args.length) {
+				json = args[++i];
+			} else if (args[i].equals("-synthetic") && i + 1 < args.length) {
+				// [family:]nodes:edges, the family is random by default
+				String[] size = args[++i].split(":");
+				String family = (size.length > 2) ? size[0] : "random";
+				int nodes = Integer.parseInt(size[size.length - 2]);
+				long edges = Long.parseLong(size[size.length - 1]);
+				files.add(writeSynthetic(family, nodes, edges, 1, "graph"));
+				files.add(writeSynthetic(family, nodes, edges, 1, "path"));
+			} else {
+				files.add(args[i]);
+			}
+		}
+		if (files.isEmpty()) {
+			for (int i = 1; i < 6; i++) {
+				files.add("B" + i + ".txt");
+			}
+			for (int i = 1; i < 6; i++) {
+				files.add("instance" + i + ".txt");
+			}
+		}
+		for (String file : files) {
+			benchmark.benchmarkFile(file);
+		}
+		benchmark.benchmarkModels();
+		benchmark.printTable();
+		benchmark.writeJson(json);
+		System.out.println("Results written to " + json);
+	}
+
+	// runs the benchmarks that fit the format of the file
+	public void benchmarkFile(String file) throws IOException {
+		boolean graphFormat;
+		try (InstanceReader reader = new InstanceReader(file)) {
+			// only the files of Graph2 that start with a name have a non-number first
+			graphFormat = reader.nextIsNumber();
+		}
+		if (graphFormat) {
+			run("parse.Graph", file, timer -> {
+				Graph graph = new Graph(file);
+				timer.lap("");
+				sink += graph.getNumberOfEdges();
+			});
+		}
+		run("parse.Graph2", file, timer -> {
+			Graph2 graph = new Graph2(file);
+			timer.lap("");
+			sink += graph.getNumberOfEdges();
+		});
+		if (graphFormat) {
+			Graph graph = new Graph(file);
+			run("dominatingSet", file, timer -> {
+				MinimumWeightVertexDominantSet problem = new MinimumWeightVertexDominantSet(file, graph);
+				try {
+					timer.reset();
+					problem.buildModel(0);
+					timer.lap("build");
+					double lp = problem.solveLP();
+					timer.lap("lp");
+					sink += problem.solveILP(lp);
+					timer.lap("ilp");
+				} finally {
+					problem.end();
+				}
+			});
+			Graph2 graph2 = new Graph2(file);
+			run("vertexCover", file, timer -> {
+				VertexCover problem = new VertexCover(graph2);
+				sink += problem.coverWeight(problem.solve());
+				timer.lap("solve");
+			});
+		} else {
+			Graph2 graph = new Graph2(file);
+			run("shortestPath.lp", file, timer -> {
+				LinearSolver solver = C0.buildLP(graph);
+				try {
+					timer.lap("build");
+					solver.solve();
+					sink += solver.getObjValue();
+					timer.lap("solve");
+				} finally {
+					solver.end();
+				}
+			});
+			run("shortestPath.dijkstra", file, timer -> {
+				PathEngine engine = new PathEngine(graph);
+				timer.lap("build");
+				sink += engine.shortestPaths()[graph.getDest()];
+				timer.lap("solve");
+			});
+		}
+	}
+
+	// runs the models of A0, B0, InvestmentPlan and C2, which have fixed data
+	public void benchmarkModels() {
+		run("facilityLocation", "", timer -> {
+			A0.main(new String[0]);
+			timer.lap("");
+		});
+		run("projectCrashing", "", timer -> {
+			B0.main(new String[0]);
+			timer.lap("");
+		});
+		if (new File("budget.txt").exists() && new File("payoutMatrix.txt").exists()) {
+			run("investmentPlan", "", timer -> {
+				InvestmentPlan.InvestmentSolving();
+				timer.lap("");
+			});
+		}
+		run("liftFloors", "", timer -> {
+			sink += ExerciseC21.maximumFloors(4, 3).getMaximumFloors();
+			timer.lap("");
+		});
+	}
+
+	/* Runs a benchmark for the warmup and measured iterations and stores the measured
+	 * times of every phase
+	 *
+	 * @param benchmark - the name of the benchmark
+	 * @param file - the file it runs on, or "" if it has none
+	 * @param task - one iteration of the benchmark
+	 */
+	public void run(String benchmark, String file, Task task) {
+		LinkedHashMap<String, double[]> phases = new LinkedHashMap<String, double[]>();
+		System.setOut(quiet);
+		try {
+			for (int i = 0; i < warmup + iterations; i++) {
+				Timer timer = new Timer();
+				task.run(timer);
+				if (i < warmup) {
+					continue;
+				}
+				for (Map.Entry<String, Long> lap : timer.laps.entrySet()) {
+					double[] times = phases.computeIfAbsent(lap.getKey(), key -> new double[iterations]);
+					times[i - warmup] = lap.getValue() / 1e6;
+				}
+			}
+		} catch (Exception e) {
+			System.setOut(console);
+			System.out.println("Benchmark " + benchmark + " failed on " + file + ": " + e);
+			return;
+		} finally {
+			System.setOut(console);
+		}
+		for (Map.Entry<String, double[]> phase : phases.entrySet()) {
+			String name = phase.getKey().isEmpty() ? benchmark : benchmark + "." + phase.getKey();
+			results.add(new Result(name, file, phase.getValue()));
+		}
+	}
+
+	// prints the results as a table
+	public void printTable() {
+		System.out.printf(Locale.ROOT, "%-28s %-16s %12s %12s %12s%n", "Benchmark", "File", "Mean (ms)",
+				"Error (ms)", "Median (ms)");
+		for (Result result : results) {
+			System.out.printf(Locale.ROOT, "%-28s %-16s %12.3f %12.3f %12.3f%n", result.benchmark,
+					new File(result.file).getName(), result.getMean(), result.getError(), result.getMedian());
+		}
+	}
+
+	/* Writes the results in the JSON layout of JMH, with the file as a parameter
+	 *
+	 * @param filename - the file to write to
+	 */
+	public void writeJson(String filename) throws IOException {
+		try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(filename)))) {
+			pw.println("[");
+			for (int r = 0; r < results.size(); r++) {
+				Result result = results.get(r);
+				pw.println("    {");
+				pw.println("        \"benchmark\" : " + ResultSink.jsonString(result.benchmark) + ",");
+				pw.println("        \"mode\" : \"avgt\",");
+				pw.println("        \"threads\" : 1,");
+				pw.println("        \"forks\" : 1,");
+				pw.println("        \"jvm\" : " + ResultSink.jsonString(System.getProperty("java.home")) + ",");
+				pw.println("        \"jdkVersion\" : " + ResultSink.jsonString(System.getProperty("java.version"))
+						+ ",");
+				pw.println("        \"warmupIterations\" : " + warmup + ",");
+				pw.println("        \"measurementIterations\" : " + iterations + ",");
+				pw.println("        \"params\" : {");
+				pw.println("            \"file\" : " + ResultSink.jsonString(parameterFile(result.file)) + ",");
+				pw.println("            \"solver\" : " + ResultSink.jsonString(System.getProperty("solver", "cplex")));
+				pw.println("        },");
+				pw.println("        \"primaryMetric\" : {");
+				pw.println("            \"score\" : " + number(result.getMean()) + ",");
+				pw.println("            \"scoreError\" : " + number(result.getError()) + ",");
+				pw.println("            \"scoreConfidence\" : [ " + number(result.getMean() - result.getError()) + ", "
+						+ number(result.getMean() + result.getError()) + " ],");
+				pw.println("            \"scoreUnit\" : \"ms/op\",");
+				StringBuilder raw = new StringBuilder();
+				for (int i = 0; i < result.millis.length; i++) {
+					raw.append(i == 0 ? "" : ", ").append(number(result.millis[i]));
+				}
+				pw.println("            \"rawData\" : [ [ " + raw + " ] ]");
+				pw.println("        }");
+				pw.println(r + 1 < results.size() ? "    }," : "    }");
+			}
+			pw.println("]");
+		}
+	}
+
+	// returns the file as the parameter of a result: only the name of a synthetic file,
+	// since its temporary directory changes with every run
+	private static String parameterFile(String file) {
+		File path = new File(file);
+		if (syntheticDirectory != null && syntheticDirectory.equals(path.getParentFile())) {
+			return path.getName();
+		}
+		return file;
+	}
+
+	// returns the number as a JSON number
+	private static String number(double value) {
+		return String.format(Locale.ROOT, "%.6f", value);
+	}
+
+	// the temporary directory of the synthetic instances
+	private static File syntheticDirectory;
+
+	/* Writes a synthetic instance with InstanceGenerator to a temporary file
+	 *
+	 * @param format - graph (B*.txt) or path (instance*.txt)
+	 *
+	 * @returns the name of the file in a temporary directory, which are deleted on exit
+	 */
+	public static String writeSynthetic(String family, int nodes, long edges, long seed, String format)
+			throws IOException {
+		if (syntheticDirectory == null) {
+			// files are deleted on exit in the reverse order of registration, so the
+			// directory goes last
+			syntheticDirectory = java.nio.file.Files.createTempDirectory("synthetic").toFile();
+			syntheticDirectory.deleteOnExit();
+		}
+		// the name does not depend on the run, and it is the file of the results without the
+		// directory, so that the results of two runs can be compared
+		File file = new File(syntheticDirectory, family + "-" + nodes + "-" + edges + "-" + seed + "." + format + ".txt");
+		file.deleteOnExit();
+		InstanceGenerator generator = new InstanceGenerator(family, nodes, edges, seed);
+		if (format.equals("path")) {
+			generator.writePath(file.getPath());
+		} else {
+			generator.writeGraph(file.getPath());
+		}
+		return file.getPath();
+	}
+}
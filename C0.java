@@ -1,68 +1,190 @@
 
 import java.io.*;
 import java.util.*;
-import ilog.concert.*;
-import ilog.cplex.*;
 import java.lang.System;
 
+/*
+ * Usage: java [-Dsolver=java] C0 [instance file] [lp|dijkstra|bellman-ford|auto|dag-longest]
+ * The instance defaults to instance1.txt and the mode to lp. The lp mode (also
+ * called cplex) solves the LP dual of the shortest path problem with a
+ * LinearSolver; the other modes solve the path problem directly with
+ * PathEngine, which is much faster on large graphs. The running time does not
+ * include reading the graph; run with -Dtelemetry=name to write the phases to
+ * name.csv and name.json, see Telemetry, and with -Dresults=file to append the
+ * result to a CSV or JSON Lines file, see ResultSink. When the LP has no
+ * solution, the status of the result tells why, see unsolvedStatus.
+ */
 public class C0 {
-	public static void main(String[] args) throws FileNotFoundException {
-		try {
-			double start = System.currentTimeMillis();
-			// initializes a new cplex object
-			IloCplex cplex = new IloCplex();
-			// Create the graph and get all properties
-			Graph2 graph = new Graph2("instance1.txt");
-			int numberNodes = graph.getNumberOfNodes();
-			int source = graph.getSource();
-			int dest = graph.getDest();
-			double[][] weightMatrix = new double[numberNodes][numberNodes];
-			ArrayList<Graph2.Edge> edgeList = graph.getEdgelist();
-			// Start as unreachable
-			for (int i = 0; i < numberNodes; i++) {
-				for (int j = 0; j < numberNodes; j++) {
-					weightMatrix[i][j] = 0;
+	public static void main(String[] args) throws IOException {
+		String filename = (args.length > 0) ? args[0] : "instance1.txt";
+		String mode = (args.length > 1) ? args[1] : "lp";
+		Telemetry telemetry = new Telemetry(filename);
+		telemetry.begin("parse");
+		// Create the graph and get all properties
+		Graph2 graph = Graph2.load(filename);
+		telemetry.end();
+		long start = System.nanoTime();
+		int numberNodes = graph.getNumberOfNodes();
+		int dest = graph.getDest();
+		double[] values;
+		if (mode.equals("lp") || mode.equals("cplex")) {
+			// initializes a new solver object
+			LinearSolver solver = LinearSolver.create();
+			try {
+				values = solveLP(graph, telemetry, solver);
+				if (values == null) {
+					String status = unsolvedStatus(graph, solver);
+					if (status.equals("unbounded")) {
+						System.out.println("The destination cannot be reached from the source, the LP is unbounded");
+					} else if (status.equals("infeasible")) {
+						System.out.println("The LP has no solution, the graph has a cycle of negative weight");
+					} else {
+						System.out.println("The solver was stopped before it solved the LP");
+					}
+					writeResult(filename, mode, status, null, telemetry.getMillis("parse"),
+							(System.nanoTime() - start) / 1e6);
+					return;
 				}
+			} finally {
+				// close solver object
+				solver.end();
 			}
-			// populate weights where possible
-			for (Graph2.Edge edge : edgeList) {
-				weightMatrix[edge.getFirstNodeOfEdge()][edge.getSecondNodeOfEdge()] = edge.getWeight();
+		} else {
+			telemetry.begin(mode);
+			PathEngine engine = new PathEngine(graph);
+			if (mode.equals("dijkstra")) {
+				values = engine.dijkstra();
+			} else if (mode.equals("bellman-ford")) {
+				values = engine.bellmanFord();
+			} else if (mode.equals("auto")) {
+				values = engine.shortestPaths();
+			} else if (mode.equals("dag-longest")) {
+				values = engine.dagLongestPaths();
+			} else {
+				System.out.println("Unknown mode " + mode);
+				return;
 			}
+			telemetry.end();
+		}
+		// output the optimal solution value of the objective function
+		System.out.println("~~~~~~~Optimal Value~~~~~~~\n" + values[dest] + "\n");
+		// print values
+		for (int i = 0; i < numberNodes; i++) {
+			System.out.println("Node " + i + ": " + values[i]);
+		}
+		double end = System.nanoTime();
+		System.out.println("Parse time = " + telemetry.getMillis("parse") + "ms");
+		System.out.println("Running time = " + (end - start) / 1e6 + "ms");
+		telemetry.recordMemory();
+		System.out.println(telemetry.getSummary());
+		telemetry.report();
+		writeResult(filename, mode, "optimal", values[dest], telemetry.getMillis("parse"), (end - start) / 1e6);
+	}
 
-			IloNumVar[] nodes = cplex.numVarArray(numberNodes, 0, Float.MAX_VALUE, IloNumVarType.Float);
-			cplex.addMaximize(nodes[dest]);
-			cplex.addEq(nodes[source], 0);
-			for (int i = 0; i < numberNodes; i++) {
-				for (int j = 0; j < numberNodes; j++) {
-					if (i != j) {
-						if (weightMatrix[i][j] != 0) {
-							IloLinearNumExpr constraint = cplex.linearNumExpr();
-							constraint.addTerm(nodes[j], 1);
-							constraint.addTerm(nodes[i], -1);
-							cplex.addLe(constraint, weightMatrix[i][j]);
-						}
-					}
-				}
-
+	// appends the result of the run to the file of -Dresults, if it is set
+	private static void writeResult(String filename, String mode, String status, Double value, double parseMillis,
+			double runningMillis) throws IOException {
+		try (ResultSink sink = ResultSink.fromProperty("instance", "mode", "status", "value", "parse_ms", "running_ms")) {
+			if (sink != null) {
+				sink.write(filename, mode, status, value, parseMillis, runningMillis);
 			}
-			// solve ILP
-			cplex.solve();
-			// output the optimal solution value of the objective function
-			System.out.println("~~~~~~~Optimal Value~~~~~~~\n" + cplex.getObjValue() + "\n");
-			// print values
-			for (int i = 0; i < numberNodes; i++) {
-				System.out.println("Node " + i + ": " + cplex.getValue(nodes[i]));
-			}
-//			System.out.println();
-			double end = System.currentTimeMillis();
-			System.out.println("Running time = " + (end-start) + "ms");
-			// close cplex object
-			cplex.end();
 		}
-		// if an exception is thrown, catch it
-		catch (IloException e) {
-			// output the stack trace for debugging
-			e.printStackTrace();
+	}
+
+	/* Solves the shortest path problem as the LP: maximise the label of the destination,
+	 * with the label of the source 0 and label(j) - label(i) <= w for every edge (i, j).
+	 *
+	 * @returns the label of every node, or null if the LP has no solution; see
+	 * unsolvedStatus for the reason
+	 */
+	public static double[] solveLP(Graph2 graph) {
+		return solveLP(graph, null);
+	}
+
+	// same as solveLP(graph), with the build and the solve recorded in the telemetry if not null
+	public static double[] solveLP(Graph2 graph, Telemetry telemetry) {
+		// initializes a new solver object
+		LinearSolver solver = LinearSolver.create();
+		try {
+			return solveLP(graph, telemetry, solver);
+		} finally {
+			// close solver object
+			solver.end();
+		}
+	}
+
+	// same as solveLP(graph, telemetry), on the given empty solver, e.g. one of a SolverPool,
+	// which is left to the caller to clear or end
+	public static double[] solveLP(Graph2 graph, Telemetry telemetry, LinearSolver solver) {
+		if (telemetry != null) {
+			telemetry.begin("build");
+		}
+		buildLP(graph, solver);
+		if (telemetry != null) {
+			telemetry.end();
+			solver.setListener(telemetry);
+		}
+		// solve LP
+		boolean solved = solver.solve();
+		if (telemetry != null) {
+			telemetry.recordSolver(solver);
+		}
+		if (!solved) {
+			return null;
+		}
+		// the label of node i is variable i
+		int[] nodes = new int[graph.getNumberOfNodes()];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = i;
+		}
+		return solver.getValues(nodes);
+	}
+
+	/* Tells why the LP of solveLP(graph, telemetry, solver) has no solution
+	 *
+	 * @returns infeasible if the solver proved that there is none, which means that the
+	 * graph has a cycle of negative weight; unbounded if the destination cannot be
+	 * reached from the source, so that no edge bounds its label; and unsolved if the
+	 * solver was stopped by a limit first
+	 */
+	public static String unsolvedStatus(Graph2 graph, LinearSolver solver) {
+		if (solver.isInfeasible()) {
+			return "infeasible";
+		}
+		if (!new PathEngine(graph).isReachable(graph.getDest())) {
+			return "unbounded";
+		}
+		return "unsolved";
+	}
+
+	/* Builds the LP of solveLP, with one constraint per edge, straight from the edge list
+	 *
+	 * @returns the solver holding the LP, in which the label of node i is variable i
+	 */
+	public static LinearSolver buildLP(Graph2 graph) {
+		// initializes a new solver object
+		return buildLP(graph, LinearSolver.create());
+	}
+
+	// same as buildLP(graph), on the given empty solver
+	public static LinearSolver buildLP(Graph2 graph, LinearSolver solver) {
+		int numberNodes = graph.getNumberOfNodes();
+		int source = graph.getSource();
+		int dest = graph.getDest();
+		int[] nodes = solver.addVariables(numberNodes, 0, Double.POSITIVE_INFINITY, false);
+		solver.maximize(new LinearExpr().addTerm(nodes[dest], 1));
+		solver.addEq(new LinearExpr().addTerm(nodes[source], 1), 0);
+		// every edge limits the difference between the labels of its nodes
+		for (int e = 0; e < graph.getNumberOfEdges(); e++) {
+			int i = graph.getFirstNode(e);
+			int j = graph.getSecondNode(e);
+			if (i != j) {
+				LinearExpr constraint = new LinearExpr();
+				constraint.addTerm(nodes[j], 1);
+				constraint.addTerm(nodes[i], -1);
+				solver.addLe(constraint, graph.getEdgeWeight(e));
+			}
 		}
+		return solver;
 	}
 }
@@ -0,0 +1,443 @@
+/*******************************************************************************
+  * File: CplexSolver.java
+  * LinearSolver that passes the model on to cplex. Variables and rows are
+  * kept in lists, so that their indices can be mapped to the cplex objects.
+  * Every IloException is rethrown as an IllegalStateException, as the
+  * interface does not depend on cplex.
+  ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import ilog.concert.*;
+import ilog.cplex.*;
+
+public class CplexSolver implements LinearSolver {
+
+	private IloCplex cplex;
+	private ArrayList<IloNumVar> vars = new ArrayList<IloNumVar>();
+	private ArrayList<IloRange> rows = new ArrayList<IloRange>();
+	private IloObjective objective;
+	private boolean maximize;
+	// the array of all variables, rebuilt when variables are added
+	private IloNumVar[] varArray;
+
+	// whether every variable is currently integer
+	private ArrayList<Boolean> integer = new ArrayList<Boolean>();
+	// the conversion of every variable, cplex allows only one per variable
+	private ArrayList<IloConversion> conversionOf = new ArrayList<IloConversion>();
+	// the variables of every conversion
+	private HashMap<IloConversion, int[]> converted = new HashMap<IloConversion, int[]>();
+
+	// the listener, and the phase of the current solve with the time it started
+	private SolveListener listener;
+	private String phase;
+	private long phaseStart;
+
+	// creates an empty cplex model
+	public CplexSolver() {
+		try {
+			this.cplex = new IloCplex();
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// returns the cplex object, for settings that are not part of LinearSolver
+	public IloCplex getCplex() {
+		return this.cplex;
+	}
+
+	public String getName() {
+		return "cplex";
+	}
+
+	public int addVariable(double lb, double ub, boolean integer) {
+		try {
+			this.vars.add(cplex.numVar(lb, ub, integer ? IloNumVarType.Int : IloNumVarType.Float));
+			this.integer.add(integer);
+			this.conversionOf.add(null);
+			this.varArray = null;
+			return this.vars.size() - 1;
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public int[] addVariables(int count, double lb, double ub, boolean integer) {
+		try {
+			IloNumVar[] added = cplex.numVarArray(count, lb, ub, integer ? IloNumVarType.Int : IloNumVarType.Float);
+			int[] indices = new int[count];
+			for (int i = 0; i < count; i++) {
+				indices[i] = this.vars.size();
+				this.vars.add(added[i]);
+				this.integer.add(integer);
+				this.conversionOf.add(null);
+			}
+			this.varArray = null;
+			return indices;
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void setBounds(int var, double lb, double ub) {
+		try {
+			IloNumVar v = vars.get(var);
+			v.setLB(lb);
+			v.setUB(ub);
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/* Converts the variables with a single conversion. Variables that were converted
+	 * before lose their old conversion first; the other variables of that conversion
+	 * get a new one, so that their type does not change.
+	 */
+	public void setInteger(int[] vars, boolean integer) {
+		try {
+			ArrayList<Integer> change = new ArrayList<Integer>();
+			for (int var : vars) {
+				if (this.integer.get(var) != integer) {
+					change.add(var);
+				}
+			}
+			for (int var : change) {
+				IloConversion old = conversionOf.get(var);
+				if (old != null) {
+					cplex.remove(old);
+					ArrayList<Integer> keep = new ArrayList<Integer>();
+					for (int other : converted.remove(old)) {
+						conversionOf.set(other, null);
+						if (!change.contains(other)) {
+							keep.add(other);
+						}
+					}
+					if (!keep.isEmpty()) {
+						convert(keep, this.integer.get(keep.get(0)));
+					}
+				}
+			}
+			// without their old conversions, the variables have their original type
+			ArrayList<Integer> stillDifferent = new ArrayList<Integer>();
+			for (int var : change) {
+				this.integer.set(var, integer);
+				if (originalType(var) != integer) {
+					stillDifferent.add(var);
+				}
+			}
+			if (!stillDifferent.isEmpty()) {
+				convert(stillDifferent, integer);
+			}
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// returns whether the variable is integer without any conversion
+	private boolean originalType(int var) throws IloException {
+		return vars.get(var).getType() == IloNumVarType.Int;
+	}
+
+	// adds a conversion of the variables to the given type
+	private void convert(ArrayList<Integer> vars, boolean integer) throws IloException {
+		IloNumVar[] array = new IloNumVar[vars.size()];
+		int[] indices = new int[vars.size()];
+		for (int i = 0; i < array.length; i++) {
+			indices[i] = vars.get(i);
+			array[i] = this.vars.get(indices[i]);
+		}
+		IloConversion conversion = cplex.conversion(array, integer ? IloNumVarType.Int : IloNumVarType.Float);
+		cplex.add(conversion);
+		converted.put(conversion, indices);
+		for (int var : indices) {
+			conversionOf.set(var, conversion);
+		}
+	}
+
+	// returns the cplex expression of a linear expression
+	private IloLinearNumExpr toCplex(LinearExpr expr) throws IloException {
+		IloLinearNumExpr result = cplex.linearNumExpr();
+		for (int k = 0; k < expr.size(); k++) {
+			result.addTerm(expr.getCoef(k), vars.get(expr.getVar(k)));
+		}
+		return result;
+	}
+
+	public int addRow(LinearExpr expr, double lb, double ub) {
+		try {
+			this.rows.add(cplex.addRange(lb, toCplex(expr), ub));
+			return this.rows.size() - 1;
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void setRowBounds(int row, double lb, double ub) {
+		try {
+			rows.get(row).setBounds(lb, ub);
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void setCoefficient(int row, int var, double coef) {
+		try {
+			cplex.setLinearCoef(rows.get(row), vars.get(var), coef);
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void minimize(LinearExpr expr) {
+		try {
+			if (objective != null) {
+				cplex.remove(objective);
+			}
+			objective = cplex.addMinimize(toCplex(expr));
+			maximize = false;
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void maximize(LinearExpr expr) {
+		try {
+			if (objective != null) {
+				cplex.remove(objective);
+			}
+			objective = cplex.addMaximize(toCplex(expr));
+			maximize = true;
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void setStart(int[] vars, double[] values) {
+		try {
+			IloNumVar[] array = new IloNumVar[vars.length];
+			for (int i = 0; i < vars.length; i++) {
+				array[i] = this.vars.get(vars[i]);
+			}
+			// a re-solve starts from the last start only, as the solver does
+			if (cplex.getNMIPStarts() > 0) {
+				cplex.deleteMIPStarts(0, cplex.getNMIPStarts());
+			}
+			cplex.addMIPStart(array, values);
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// adds the rows of the generator to cplex through a lazy constraint callback
+	public void setLazyRows(LazyRows lazyRows) {
+		try {
+			cplex.use(new LazyRowsCallback(lazyRows));
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private class LazyRowsCallback extends IloCplex.LazyConstraintCallback {
+		private LazyRows lazyRows;
+
+		LazyRowsCallback(LazyRows lazyRows) {
+			this.lazyRows = lazyRows;
+		}
+
+		protected void main() throws IloException {
+			double[] values = getValues(getVarArray());
+			lazyRows.separate(values, (expr, lb, ub) -> {
+				try {
+					add(cplex.range(lb, toCplex(expr), ub));
+				} catch (IloException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+		}
+	}
+
+	// returns all variables as an array
+	private IloNumVar[] getVarArray() {
+		if (varArray == null) {
+			varArray = vars.toArray(new IloNumVar[vars.size()]);
+		}
+		return varArray;
+	}
+
+	public void setThreads(int threads) {
+		try {
+			cplex.setParam(IloCplex.Param.Threads, threads);
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void setQuiet() {
+		cplex.setOut(null);
+	}
+
+	public void setListener(SolveListener listener) {
+		try {
+			if (listener != null && this.listener == null) {
+				cplex.use(new ProgressCallback());
+			}
+			this.listener = listener;
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/* Reports the phases and the progress of branch and bound to the listener. The
+	 * presolve lasts until cplex first reports on the search, and the root until the
+	 * first node has been solved. Cplex calls it from all of its threads.
+	 */
+	private class ProgressCallback extends IloCplex.MIPInfoCallback {
+		private double lastIncumbent = Double.NaN;
+		private double lastBound = Double.NaN;
+
+		protected void main() throws IloException {
+			synchronized (CplexSolver.this) {
+				if (listener == null) {
+					return;
+				}
+				long nodes = getNnodes64();
+				nextPhase(nodes > 0 ? "branch" : "root");
+				double incumbent = hasIncumbent() ? getIncumbentObjValue()
+						: (maximize ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+				double bound = getBestObjValue();
+				if (incumbent != lastIncumbent || bound != lastBound) {
+					lastIncumbent = incumbent;
+					lastBound = bound;
+					listener.progress(nodes, incumbent, bound);
+				}
+			}
+		}
+	}
+
+	// ends the current phase if the next one differs, phases only go forward
+	private void nextPhase(String next) {
+		if (phase.equals(next) || phase.equals("branch")) {
+			return;
+		}
+		long now = System.nanoTime();
+		listener.phaseEnded(phase, now - phaseStart);
+		phase = next;
+		phaseStart = now;
+	}
+
+	public boolean solve() {
+		try {
+			if (listener == null) {
+				return cplex.solve();
+			}
+			synchronized (this) {
+				phase = cplex.isMIP() ? "presolve" : "root";
+				phaseStart = System.nanoTime();
+			}
+			try {
+				return cplex.solve();
+			} finally {
+				synchronized (this) {
+					listener.phaseEnded(phase, System.nanoTime() - phaseStart);
+				}
+			}
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public boolean isOptimal() {
+		try {
+			return cplex.getStatus() == IloCplex.Status.Optimal;
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public boolean isInfeasible() {
+		try {
+			return cplex.getStatus() == IloCplex.Status.Infeasible;
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public double getObjValue() {
+		try {
+			return cplex.getObjValue();
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public double getValue(int var) {
+		try {
+			return cplex.getValue(vars.get(var));
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public double[] getValues(int[] vars) {
+		try {
+			IloNumVar[] array = new IloNumVar[vars.length];
+			for (int i = 0; i < vars.length; i++) {
+				array[i] = this.vars.get(vars[i]);
+			}
+			return cplex.getValues(array);
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public double getDual(int row) {
+		try {
+			return cplex.getDual(rows.get(row));
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public long getNumberOfNodes() {
+		try {
+			return cplex.getNnodes64();
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public long getNumberOfIterations() {
+		try {
+			return cplex.getNiterations64();
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// removes the model and the callbacks from cplex, keeping the environment and parameters
+	public void clear() {
+		try {
+			if (cplex.getNMIPStarts() > 0) {
+				cplex.deleteMIPStarts(0, cplex.getNMIPStarts());
+			}
+			cplex.clearCallbacks();
+			cplex.clearModel();
+		} catch (IloException e) {
+			throw new IllegalStateException(e);
+		}
+		vars.clear();
+		rows.clear();
+		objective = null;
+		maximize = false;
+		varArray = null;
+		integer.clear();
+		conversionOf.clear();
+		converted.clear();
+		listener = null;
+	}
+
+	public void end() {
+		cplex.end();
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+  * File: CsrGraph.java
+  * Class to store the adjacency of a graph in compressed sparse row (CSR) form.
+  * The neighbours of node i are neighbor(k) for k in [neighborStart(i),
+  * neighborEnd(i)), sorted in increasing order, so that degree queries are O(1)
+  * and edge queries are a binary search. Memory use is O(n + m) instead of the
+  * O(n^2) needed by an adjacency matrix.
+  ******************************************************************************/
+
+import java.util.Arrays;
+
+public class CsrGraph {
+
+	private int numberOfNodes;
+
+	// row i occupies positions offsets[i] up to (but excluding) offsets[i + 1]
+	private int[] offsets;
+	// the neighbouring node stored at every position
+	private int[] neighbors;
+	// the index of the edge (in the original edge array) stored at every position
+	private int[] edgeIds;
+
+	private CsrGraph(int numberOfNodes, int[] offsets, int[] neighbors, int[] edgeIds) {
+		this.numberOfNodes = numberOfNodes;
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.edgeIds = edgeIds;
+	}
+
+	/* Builds the CSR structure from a primitive edge array
+	 *
+	 * @param numberOfNodes - the number of nodes, all endpoints must lie in [0, numberOfNodes)
+	 * @param numberOfEdges - the number of edges stored in src and dst
+	 * @param src - the first node of every edge
+	 * @param dst - the second node of every edge
+	 * @param undirected - if true, every edge is stored in the rows of both its endpoints
+	 * @param distinct - if true, self loops and repeated neighbours are dropped
+	 *
+	 * @returns the CSR structure, with every row sorted by neighbour
+	 */
+	public static CsrGraph fromEdges(int numberOfNodes, int numberOfEdges, int[] src, int[] dst,
+			boolean undirected, boolean distinct) {
+		int entries = undirected ? 2 * numberOfEdges : numberOfEdges;
+		// expand the edges into (row, column, edge) triples
+		int[] rows = new int[entries];
+		int[] cols = new int[entries];
+		int[] ids = new int[entries];
+		for (int e = 0; e < numberOfEdges; e++) {
+			checkNode(src[e], numberOfNodes);
+			checkNode(dst[e], numberOfNodes);
+			rows[e] = src[e];
+			cols[e] = dst[e];
+			ids[e] = e;
+			if (undirected) {
+				rows[numberOfEdges + e] = dst[e];
+				cols[numberOfEdges + e] = src[e];
+				ids[numberOfEdges + e] = e;
+			}
+		}
+		// a stable counting sort on the column followed by one on the row leaves
+		// every row sorted by column, in O(n + m) time and without boxing
+		int[] byCol = countingOrder(cols, numberOfNodes, identity(entries));
+		int[] order = countingOrder(rows, numberOfNodes, byCol);
+
+		int[] offsets = new int[numberOfNodes + 1];
+		int[] neighbors = new int[entries];
+		int[] edgeIds = new int[entries];
+		int size = 0;
+		int lastRow = -1;
+		int lastCol = -1;
+		for (int k = 0; k < entries; k++) {
+			int p = order[k];
+			int row = rows[p];
+			int col = cols[p];
+			// skip self loops and a neighbour we have just stored for the same row
+			if (distinct && (row == col || (row == lastRow && col == lastCol))) {
+				continue;
+			}
+			neighbors[size] = col;
+			edgeIds[size] = ids[p];
+			size++;
+			// offsets[row + 1] temporarily counts the entries up to and including this row
+			offsets[row + 1] = size;
+			lastRow = row;
+			lastCol = col;
+		}
+		// rows without entries inherit the end of the previous row
+		for (int i = 1; i <= numberOfNodes; i++) {
+			if (offsets[i] < offsets[i - 1]) {
+				offsets[i] = offsets[i - 1];
+			}
+		}
+		if (size < entries) {
+			neighbors = Arrays.copyOf(neighbors, size);
+			edgeIds = Arrays.copyOf(edgeIds, size);
+		}
+		return new CsrGraph(numberOfNodes, offsets, neighbors, edgeIds);
+	}
+
+	// rebuilds the CSR structure from arrays returned by getOffsets, getNeighbors and getEdgeIds
+	public static CsrGraph fromArrays(int numberOfNodes, int[] offsets, int[] neighbors, int[] edgeIds) {
+		if (offsets.length != numberOfNodes + 1 || neighbors.length != edgeIds.length
+				|| offsets[numberOfNodes] != neighbors.length) {
+			throw new IllegalArgumentException("Inconsistent CSR arrays");
+		}
+		return new CsrGraph(numberOfNodes, offsets, neighbors, edgeIds);
+	}
+
+	// returns the number of nodes of this graph
+	public int getNumberOfNodes() {
+		return this.numberOfNodes;
+	}
+
+	// returns the number of stored (row, neighbour) entries
+	public int getNumberOfEntries() {
+		return this.neighbors.length;
+	}
+
+	// returns the number of neighbours of node i
+	public int degree(int i) {
+		return this.offsets[i + 1] - this.offsets[i];
+	}
+
+	// returns the position of the first neighbour of node i
+	public int neighborStart(int i) {
+		return this.offsets[i];
+	}
+
+	// returns the position after the last neighbour of node i
+	public int neighborEnd(int i) {
+		return this.offsets[i + 1];
+	}
+
+	// returns the neighbour stored at position k
+	public int neighbor(int k) {
+		return this.neighbors[k];
+	}
+
+	// returns the index of the edge stored at position k
+	public int edgeId(int k) {
+		return this.edgeIds[k];
+	}
+
+	// returns the position of j in the row of i, or -1 if j is not a neighbour of i
+	public int find(int i, int j) {
+		int low = this.offsets[i];
+		int high = this.offsets[i + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int value = this.neighbors[mid];
+			if (value < j) {
+				low = mid + 1;
+			} else if (value > j) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	// returns whether j is a neighbour of i
+	public boolean isNeighbor(int i, int j) {
+		return find(i, j) >= 0;
+	}
+
+	// returns the row offsets, not to be modified
+	int[] getOffsets() {
+		return this.offsets;
+	}
+
+	// returns the neighbour at every position, not to be modified
+	int[] getNeighbors() {
+		return this.neighbors;
+	}
+
+	// returns the edge index at every position, not to be modified
+	int[] getEdgeIds() {
+		return this.edgeIds;
+	}
+
+	// returns the positions 0 up to n - 1 in increasing order
+	private static int[] identity(int n) {
+		int[] order = new int[n];
+		for (int k = 0; k < n; k++) {
+			order[k] = k;
+		}
+		return order;
+	}
+
+	// stable counting sort of the positions in order by the given keys
+	private static int[] countingOrder(int[] keys, int range, int[] order) {
+		int[] start = new int[range + 1];
+		for (int k = 0; k < keys.length; k++) {
+			start[keys[k] + 1]++;
+		}
+		for (int i = 0; i < range; i++) {
+			start[i + 1] += start[i];
+		}
+		int[] sorted = new int[order.length];
+		for (int k = 0; k < order.length; k++) {
+			int p = order[k];
+			sorted[start[keys[p]]++] = p;
+		}
+		return sorted;
+	}
+
+	// throws an exception if node lies outside [0, numberOfNodes)
+	private static void checkNode(int node, int numberOfNodes) {
+		if (node < 0 || node >= numberOfNodes) {
+			throw new IllegalArgumentException("Node " + node + " is not in [0, " + numberOfNodes + ")");
+		}
+	}
+}
@@ -1,77 +1,77 @@
 
 import java.io.*;
 import java.util.*;
-import ilog.concert.*;
-import ilog.cplex.*;
 import java.lang.System;
 
+/*
+ * Usage: java [-Dsolver=java] D0 [graph file] [-lazy]
+ * Solves the minimum weight vertex cover problem for a graph in the format of
+ * B*.txt (the number of nodes and edges, a line per node with its id and
+ * weight, and a line per edge), B1.txt by default. With -lazy, the edge
+ * constraints are generated as they are needed. See VertexCover. The running
+ * time does not include reading the graph; run with -Dtelemetry=name to write
+ * the phases of the solve to name.csv and name.json, see Telemetry, and with
+ * -Dresults=file to append the result to a CSV or JSON Lines file, see
+ * ResultSink. With -Dcache.dir=directory the cover is kept on disk, so a
+ * later run on the same graph is answered without the solver, see
+ * SolveCache.
+ */
 public class D0 {
-	public static void main(String[] args) throws FileNotFoundException {
-		try {
-			double start = System.currentTimeMillis();
-			// initializes a new cplex object
-			IloCplex cplex = new IloCplex();
-			// Create the graph and get all properties
-			Graph2 graph = new Graph2("graph1.txt");
-			int numberNodes = graph.getNumberOfNodes();
-			// get the weights of all nodes
-			double[] nodeWeights = new double[numberNodes];
-			ArrayList<Graph2.Node> nodeList = graph.getNodeList();
-			for (Graph2.Node node: nodeList) {
-				nodeWeights[node.getID()] = node.getWeight();
+	public static void main(String[] args) throws IOException {
+		String filename = "B1.txt";
+		boolean lazy = false;
+		for (String arg : args) {
+			if (arg.equals("-lazy")) {
+				lazy = true;
+			} else {
+				filename = arg;
 			}
-			// get the weights of all edges
-			double[][] weightMatrix = new double[numberNodes][numberNodes];
-			ArrayList<Graph2.Edge> edgeList = graph.getEdgelist();
-			// Start as unreachable
-			for (int i = 0; i < numberNodes; i++) {
-				for (int j = 0; j < numberNodes; j++) {
-					weightMatrix[i][j] = 0;
-				}
-			}
-			// populate weights where possible
-			// we do not actually need this
-			// we just need which nodes are connected to which other nodes
-			for (Graph2.Edge edge : edgeList) {
-				weightMatrix[edge.getFirstNodeOfEdge()][edge.getSecondNodeOfEdge()] = edge.getWeight();
-			}
-
-			IloNumVar[] nodes = cplex.numVarArray(numberNodes, 0, 1, IloNumVarType.Int);
-			IloLinearNumExpr obj = cplex.linearNumExpr();
-			for (int i = 0; i < numberNodes; i++) {
-				obj.addTerm(nodes[i], nodeWeights[i]);
-			}
-			cplex.addMinimize(obj);
-			// add constraints
-			for (int i = 0; i < numberNodes; i++) {
-				for (int j = 0; j < numberNodes; j++) {
-					if (i != j) {
-						if (weightMatrix[i][j] != 0) {
-							IloLinearNumExpr constraint = cplex.linearNumExpr();
-							constraint.addTerm(nodes[j], 1);
-							constraint.addTerm(nodes[i], 1);
-							cplex.addGe(constraint, 1);
-						}
-					}
-				}
-
-			}
-			// solve ILP
-			cplex.solve();
-			// output the optimal solution value of the objective function
-			System.out.println();
-			System.out.println("Value " + cplex.getObjValue());
-			System.out.println();
-			// print values
-			for (int i = 0; i < numberNodes; i++) {
-				System.out.println("Node " + i + ": " + cplex.getValue(nodes[i]));
+		}
+		Telemetry telemetry = new Telemetry(filename);
+		telemetry.begin("parse");
+		// Create the graph and get all properties
+		Graph2 graph = Graph2.load(filename);
+		telemetry.end();
+		long start = System.nanoTime();
+		int numberNodes = graph.getNumberOfNodes();
+		VertexCover problem = new VertexCover(graph);
+		problem.setLazy(lazy);
+		problem.setTelemetry(telemetry);
+		SolveCache cache = SolveCache.getShared();
+		problem.setCache(cache);
+		// reduce the graph and solve the remaining kernel
+		double[] nodes = problem.solve();
+		// report how much of the graph was left for the solver
+		System.out.println();
+		System.out.println("Kernel: " + problem.getKernelNodes() + " of " + numberNodes + " nodes and "
+				+ problem.getKernelEdges() + " of " + graph.getNumberOfEdges() + " edges, "
+				+ problem.getFixedByLP() + " nodes fixed by the LP relaxation, "
+				+ problem.getRowsGenerated() + " edge rows generated");
+		// output the optimal solution value of the objective function
+		System.out.println();
+		System.out.println("Value " + problem.coverWeight(nodes));
+		System.out.println();
+		// print values
+		for (int i = 0; i < numberNodes; i++) {
+			System.out.println("Node " + i + ": " + nodes[i]);
+		}
+		System.out.println();
+		double end = System.nanoTime();
+		System.out.println("Parse time = " + telemetry.getMillis("parse") + "ms");
+		System.out.println("Running time = " + (end - start) / 1e6 + "ms");
+		telemetry.recordMemory();
+		System.out.println(telemetry.getSummary());
+		if (cache != null) {
+			System.out.println(cache.getSummary());
+		}
+		telemetry.report();
+		// append the result to the file of -Dresults, if it is set
+		try (ResultSink sink = ResultSink.fromProperty("instance", "status", "value", "kernel_nodes", "parse_ms",
+				"running_ms")) {
+			if (sink != null) {
+				sink.write(filename, problem.getStatus(), problem.coverWeight(nodes), problem.getKernelNodes(),
+						telemetry.getMillis("parse"), (end - start) / 1e6);
 			}
-			System.out.println();
-			double end = System.currentTimeMillis();
-			System.out.println("Running time = " + (end-start) + "ms");
-			// close cplex object
-			cplex.end();
 		}
-		catch (IloException e) {}
 	}
 }
@@ -0,0 +1,266 @@
+/*******************************************************************************
+  * File: DominatingSetHeuristic.java
+  * Class to find a good dominating set of low weight quickly, to start the
+  * ILP of MinimumWeightVertexDominantSet from. A greedy algorithm takes the
+  * node with the lowest weight per newly dominated node until every node is
+  * dominated, then nodes whose neighbourhood is dominated by other nodes of
+  * the set are removed, heaviest first. Finally a local search adds a node
+  * outside the set if the nodes of the set it makes redundant weigh more:
+  * this replaces one node of the set by a cheaper one (a 1-swap), or two
+  * nodes by one (a 2-swap), or more.
+  *
+  * The closed neighbourhood of every node (the node itself and its
+  * neighbours) is stored as one primitive array in CSR form, and for every
+  * node the number of nodes of the set that dominate it, so a move only
+  * looks at the nodes within distance two of the node it adds.
+  ******************************************************************************/
+
+import java.util.Arrays;
+
+public class DominatingSetHeuristic {
+
+	// the local search stops after this many passes over the nodes
+	private static final int MAXIMUM_PASSES = 20;
+
+	private int numberOfNodes;
+	private int[] weight;
+	// the closed neighbourhood of node i is closed[closedStart[i]] to closed[closedStart[i + 1] - 1]
+	private int[] closedStart;
+	private int[] closed;
+
+	// the dominating set, and the number of nodes of the set in the closed
+	// neighbourhood of every node
+	private boolean[] inSet;
+	private int[] cover;
+	private long value;
+	private long greedyValue;
+	private int moves;
+
+	// marks the nodes seen by the current move
+	private int[] seen;
+	private int stamp;
+
+	// creates the heuristic for the graph and the weights of its nodes
+	public DominatingSetHeuristic(Graph graph) {
+		this.numberOfNodes = graph.getNumberOfNodes();
+		this.weight = new int[numberOfNodes];
+		this.closedStart = new int[numberOfNodes + 1];
+		for (int i = 0; i < numberOfNodes; i++) {
+			weight[i] = graph.getNodeWeight(i);
+			closedStart[i + 1] = closedStart[i] + 1 + graph.degree(i);
+		}
+		this.closed = new int[closedStart[numberOfNodes]];
+		for (int i = 0; i < numberOfNodes; i++) {
+			int k = closedStart[i];
+			closed[k++] = i;
+			for (int e = graph.neighborStart(i); e < graph.neighborEnd(i); e++) {
+				closed[k++] = graph.getNeighbor(e);
+			}
+		}
+	}
+
+	/* Finds a dominating set with the greedy algorithm, removes the redundant nodes and
+	 * improves it with the local search
+	 *
+	 * @returns for every node whether it is in the set
+	 */
+	public boolean[] solve() {
+		inSet = new boolean[numberOfNodes];
+		cover = new int[numberOfNodes];
+		seen = new int[numberOfNodes];
+		stamp = 0;
+		value = 0;
+		moves = 0;
+		greedy();
+		removeRedundant();
+		greedyValue = value;
+		localSearch();
+		return inSet.clone();
+	}
+
+	/* Takes the node with the lowest weight per newly dominated node until every node
+	 * is dominated. The number of nodes a node newly dominates only goes down, so its
+	 * ratio only goes up: a node taken from the heap whose ratio is out of date is put
+	 * back with its new ratio instead of updating every ratio at once.
+	 */
+	private void greedy() {
+		int[] newlyDominated = new int[numberOfNodes];
+		double[] key = new double[numberOfNodes];
+		int[] heap = new int[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++) {
+			newlyDominated[i] = closedStart[i + 1] - closedStart[i];
+			key[i] = (double) weight[i] / newlyDominated[i];
+			heap[i] = i;
+		}
+		int size = numberOfNodes;
+		for (int k = size / 2 - 1; k >= 0; k--) {
+			siftDown(heap, key, k, size);
+		}
+		int undominated = numberOfNodes;
+		while (undominated > 0) {
+			int v = heap[0];
+			if (newlyDominated[v] == 0) {
+				heap[0] = heap[--size];
+				siftDown(heap, key, 0, size);
+				continue;
+			}
+			double ratio = (double) weight[v] / newlyDominated[v];
+			if (ratio > key[v]) {
+				key[v] = ratio;
+				siftDown(heap, key, 0, size);
+				continue;
+			}
+			heap[0] = heap[--size];
+			siftDown(heap, key, 0, size);
+			add(v);
+			for (int k = closedStart[v]; k < closedStart[v + 1]; k++) {
+				int u = closed[k];
+				if (cover[u] == 1) {
+					// u is dominated now, so it is no longer new to any node next to it
+					undominated--;
+					for (int l = closedStart[u]; l < closedStart[u + 1]; l++) {
+						newlyDominated[closed[l]]--;
+					}
+				}
+			}
+		}
+	}
+
+	// restores the heap property of the heap of size size from position k down
+	private static void siftDown(int[] heap, double[] key, int k, int size) {
+		int node = heap[k];
+		while (2 * k + 1 < size) {
+			int child = 2 * k + 1;
+			if (child + 1 < size && key[heap[child + 1]] < key[heap[child]]) {
+				child++;
+			}
+			if (key[heap[child]] >= key[node]) {
+				break;
+			}
+			heap[k] = heap[child];
+			k = child;
+		}
+		heap[k] = node;
+	}
+
+	// removes the nodes of the set that are not needed, heaviest first
+	private void removeRedundant() {
+		int count = 0;
+		long[] order = new long[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++) {
+			if (inSet[i]) {
+				// sorted by weight, highest first, with the node in the low bits
+				order[count++] = ((long) -weight[i] << 32) | i;
+			}
+		}
+		Arrays.sort(order, 0, count);
+		for (int k = 0; k < count; k++) {
+			int v = (int) order[k];
+			if (isRedundant(v)) {
+				remove(v);
+			}
+		}
+	}
+
+	/* Adds a node outside the set and removes the nodes of the set it makes redundant,
+	 * heaviest first, if they weigh more than the node; repeats this over all nodes
+	 * until no move improves the set
+	 */
+	private void localSearch() {
+		int[] candidates = new int[numberOfNodes];
+		long[] order = new long[numberOfNodes];
+		int[] removed = new int[numberOfNodes];
+		for (int pass = 0; pass < MAXIMUM_PASSES; pass++) {
+			boolean improved = false;
+			for (int w = 0; w < numberOfNodes; w++) {
+				if (inSet[w]) {
+					continue;
+				}
+				add(w);
+				// only nodes of the set next to a node w dominates can become redundant
+				stamp++;
+				seen[w] = stamp;
+				int count = 0;
+				for (int k = closedStart[w]; k < closedStart[w + 1]; k++) {
+					int u = closed[k];
+					for (int l = closedStart[u]; l < closedStart[u + 1]; l++) {
+						int v = closed[l];
+						if (inSet[v] && seen[v] != stamp) {
+							seen[v] = stamp;
+							candidates[count++] = v;
+						}
+					}
+				}
+				for (int c = 0; c < count; c++) {
+					order[c] = ((long) -weight[candidates[c]] << 32) | candidates[c];
+				}
+				Arrays.sort(order, 0, count);
+				long saved = 0;
+				int numberRemoved = 0;
+				for (int c = 0; c < count; c++) {
+					int v = (int) order[c];
+					if (isRedundant(v)) {
+						remove(v);
+						removed[numberRemoved++] = v;
+						saved += weight[v];
+					}
+				}
+				if (saved > weight[w]) {
+					improved = true;
+					moves++;
+				} else {
+					for (int r = 0; r < numberRemoved; r++) {
+						add(removed[r]);
+					}
+					remove(w);
+				}
+			}
+			if (!improved) {
+				break;
+			}
+		}
+	}
+
+	// returns whether every node next to v is dominated by another node of the set
+	private boolean isRedundant(int v) {
+		for (int k = closedStart[v]; k < closedStart[v + 1]; k++) {
+			if (cover[closed[k]] < 2) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// adds node v to the set
+	private void add(int v) {
+		inSet[v] = true;
+		value += weight[v];
+		for (int k = closedStart[v]; k < closedStart[v + 1]; k++) {
+			cover[closed[k]]++;
+		}
+	}
+
+	// removes node v from the set
+	private void remove(int v) {
+		inSet[v] = false;
+		value -= weight[v];
+		for (int k = closedStart[v]; k < closedStart[v + 1]; k++) {
+			cover[closed[k]]--;
+		}
+	}
+
+	// returns the weight of the set found
+	public long getValue() {
+		return this.value;
+	}
+
+	// returns the weight of the set before the local search
+	public long getGreedyValue() {
+		return this.greedyValue;
+	}
+
+	// returns the number of moves that improved the set
+	public int getMoves() {
+		return this.moves;
+	}
+}
@@ -4,157 +4,259 @@
   * Author: Emiel Verkade
   * Date: 31.1.2018
   * Class to solve the lift problem of C2, version 1 (test feasibility)
+  * Given only the number of lifts and stops, the maximum number of floors is
+  * searched for, reusing a single model (see LiftModel). With -table the
+  * maximum is searched for every number of lifts and stops up to the given
+  * maxima, on a SolverPool that keeps a solver per worker. Run with
+  * -Dresults=file to append the result to a CSV or JSON Lines file, see
+  * ResultSink.
   ******************************************************************************/
 
-import ilog.concert.*;
-import ilog.cplex.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 public class ExerciseC21 {
-	//
-	public static void LiftFeasibilitySolver(int numberLifts, int numberStops, int numberFloors, double beginTime) {
+
+	// result of searching for the maximum number of floors
+	public static class SearchResult {
+		private int numberLifts;
+		private int numberStops;
+		private int maximumFloors;
+		private int numberOfSolves;
+		private double runtime;
+
+		public SearchResult(int numberLifts, int numberStops, int maximumFloors, int numberOfSolves, double runtime) {
+			this.numberLifts = numberLifts;
+			this.numberStops = numberStops;
+			this.maximumFloors = maximumFloors;
+			this.numberOfSolves = numberOfSolves;
+			this.runtime = runtime;
+		}
+
+		public int getNumberLifts() {
+			return this.numberLifts;
+		}
+
+		public int getNumberStops() {
+			return this.numberStops;
+		}
+
+		// returns the largest number of floors that can be connected
+		public int getMaximumFloors() {
+			return this.maximumFloors;
+		}
+
+		// returns the number of times the solver was called
+		public int getNumberOfSolves() {
+			return this.numberOfSolves;
+		}
+
+		// returns the run time of the search in ms
+		public double getRuntime() {
+			return this.runtime;
+		}
+	}
+
+	/* Tests whether the given number of lifts, with at most numberStops stops each, can
+	 * connect every pair of floors
+	 *
+	 * @returns true if the set up is feasible
+	 */
+	public static boolean LiftFeasibilitySolver(int numberLifts, int numberStops, int numberFloors) {
+		return LiftFeasibilitySolver(numberLifts, numberStops, numberFloors, null);
+	}
+
+	// same as LiftFeasibilitySolver(numberLifts, numberStops, numberFloors), on the given
+	// empty solver if not null, e.g. one of a SolverPool
+	public static boolean LiftFeasibilitySolver(int numberLifts, int numberStops, int numberFloors,
+			LinearSolver solver) {
+		LiftModel model = (solver == null) ? new LiftModel(numberLifts, numberStops)
+				: new LiftModel(numberLifts, numberStops, solver);
 		try {
-			// create a cplex object
-			IloCplex cplex = new IloCplex();
-			// maximise a constant, as we are testing feasibility
-			IloNumVar constant = cplex.numVar(2043, 2043, IloNumVarType.Int);
-			cplex.addMaximize(constant);
-			// initializing the connection variables
-			IloNumVar[][][] connections = new IloNumVar[numberFloors][numberFloors][];
-			// for every floor
-			for (int f1 = 0; f1 < numberFloors; f1++) {
-				// for every floor
-				for (int f2 = 0; f2 < numberFloors; f2++) {
-					/*
-					 * create an array of size numberLifts of binary variables, which can take on
-					 * either 0 or 1. 0 representing that there is not a connection, between the two
-					 * floors with that lift, 1 being there is a connection between the two floors
-					 * with that lift
-					 */
-					connections[f1][f2] = cplex.numVarArray(numberLifts, 0, 1, IloNumVarType.Int);
+			return model.isFeasible(numberFloors);
+		} finally {
+			model.end();
+		}
+	}
+
+	/* Decides whether the given set up is feasible, using the bounds and constructions
+	 * of LiftBounds first and calling the solver only if they do not decide the query
+	 *
+	 * @returns the decision, its reason tells which path decided the query
+	 */
+	public static LiftBounds.Decision checkFeasibility(int numberLifts, int numberStops, int numberFloors) {
+		return checkFeasibility(numberLifts, numberStops, numberFloors, null);
+	}
+
+	// same as checkFeasibility(numberLifts, numberStops, numberFloors), on the given empty
+	// solver if not null
+	public static LiftBounds.Decision checkFeasibility(int numberLifts, int numberStops, int numberFloors,
+			LinearSolver solver) {
+		LiftBounds.Decision decision = LiftBounds.decide(numberLifts, numberStops, numberFloors);
+		if (decision.isDetermined()) {
+			return decision;
+		}
+		boolean feasible = LiftFeasibilitySolver(numberLifts, numberStops, numberFloors, solver);
+		return new LiftBounds.Decision(true, feasible, "solver");
+	}
+
+	/* Finds the maximum number of floors that the given lifts can connect. As removing a
+	 * floor keeps a set up feasible, feasibility is monotone in the number of floors.
+	 * The search starts between the bounds of LiftBounds: the number of floors is doubled
+	 * until it is infeasible, after which a binary search is done between the last
+	 * feasible and the first infeasible number. One model is used for all tests, growing
+	 * it while doubling and switching floors off during the binary search.
+	 *
+	 * @returns the maximum number of floors and how many solves were needed
+	 */
+	public static SearchResult maximumFloors(int numberLifts, int numberStops) {
+		return maximumFloors(numberLifts, numberStops, null);
+	}
+
+	// same as maximumFloors(numberLifts, numberStops), on the given empty solver if not null
+	public static SearchResult maximumFloors(int numberLifts, int numberStops, LinearSolver solver) {
+		long beginTime = System.nanoTime();
+		// the largest number of floors with a known construction is feasible
+		int feasible = LiftBounds.lowerBound(numberLifts, numberStops);
+		// anything above the counting bounds is infeasible
+		int infeasible = LiftBounds.upperBound(numberLifts, numberStops) + 1;
+		// the bounds may decide the search without the solver
+		if (infeasible - feasible <= 1) {
+			return new SearchResult(numberLifts, numberStops, feasible, 0, (System.nanoTime() - beginTime) / 1e6);
+		}
+		LiftModel model = (solver == null) ? new LiftModel(numberLifts, numberStops)
+				: new LiftModel(numberLifts, numberStops, solver);
+		try {
+			// double the number of floors until it becomes infeasible
+			int floors = 2 * feasible;
+			while (floors < infeasible) {
+				if (model.isFeasible(floors)) {
+					feasible = floors;
+					floors *= 2;
+				} else {
+					infeasible = floors;
 				}
 			}
-			// initializing the stops variables
-			IloNumVar[][] stops = new IloNumVar[numberFloors][];
-			// for every floor
-			for (int f = 0; f < numberFloors; f++) {
-				/*
-				 * create an array of size numberLifts of binary variables, which can take on
-				 * either 0 or 1. 0 representing that there is not a stop at that floor for that
-				 * lift, 1 being there is a stop at that floor with that lift
-				 */
-				stops[f] = cplex.numVarArray(numberLifts, 0, 1, IloNumVarType.Int);
-			}
-			// adding constraints for connections
-			// for every floor
-			for (int f1 = 0; f1 < numberFloors; f1++) {
-				// for every floor
-				for (int f2 = 0; f2 < numberFloors; f2++) {
-					// create a new expression
-					IloLinearNumExpr expr1 = cplex.linearNumExpr();
-					// for every lift
-					for (int l = 0; l < numberLifts; l++) {
-						// add the binary connections variable for each lift between the two floors
-						expr1.addTerm(connections[f1][f2][l], 1);
-					}
-					// add the constraint that this should be at least 1, ensuring each floor is
-					// connected
-					// with all others
-					cplex.addGe(expr1, 1);
+			// binary search between the feasible and the infeasible number of floors
+			while (infeasible - feasible > 1) {
+				int middle = (feasible + infeasible) >>> 1;
+				if (model.isFeasible(middle)) {
+					feasible = middle;
+				} else {
+					infeasible = middle;
 				}
 			}
-			// for every lift
-			for (int l = 0; l < numberLifts; l++) {
-				// create a new expression
-				IloLinearNumExpr expr1 = cplex.linearNumExpr();
-				// for every floor
-				for (int f1 = 0; f1 < numberFloors; f1++) {
-					// add the binary stops variable for each floor with that lift
-					expr1.addTerm(stops[f1][l], 1);
+			return new SearchResult(numberLifts, numberStops, feasible, model.getNumberOfSolves(),
+					(System.nanoTime() - beginTime) / 1e6);
+		} finally {
+			model.end();
+		}
+	}
+
+	/* Finds the maximum number of floors for every number of lifts up to maxLifts and
+	 * every number of stops up to maxStops. Every search is a job on a SolverPool, so a
+	 * solver is created once per worker instead of once per search. The results are
+	 * printed, and written to the file of -Dresults, in order as they become available.
+	 *
+	 * @param workers - the number of searches done at the same time
+	 */
+	public static void maximumFloorsTable(int maxLifts, int maxStops, int workers) {
+		long beginTime = System.nanoTime();
+		ArrayList<CompletableFuture<SearchResult>> searches = new ArrayList<CompletableFuture<SearchResult>>();
+		try (SolverPool pool = new SolverPool(workers, 0);
+				ResultSink sink = ResultSink.fromProperty("lifts", "stops", "floors", "status", "decided_by",
+						"solves", "running_ms")) {
+			for (int n = 1; n <= maxLifts; n++) {
+				for (int s = 1; s <= maxStops; s++) {
+					int numberLifts = n;
+					int numberStops = s;
+					searches.add(pool.submit(solver -> maximumFloors(numberLifts, numberStops, solver)));
 				}
-				// add the constraint that this should be at most the maximum number of stops,
-				// to ensure
-				// that no lift stops more than it is allowed to
-				cplex.addLe(expr1, numberStops);
 			}
-			// for every floor
-			for (int f1 = 0; f1 < numberFloors; f1++) {
-				// for every floor
-				for (int f2 = 0; f2 < numberFloors; f2++) {
-					// for every lift
-					for (int l = 0; l < numberLifts; l++) {
-						// if a lift does not stop there, neither connection should not exist,
-						// either between f1 and f2, or f2 and f1
-						cplex.addLe(connections[f1][f2][l], stops[f1][l]);
-						cplex.addLe(connections[f1][f2][l], stops[f2][l]);
-					}
+			for (CompletableFuture<SearchResult> search : searches) {
+				SearchResult result = search.join();
+				System.out.println(result.getNumberLifts() + " lifts, " + result.getNumberStops() + " stops: "
+						+ result.getMaximumFloors() + " floors, " + result.getNumberOfSolves() + " solves, "
+						+ result.getRuntime() + "ms");
+				if (sink != null) {
+					sink.write(result.getNumberLifts(), result.getNumberStops(), result.getMaximumFloors(), "maximum",
+							"search", result.getNumberOfSolves(), result.getRuntime());
 				}
 			}
-			// do not print any information regarding the progress of the solver (quicker
-			// run times)
-			cplex.setOut(null);
-			// solve the ILP as it has been set up
-			cplex.solve();
-			// try the following:
-			try {
-				// if the objective value exists
-				double d = cplex.getObjValue();
-				// end the program
-				cplex.end();
-				// if the objective value does not exist, and CpxException will be thrown which
-				// is caught here
-			} catch (CpxException e) {
-				// end the program
-				cplex.end();
-				// print out that the current set up of parameters is not feasible.
-				System.out.println("Current set up not feasible");
-				System.out.print("The maximum number of floors that adhere to the criterion with " + numberLifts
-						+ " lifts, and " + numberStops + " stops per lift is not: ");
-				System.out.println(numberFloors + " floors");
-				System.out.println("Runtime = " + (System.currentTimeMillis() - beginTime) + "ms");
-				// after telling the user, exit the program
-				System.exit(0);
-			}
-		} catch (IloException e) {
-			e.printStackTrace();
-			System.exit(0);
+			System.out.println(searches.size() + " searches on " + pool.getNumberOfSolvers() + " solvers in "
+					+ (System.nanoTime() - beginTime) / 1e6 + "ms");
+		} catch (IOException e) {
+			System.out.println("Could not write the results: " + e);
 		}
 	}
 
 	public static void main(String[] args) {
+		// a table of the maximum number of floors
+		if (args.length >= 3 && args[0].equals("-table")) {
+			int workers = (args.length > 3) ? Integer.parseInt(args[3]) : 1;
+			maximumFloorsTable(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Math.max(1, workers));
+			return;
+		}
 		// instruct user on the inputs expected and in what order
-		if (args.length != 3) {
-			System.out.println("Usage: java ExerciseC2 numberOfLifts numberOfStops numberOfFloors");
+		if (args.length != 2 && args.length != 3) {
+			System.out.println("Usage: java ExerciseC21 numberOfLifts numberOfStops [numberOfFloors]");
+			System.out.println("   or: java ExerciseC21 -table maximumLifts maximumStops [workers]");
+			System.out.println("Without numberOfFloors, the maximum number of floors is searched for");
+			System.out.println("With -table, it is searched for every number of lifts and stops up to the maxima");
 			System.out.println("Exiting now...");
-			System.exit(0);
+			return;
 		}
 		double beginTime = System.currentTimeMillis();
-		/*******
-		 * REDUNDANT CODE - LAZY WAY TO TEST MAXIMUM NUMBER OF FLOORS POSSIBLE 
-		 * if (args.length == 2) { 
-		 * 	int n = Integer.parseInt(args[0]); int s = Integer.parseInt(args[1]);
-		 * 	int f1 = 0; System.out.println("With " + n + "elevators and " + s + " stops:");
-		 * 	for (f1 = 1; f1 < Integer.MAX_VALUE; f1++) { 
-		 * 		System.out.println("Currently checking feasibility of " + f1 + " floors");
-		 * 		LiftFeasibilitySolver(n, s, f1, beginTime);
-		 * 	}
-		 * } else if (args.length == 3) {
-		 ****************/
 		// number of lifts is the first input
 		int n = Integer.parseInt(args[0]);
 		// number of stops is the second input
 		int s = Integer.parseInt(args[1]);
+		// search for the maximum number of floors
+		if (args.length == 2) {
+			SearchResult result = maximumFloors(n, s);
+			System.out.println("The maximum number of floors that adhere to the criterion with " + n
+					+ " lifts, and " + s + " stops per lift is: " + result.getMaximumFloors() + " floors");
+			System.out.println("Number of solves = " + result.getNumberOfSolves());
+			System.out.println("Runtime = " + result.getRuntime() + "ms");
+			writeResult(n, s, result.getMaximumFloors(), "maximum", "search", result.getNumberOfSolves(),
+					result.getRuntime());
+			return;
+		}
 		// number of floors to be tested is the third input
 		int f = Integer.parseInt(args[2]);
-		// run the solver
-		LiftFeasibilitySolver(n, s, f, beginTime);
-		// if we get here, that means the solver completed and a feasible solution to the ILP was found
-		// therefore, we can tell the user the current set-up is feasible
-		System.out.println("Congratulations! Current set up IS feasible");
-		System.out.printf("For the parameters: numberOfLifts = %d, numberOfStops = %d, "
-				+ "numberOfFloors = %d, the ILP was found to be solvable\n", n, s, f);
-		System.out.println("Runtime = " + (System.currentTimeMillis() - beginTime) + "ms");
-		// exit afterwards
-		System.exit(0);
-		/* } */
+		// run the bounds, and the solver if needed
+		LiftBounds.Decision decision = checkFeasibility(n, s, f);
+		if (decision.isFeasible()) {
+			// a feasible solution to the ILP exists, therefore, we can tell the user the
+			// current set-up is feasible
+			System.out.println("Congratulations! Current set up IS feasible");
+			System.out.printf("For the parameters: numberOfLifts = %d, numberOfStops = %d, "
+					+ "numberOfFloors = %d, the ILP was found to be solvable\n", n, s, f);
+		} else {
+			// print out that the current set up of parameters is not feasible.
+			System.out.println("Current set up not feasible");
+			System.out.print("The maximum number of floors that adhere to the criterion with " + n
+					+ " lifts, and " + s + " stops per lift is not: ");
+			System.out.println(f + " floors");
+		}
+		// report which path decided the query
+		System.out.println("Decided by: " + decision.getReason());
+		double runtime = System.currentTimeMillis() - beginTime;
+		System.out.println("Runtime = " + runtime + "ms");
+		writeResult(n, s, f, decision.isFeasible() ? "feasible" : "infeasible", decision.getReason(), null, runtime);
+	}
+
+	// appends the result of the run to the file of -Dresults, if it is set
+	private static void writeResult(int numberLifts, int numberStops, int numberFloors, String status,
+			String decidedBy, Integer numberOfSolves, double runtime) {
+		try (ResultSink sink = ResultSink.fromProperty("lifts", "stops", "floors", "status", "decided_by", "solves",
+				"running_ms")) {
+			if (sink != null) {
+				sink.write(numberLifts, numberStops, numberFloors, status, decidedBy, numberOfSolves, runtime);
+			}
+		} catch (IOException e) {
+			System.out.println("Could not write the result: " + e);
+		}
 	}
 }
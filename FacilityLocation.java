@@ -0,0 +1,587 @@
+/*******************************************************************************
+  * File: FacilityLocation.java
+  * Class to solve the capacitated facility location problem (A0) for any
+  * number of sites and products: open sites with a fixed cost and a capacity,
+  * and meet the demand of every product from the open sites at the lowest
+  * total cost. Only the (site, product) pairs in the file can be produced,
+  * so the cost matrix is kept sparse, per site and per product.
+  * Usage: java [-Dsolver=java] FacilityLocation file [-benders] [-strong]
+  *
+  * The file has the number of sites and products, the number of pairs, a
+  * line per site with its fixed cost and capacity, a line per product with
+  * its demand, and a line per pair with the site, the product (both numbered
+  * from 0) and the cost per unit.
+  *
+  * The flows are bounded by min(capacity, demand) and a site can only supply
+  * min(capacity, demand of its products), which is the coefficient (big M) of
+  * its opening variable; -strong adds flow <= min(capacity, demand) * open for
+  * every pair as well, which tightens the LP but adds a row per pair (with
+  * -benders, to the LP of the flows).
+  * With -benders the opening decisions are solved in a master problem with
+  * one variable for the cost of the flows, and the flows in an LP for the
+  * opened sites, whose duals give a cut on the cost of the flows. The cuts
+  * are added to the LP relaxation of the master first, as long as they cut
+  * off its solution, and then as lazy rows, when the master has an integer
+  * solution.
+  ******************************************************************************/
+
+import java.io.*;
+import java.util.Arrays;
+
+public class FacilityLocation {
+
+	// the most rounds of Benders cuts on the LP relaxation of the master problem
+	private static final int MAXIMUM_ROOT_ROUNDS = 100;
+
+	private int numberOfSites;
+	private int numberOfProducts;
+	private double[] fixedCost;
+	private double[] capacity;
+	private double[] demand;
+
+	// the pairs of every site are pairs siteStart[i] to siteStart[i + 1] - 1
+	private int[] siteStart;
+	private int[] pairSite;
+	private int[] pairProduct;
+	private double[] pairCost;
+	// the pairs of every product, as indices of the pairs above
+	private int[] productStart;
+	private int[] productPairs;
+
+	// the most a site can supply, min(capacity, demand of its products)
+	private double[] bigM;
+
+	// the solution
+	private boolean[] open;
+	private double[] flow;
+	private double objValue;
+	private int cutsGenerated;
+
+	/* Reads an instance from a file
+	 *
+	 * @param filename - the file in the format described above
+	 */
+	public FacilityLocation(String filename) throws IOException {
+		this(new InstanceReader(filename));
+	}
+
+	// reads an instance in the format described above from the reader, which is closed
+	public FacilityLocation(InstanceReader input) throws IOException {
+		int sites = input.nextCount();
+		int products = input.nextCount();
+		int pairs = input.nextCount();
+		double[] fixedCost = new double[sites];
+		double[] capacity = new double[sites];
+		for (int i = 0; i < sites; i++) {
+			fixedCost[i] = input.nextDouble();
+			capacity[i] = input.nextDouble();
+		}
+		double[] demand = new double[products];
+		for (int p = 0; p < products; p++) {
+			demand[p] = input.nextDouble();
+		}
+		int[] pairSite = new int[pairs];
+		int[] pairProduct = new int[pairs];
+		double[] pairCost = new double[pairs];
+		for (int k = 0; k < pairs; k++) {
+			pairSite[k] = input.nextInt();
+			pairProduct[k] = input.nextInt();
+			pairCost[k] = input.nextDouble();
+		}
+		input.close();
+		input.printSummary();
+		init(fixedCost, capacity, demand, pairSite, pairProduct, pairCost);
+	}
+
+	/* Creates an instance from arrays
+	 *
+	 * @param fixedCost - the cost of opening every site
+	 * @param capacity - the capacity of every site
+	 * @param demand - the demand of every product
+	 * @param pairSite, pairProduct, pairCost - the site, product and cost per unit
+	 *        of every pair that can be produced
+	 */
+	public FacilityLocation(double[] fixedCost, double[] capacity, double[] demand, int[] pairSite,
+			int[] pairProduct, double[] pairCost) {
+		init(fixedCost, capacity, demand, pairSite, pairProduct, pairCost);
+	}
+
+	// stores the instance with the pairs sorted by site, and indexed by product
+	private void init(double[] fixedCost, double[] capacity, double[] demand, int[] pairSite, int[] pairProduct,
+			double[] pairCost) {
+		this.numberOfSites = fixedCost.length;
+		this.numberOfProducts = demand.length;
+		this.fixedCost = fixedCost;
+		this.capacity = capacity;
+		this.demand = demand;
+		int pairs = pairSite.length;
+		// counting sort of the pairs on their site
+		this.siteStart = new int[numberOfSites + 1];
+		for (int k = 0; k < pairs; k++) {
+			if (pairSite[k] < 0 || pairSite[k] >= numberOfSites || pairProduct[k] < 0
+					|| pairProduct[k] >= numberOfProducts) {
+				throw new IllegalArgumentException("pair " + k + " has no valid site or product");
+			}
+			siteStart[pairSite[k] + 1]++;
+		}
+		for (int i = 0; i < numberOfSites; i++) {
+			siteStart[i + 1] += siteStart[i];
+		}
+		int[] next = Arrays.copyOf(siteStart, numberOfSites);
+		this.pairSite = new int[pairs];
+		this.pairProduct = new int[pairs];
+		this.pairCost = new double[pairs];
+		for (int k = 0; k < pairs; k++) {
+			int position = next[pairSite[k]]++;
+			this.pairSite[position] = pairSite[k];
+			this.pairProduct[position] = pairProduct[k];
+			this.pairCost[position] = pairCost[k];
+		}
+		// and the pairs of every product
+		this.productStart = new int[numberOfProducts + 1];
+		for (int k = 0; k < pairs; k++) {
+			productStart[this.pairProduct[k] + 1]++;
+		}
+		for (int p = 0; p < numberOfProducts; p++) {
+			productStart[p + 1] += productStart[p];
+		}
+		next = Arrays.copyOf(productStart, numberOfProducts);
+		this.productPairs = new int[pairs];
+		for (int k = 0; k < pairs; k++) {
+			productPairs[next[this.pairProduct[k]]++] = k;
+		}
+		// a site cannot supply more than its capacity, nor more than the demand of
+		// the products it can make
+		this.bigM = new double[numberOfSites];
+		for (int i = 0; i < numberOfSites; i++) {
+			double total = 0;
+			for (int k = siteStart[i]; k < siteStart[i + 1]; k++) {
+				total += demand[this.pairProduct[k]];
+			}
+			bigM[i] = Math.min(capacity[i], total);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java [-Dsolver=java] FacilityLocation file [-benders] [-strong]");
+			return;
+		}
+		boolean benders = Arrays.asList(args).contains("-benders");
+		boolean strong = Arrays.asList(args).contains("-strong");
+		FacilityLocation problem = new FacilityLocation(args[0]);
+		long startTime = System.currentTimeMillis();
+		boolean solved = benders ? problem.solveBenders(strong) : problem.solve(strong);
+		long endTime = System.currentTimeMillis();
+		if (!solved) {
+			System.out.println("The demand cannot be met");
+			return;
+		}
+		System.out.println("Total cost = " + problem.getObjValue());
+		int opened = 0;
+		for (int i = 0; i < problem.getNumberOfSites(); i++) {
+			if (problem.isOpen(i)) {
+				opened++;
+			}
+		}
+		System.out.println("Sites opened = " + opened + " of " + problem.getNumberOfSites());
+		if (benders) {
+			System.out.println("Cuts generated = " + problem.getCutsGenerated());
+		}
+		System.out.println("Running time = " + (endTime - startTime) + "ms");
+	}
+
+	// returns the number of sites
+	public int getNumberOfSites() {
+		return this.numberOfSites;
+	}
+
+	// returns the number of products
+	public int getNumberOfProducts() {
+		return this.numberOfProducts;
+	}
+
+	// returns whether the site is open in the solution
+	public boolean isOpen(int site) {
+		return this.open[site];
+	}
+
+	// returns the amount of the product made at the site in the solution
+	public double getFlow(int site, int product) {
+		double total = 0;
+		for (int k = siteStart[site]; k < siteStart[site + 1]; k++) {
+			if (pairProduct[k] == product) {
+				total += flow[k];
+			}
+		}
+		return total;
+	}
+
+	// returns the total cost of the solution
+	public double getObjValue() {
+		return this.objValue;
+	}
+
+	// returns the number of cuts added by the last solveBenders
+	public int getCutsGenerated() {
+		return this.cutsGenerated;
+	}
+
+	// returns whether every product can be supplied by its sites, when all are open
+	private boolean canMeetDemand() {
+		for (int p = 0; p < numberOfProducts; p++) {
+			double supply = 0;
+			for (int k = productStart[p]; k < productStart[p + 1]; k++) {
+				supply += pairBound(productPairs[k]);
+			}
+			if (supply < demand[p]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// returns the most that can flow through a pair, min(capacity, demand)
+	private double pairBound(int pair) {
+		return Math.min(capacity[pairSite[pair]], demand[pairProduct[pair]]);
+	}
+
+	/* Solves the problem as a single MIP
+	 *
+	 * @param strong - whether to add flow <= min(capacity, demand) * open for every pair
+	 *
+	 * @returns true if the demand can be met
+	 */
+	public boolean solve(boolean strong) {
+		if (!canMeetDemand()) {
+			return false;
+		}
+		LinearSolver solver = LinearSolver.create();
+		try {
+			int[] opened = solver.addVariables(numberOfSites, 0, 1, true);
+			int[] flows = new int[pairProduct.length];
+			LinearExpr objective = new LinearExpr();
+			for (int i = 0; i < numberOfSites; i++) {
+				objective.addTerm(opened[i], fixedCost[i]);
+				for (int k = siteStart[i]; k < siteStart[i + 1]; k++) {
+					flows[k] = solver.addVariable(0, pairBound(k), false);
+					objective.addTerm(flows[k], pairCost[k]);
+				}
+			}
+			solver.minimize(objective);
+			addDemandRows(solver, flows);
+			// a closed site supplies nothing, an open one at most its big M
+			for (int i = 0; i < numberOfSites; i++) {
+				LinearExpr supply = new LinearExpr();
+				for (int k = siteStart[i]; k < siteStart[i + 1]; k++) {
+					supply.addTerm(flows[k], 1);
+				}
+				supply.addTerm(opened[i], -bigM[i]);
+				solver.addLe(supply, 0);
+				if (strong) {
+					for (int k = siteStart[i]; k < siteStart[i + 1]; k++) {
+						LinearExpr link = new LinearExpr().addTerm(flows[k], 1);
+						link.addTerm(opened[i], -pairBound(k));
+						solver.addLe(link, 0);
+					}
+				}
+			}
+			if (!solver.solve()) {
+				return false;
+			}
+			this.objValue = solver.getObjValue();
+			this.open = new boolean[numberOfSites];
+			for (int i = 0; i < numberOfSites; i++) {
+				open[i] = solver.getValue(opened[i]) > 0.5;
+			}
+			this.flow = solver.getValues(flows);
+			return true;
+		} finally {
+			solver.end();
+		}
+	}
+
+	// adds the row of every product: the flows of the product meet its demand
+	private void addDemandRows(LinearSolver solver, int[] flows) {
+		for (int p = 0; p < numberOfProducts; p++) {
+			LinearExpr supplied = new LinearExpr();
+			for (int k = productStart[p]; k < productStart[p + 1]; k++) {
+				supplied.addTerm(flows[productPairs[k]], 1);
+			}
+			solver.addEq(supplied, demand[p]);
+		}
+	}
+
+	/* Solves the problem with Benders decomposition: the master problem has the
+	 * opening variables and theta, the cost of the flows. Cuts are added to the LP
+	 * relaxation of the master until theta is right, and then every integer solution
+	 * of the master is checked by solving the flows for its open sites
+	 *
+	 * @returns true if the demand can be met
+	 */
+	public boolean solveBenders(boolean strong) {
+		if (!canMeetDemand()) {
+			return false;
+		}
+		this.cutsGenerated = 0;
+		LinearSolver master = LinearSolver.create();
+		FlowProblem flows = new FlowProblem(strong);
+		try {
+			int[] opened = master.addVariables(numberOfSites, 0, 1, true);
+			// every unit of a product costs at least its cheapest pair
+			double minimumFlowCost = 0;
+			for (int p = 0; p < numberOfProducts; p++) {
+				double cheapest = Double.POSITIVE_INFINITY;
+				for (int k = productStart[p]; k < productStart[p + 1]; k++) {
+					cheapest = Math.min(cheapest, pairCost[productPairs[k]]);
+				}
+				minimumFlowCost += demand[p] * cheapest;
+			}
+			int theta = master.addVariable(minimumFlowCost, Double.POSITIVE_INFINITY, false);
+			LinearExpr objective = new LinearExpr();
+			for (int i = 0; i < numberOfSites; i++) {
+				objective.addTerm(opened[i], fixedCost[i]);
+			}
+			objective.addTerm(theta, 1);
+			master.minimize(objective);
+			// the open sites have to be able to supply every product, and all of them
+			// together; the flow problem cuts off the other sets of sites that fail
+			for (int p = 0; p < numberOfProducts; p++) {
+				LinearExpr supply = new LinearExpr();
+				for (int k = productStart[p]; k < productStart[p + 1]; k++) {
+					int i = pairSite[productPairs[k]];
+					supply.addTerm(opened[i], pairBound(productPairs[k]));
+				}
+				master.addGe(supply, demand[p]);
+			}
+			LinearExpr total = new LinearExpr();
+			double totalDemand = 0;
+			for (int i = 0; i < numberOfSites; i++) {
+				total.addTerm(opened[i], bigM[i]);
+			}
+			for (int p = 0; p < numberOfProducts; p++) {
+				totalDemand += demand[p];
+			}
+			master.addGe(total, totalDemand);
+			BendersCuts cuts = new BendersCuts(flows, opened, theta);
+			// cutting planes on the LP relaxation of the master first, the cuts are
+			// valid for fractional opening decisions too. The cuts are generated at a
+			// point between the LP solution and a core point inside the feasible region,
+			// which converges in far fewer rounds than cutting at the LP solution alone,
+			// and at the LP solution itself when that cut does not cut it off
+			master.setInteger(opened, false);
+			double[] core = new double[numberOfSites];
+			Arrays.fill(core, 1);
+			double[] between = new double[numberOfSites];
+			for (int round = 0; round < MAXIMUM_ROOT_ROUNDS; round++) {
+				if (!master.solve()) {
+					return false;
+				}
+				double[] values = master.getValues(opened);
+				double thetaValue = master.getValue(theta);
+				for (int i = 0; i < numberOfSites; i++) {
+					between[i] = (values[i] + core[i]) / 2;
+					core[i] = between[i];
+				}
+				if (!cuts.addCut(between, values, thetaValue, false, master::addRow)
+						&& !cuts.addCut(values, values, thetaValue, false, master::addRow)) {
+					break;
+				}
+			}
+			master.setInteger(opened, true);
+			master.setLazyRows(cuts);
+			if (!master.solve()) {
+				return false;
+			}
+			this.open = new boolean[numberOfSites];
+			for (int i = 0; i < numberOfSites; i++) {
+				open[i] = master.getValue(opened[i]) > 0.5;
+			}
+			// the flows of the final opening decisions
+			double[] openness = new double[numberOfSites];
+			for (int i = 0; i < numberOfSites; i++) {
+				openness[i] = open[i] ? 1 : 0;
+			}
+			if (!flows.solve(openness)) {
+				return false;
+			}
+			this.flow = flows.getFlows();
+			this.objValue = flows.getObjValue();
+			for (int i = 0; i < numberOfSites; i++) {
+				if (open[i]) {
+					objValue += fixedCost[i];
+				}
+			}
+			return true;
+		} finally {
+			master.end();
+			flows.end();
+		}
+	}
+
+	/* The LP of the flows for given open sites: meet the demand at the lowest cost,
+	 * with the supply of every site at most its big M if it is open and 0 otherwise.
+	 * The model is built once; only the bounds of the supply rows change.
+	 */
+	private class FlowProblem {
+		private LinearSolver solver = LinearSolver.create();
+		private int[] flows = new int[pairProduct.length];
+		private int[] supplyRows = new int[numberOfSites];
+		// the rows flow <= min(capacity, demand) * open of the pairs, if strong
+		private int[] pairRows;
+
+		FlowProblem(boolean strong) {
+			solver.setQuiet();
+			LinearExpr objective = new LinearExpr();
+			for (int k = 0; k < flows.length; k++) {
+				// the rows bound the flows already
+				flows[k] = solver.addVariable(0, Double.POSITIVE_INFINITY, false);
+				objective.addTerm(flows[k], pairCost[k]);
+			}
+			solver.minimize(objective);
+			// the demand rows come first, their index is the product
+			addDemandRows(solver, flows);
+			for (int i = 0; i < numberOfSites; i++) {
+				LinearExpr supply = new LinearExpr();
+				for (int k = siteStart[i]; k < siteStart[i + 1]; k++) {
+					supply.addTerm(flows[k], 1);
+				}
+				supplyRows[i] = solver.addLe(supply, bigM[i]);
+			}
+			if (strong) {
+				pairRows = new int[flows.length];
+				for (int k = 0; k < flows.length; k++) {
+					pairRows[k] = solver.addLe(new LinearExpr().addTerm(flows[k], 1), pairBound(k));
+				}
+			}
+		}
+
+		// solves the flows with every site open by the given fraction, from 0 (closed) to 1
+		// (open), returns false if the demand cannot be met
+		boolean solve(double[] open) {
+			for (int i = 0; i < numberOfSites; i++) {
+				solver.setRowBounds(supplyRows[i], Double.NEGATIVE_INFINITY, bigM[i] * open[i]);
+				if (pairRows != null) {
+					for (int k = siteStart[i]; k < siteStart[i + 1]; k++) {
+						solver.setRowBounds(pairRows[k], Double.NEGATIVE_INFINITY, pairBound(k) * open[i]);
+					}
+				}
+			}
+			return solver.solve();
+		}
+
+		double getObjValue() {
+			return solver.getObjValue();
+		}
+
+		double[] getFlows() {
+			return solver.getValues(flows);
+		}
+
+		// returns the dual of the demand row of a product
+		double getDemandDual(int product) {
+			return solver.getDual(product);
+		}
+
+		// returns how much the cost of the flows can fall per unit of opening the site:
+		// the duals (at most 0) of the rows whose bound is a multiple of open_i, times
+		// that multiple
+		double getOpeningDual(int site) {
+			double dual = bigM[site] * solver.getDual(supplyRows[site]);
+			if (pairRows != null) {
+				for (int k = siteStart[site]; k < siteStart[site + 1]; k++) {
+					dual += pairBound(k) * solver.getDual(pairRows[k]);
+				}
+			}
+			return dual;
+		}
+
+		void end() {
+			solver.end();
+		}
+	}
+
+	/* Checks a solution of the master problem with the flow problem. If the open
+	 * sites of an integer solution cannot meet the demand, at least one closed site
+	 * has to be opened (opening sites never hurts the flows). Otherwise, with the
+	 * duals u of the demand rows and the opening duals v of the sites (see
+	 * getOpeningDual), the cost of the flows is at least sum_p demand_p u_p +
+	 * sum_i v_i open_i for any opening decisions, also fractional ones, as the duals
+	 * stay a feasible solution of the dual LP. The
+	 * flow problem is shared, so the cuts are generated one at a time.
+	 */
+	private class BendersCuts implements LinearSolver.LazyRows {
+		private FlowProblem flows;
+		private int[] opened;
+		private int theta;
+
+		BendersCuts(FlowProblem flows, int[] opened, int theta) {
+			this.flows = flows;
+			this.opened = opened;
+			this.theta = theta;
+		}
+
+		public void separate(double[] values, LinearSolver.RowSink sink) {
+			double[] open = new double[numberOfSites];
+			for (int i = 0; i < numberOfSites; i++) {
+				open[i] = values[opened[i]] > 0.5 ? 1 : 0;
+			}
+			addCut(open, open, values[theta], true, sink);
+		}
+
+		/* Adds the cut of the flow problem at one solution of the master problem to the
+		 * sink, if it cuts off another (or the same) solution
+		 *
+		 * @param at - how far every site is open where the cut is generated
+		 * @param open - how far every site is open in the solution to cut off, 0 or 1
+		 *        if integral
+		 * @param thetaValue - the value of theta in the solution to cut off
+		 * @param integral - whether the solution is integer and the same for both, only
+		 *        then a feasibility cut can be added
+		 *
+		 * @returns whether a cut was added
+		 */
+		boolean addCut(double[] at, double[] open, double thetaValue, boolean integral, LinearSolver.RowSink sink) {
+			LinearExpr cut = new LinearExpr();
+			double rhs;
+			synchronized (FacilityLocation.this) {
+				if (!flows.solve(at)) {
+					if (!integral) {
+						return false;
+					}
+					// feasibility cut: open at least one of the closed sites
+					for (int i = 0; i < numberOfSites; i++) {
+						if (open[i] < 0.5) {
+							cut.addTerm(opened[i], 1);
+						}
+					}
+					cutsGenerated++;
+					sink.addRow(cut, 1, Double.POSITIVE_INFINITY);
+					return true;
+				}
+				// optimality cut: theta - sum_i v_i open_i >= sum_p demand_p u_p
+				rhs = 0;
+				for (int p = 0; p < numberOfProducts; p++) {
+					rhs += demand[p] * flows.getDemandDual(p);
+				}
+				cut.addTerm(theta, 1);
+				// the least cost of the flows that the cut allows for the solution
+				double bound = rhs;
+				for (int i = 0; i < numberOfSites; i++) {
+					double v = flows.getOpeningDual(i);
+					if (v != 0) {
+						cut.addTerm(opened[i], -v);
+						bound += v * open[i];
+					}
+				}
+				if (thetaValue >= bound - 1e-6 * Math.max(1, Math.abs(bound))) {
+					// the solution does not violate the cut
+					return false;
+				}
+				cutsGenerated++;
+			}
+			sink.addRow(cut, rhs, Double.POSITIVE_INFINITY);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+  * File: FacilityLocationCheck.java
+  * Checks FacilityLocation on random small instances: the single MIP, the
+  * MIP with -strong and Benders decomposition (with and without -strong)
+  * must agree on whether the demand can be met and on the total cost, and
+  * the solution of each must meet the demand from open sites within their
+  * capacity, at the cost it reports.
+  * Usage: java [-Dsolver=java] FacilityLocationCheck [instances]
+  * Exits with status 1 if any check fails.
+  ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class FacilityLocationCheck {
+
+	private static final double TOLERANCE = 1e-5;
+
+	public static void main(String[] args) {
+		int instances = (args.length > 0) ? Integer.parseInt(args[0]) : 300;
+		Random random = new Random(12);
+		int checked = 0;
+		int failed = 0;
+		int infeasible = 0;
+		for (int t = 0; t < instances; t++) {
+			int sites = 2 + random.nextInt(7);
+			int products = 1 + random.nextInt(4);
+			double[] fixedCost = new double[sites];
+			double[] capacity = new double[sites];
+			double[] demand = new double[products];
+			for (int i = 0; i < sites; i++) {
+				fixedCost[i] = random.nextInt(100);
+				capacity[i] = 1 + random.nextInt(80);
+			}
+			for (int p = 0; p < products; p++) {
+				demand[p] = 1 + random.nextInt(25);
+			}
+			// every pair at most once, so that the flows give the cost
+			int density = 1 + random.nextInt(9);
+			ArrayList<int[]> pairs = new ArrayList<int[]>();
+			for (int i = 0; i < sites; i++) {
+				for (int p = 0; p < products; p++) {
+					if (random.nextInt(10) < density) {
+						pairs.add(new int[] { i, p });
+					}
+				}
+			}
+			int[] pairSite = new int[pairs.size()];
+			int[] pairProduct = new int[pairs.size()];
+			double[] pairCost = new double[pairs.size()];
+			for (int k = 0; k < pairs.size(); k++) {
+				pairSite[k] = pairs.get(k)[0];
+				pairProduct[k] = pairs.get(k)[1];
+				pairCost[k] = random.nextInt(10);
+			}
+
+			FacilityLocation single = new FacilityLocation(fixedCost, capacity, demand, pairSite, pairProduct,
+					pairCost);
+			boolean feasible = single.solve(false);
+			if (!feasible) {
+				infeasible++;
+			}
+			String[] methods = { "MIP", "strong MIP", "Benders", "strong Benders" };
+			for (int method = 0; method < methods.length; method++) {
+				FacilityLocation problem = single;
+				boolean solved = feasible;
+				if (method > 0) {
+					problem = new FacilityLocation(fixedCost, capacity, demand, pairSite, pairProduct, pairCost);
+					solved = (method == 1) ? problem.solve(true) : problem.solveBenders(method == 3);
+				}
+				String error = null;
+				if (solved != feasible) {
+					error = solved ? "meets the demand, the MIP does not" : "cannot meet the demand, the MIP can";
+				} else if (solved) {
+					if (Math.abs(problem.getObjValue() - single.getObjValue()) > TOLERANCE) {
+						error = "costs " + problem.getObjValue() + ", the MIP " + single.getObjValue();
+					} else {
+						error = verify(problem, fixedCost, capacity, demand, pairSite, pairProduct, pairCost);
+					}
+				}
+				checked++;
+				if (error != null) {
+					failed++;
+					System.out.println("instance " + t + ", " + methods[method] + ": " + error);
+				}
+			}
+		}
+		System.out.println("FacilityLocation: " + checked + " checked (" + infeasible + " instances cannot meet "
+				+ "the demand), " + failed + " failed");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+	// returns what is wrong with the solution, null if it is right
+	private static String verify(FacilityLocation problem, double[] fixedCost, double[] capacity, double[] demand,
+			int[] pairSite, int[] pairProduct, double[] pairCost) {
+		double cost = 0;
+		double[] supplied = new double[demand.length];
+		double[] made = new double[fixedCost.length];
+		for (int k = 0; k < pairSite.length; k++) {
+			double flow = problem.getFlow(pairSite[k], pairProduct[k]);
+			if (flow < -TOLERANCE) {
+				return "has a negative flow from site " + pairSite[k];
+			}
+			if (flow > TOLERANCE && !problem.isOpen(pairSite[k])) {
+				return "makes product " + pairProduct[k] + " at closed site " + pairSite[k];
+			}
+			supplied[pairProduct[k]] += flow;
+			made[pairSite[k]] += flow;
+			cost += pairCost[k] * flow;
+		}
+		for (int i = 0; i < fixedCost.length; i++) {
+			if (made[i] > capacity[i] + TOLERANCE) {
+				return "makes " + made[i] + " at site " + i + " of capacity " + capacity[i];
+			}
+			if (problem.isOpen(i)) {
+				cost += fixedCost[i];
+			}
+		}
+		for (int p = 0; p < demand.length; p++) {
+			if (Math.abs(supplied[p] - demand[p]) > TOLERANCE) {
+				return "supplies " + supplied[p] + " of product " + p + " for a demand of " + demand[p];
+			}
+		}
+		if (Math.abs(cost - problem.getObjValue()) > TOLERANCE) {
+			return "reports a cost of " + problem.getObjValue() + " for a solution of cost " + cost;
+		}
+		return null;
+	}
+}
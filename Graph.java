@@ -6,9 +6,7 @@
   * Class to represent graphs of nodes with edges
   ******************************************************************************/
 
-import java.util.Scanner;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 
 public class Graph {
 
@@ -16,59 +14,95 @@ public class Graph {
 	private int numberOfEdges;
 
 	private int[] nodeWeights;
-	private int[][] adjacentNodes;
+	private CsrGraph adjacentNodes;
+
+	// the speed at which the file was parsed, in MB/s
+	private double parseThroughput;
 
 	// Constructor for a graph, information is read from file
-	public Graph(String filename) throws FileNotFoundException {
-		// create a scanner object to read a new file with the matching filename
-		Scanner input = new Scanner(new File(filename));
+	public Graph(String filename) throws IOException {
+		// create a reader that parses the numbers in the file with the matching filename
+		this(new InstanceReader(filename));
+	}
+
+	// Constructor for a graph, information is read from the reader, which is closed
+	public Graph(InstanceReader input) throws IOException {
 		// identify the number of nodes and number of edges as the first two integers
 		// contained in the first two lines
-		this.numberOfNodes = Integer.parseInt(input.nextLine().trim());
-		this.numberOfEdges = Integer.parseInt(input.nextLine().trim());
+		this.numberOfNodes = input.nextCount();
+		input.skipLine();
+		this.numberOfEdges = input.nextCount();
+		input.skipLine();
 		// initialize vector of node weights
 		this.nodeWeights = new int[numberOfNodes];
 		// for all nodes in the graph
 		for (int i = 0; i < this.numberOfNodes; i++) {
-			// read the next line of data
-			String line = input.nextLine();
-			// split the line into parts, delimited by a tab character
-			String[] parts = line.split("\t");
-			// the second part of the line is the weight of the current node
-			nodeWeights[i] = Integer.parseInt(parts[1]);
-		}
-		// initialize a matrix of edgeExistences
-		this.adjacentNodes = new int[numberOfNodes][numberOfNodes];
-		// for all nodes in the graph
-		for (int i = 0; i < numberOfNodes; i++) {
-			// for all nodes in the graph
-			for (int j = 0; j < numberOfNodes; j++) {
-				// the edge does not exist (the node i is not adjacent to the node j)
-				this.adjacentNodes[i][j] = 0;
-				// if this edge is directed to itself (i.e. is a node)
-				if (i == j) {
-					// the edge exists (the node is adjacent to itself)
-					this.adjacentNodes[i][j] = 1;
-				}
-			}
+			// the first number on the line is the index of the node
+			input.nextInt();
+			// the second number on the line is the weight of the current node
+			nodeWeights[i] = input.nextInt();
+			// ignore anything else on the line
+			input.skipLine();
 		}
+		// store the edges in primitive arrays
+		int[] firstNodes = new int[numberOfEdges];
+		int[] secondNodes = new int[numberOfEdges];
 		// for all edges in the file
 		for (int i = 0; i < numberOfEdges; i++) {
-			// interpret the data in the line
-			String line = input.nextLine();
-			// the data is split up by tabs
-			String[] parts = line.split("\t");
-			// the first part indicates a node
-			int row = Integer.parseInt(parts[0]);
-			// as does the second part
-			int col = Integer.parseInt(parts[1]);
-			// the first node connects to the second via this edge
-			adjacentNodes[row][col] = 1;
-			// the second also connects to the first via this edge
-			adjacentNodes[col][row] = 1;
+			// the first number indicates a node
+			firstNodes[i] = input.nextInt();
+			// as does the second number
+			secondNodes[i] = input.nextInt();
+			// the weight of the edge is not needed
+			input.skipLine();
 		}
 		// close the input when it reading is finished
 		input.close();
+		// report how fast the file was read
+		this.parseThroughput = input.getThroughput();
+		input.printSummary();
+		// store every edge in the rows of both of its endpoints, without self loops
+		// or repeated edges, instead of allocating an n x n matrix
+		this.adjacentNodes = CsrGraph.fromEdges(numberOfNodes, numberOfEdges, firstNodes, secondNodes, true, true);
+	}
+
+	// Constructor for a graph, information is taken from a cached snapshot
+	private Graph(GraphCache.Snapshot snapshot) {
+		this.numberOfNodes = snapshot.getScalar(0);
+		this.numberOfEdges = snapshot.getScalar(1);
+		this.nodeWeights = snapshot.getIntArray(0);
+		this.adjacentNodes = CsrGraph.fromArrays(numberOfNodes, snapshot.getIntArray(1), snapshot.getIntArray(2),
+				snapshot.getIntArray(3));
+	}
+
+	/* Loads the graph in the given file. If the graph cache is enabled (see GraphCache),
+	 * an up to date snapshot is used instead of the text file when there is one, and a
+	 * snapshot is written after the text file has been parsed otherwise.
+	 *
+	 * @param filename - the text file containing the graph
+	 *
+	 * @returns the graph
+	 */
+	public static Graph load(String filename) throws IOException {
+		if (!GraphCache.isEnabled()) {
+			return new Graph(filename);
+		}
+		long start = System.nanoTime();
+		GraphCache.Snapshot snapshot = GraphCache.read(filename, GraphCache.KIND_GRAPH);
+		if (snapshot != null) {
+			Graph graph = new Graph(snapshot);
+			System.out.printf(java.util.Locale.ROOT, "Loaded %s from %s in %.3f ms%n", filename,
+					GraphCache.snapshotName(filename), (System.nanoTime() - start) / 1e6);
+			return graph;
+		}
+		Graph graph = new Graph(filename);
+		CsrGraph adjacency = graph.adjacentNodes;
+		GraphCache.write(filename, GraphCache.KIND_GRAPH,
+				new GraphCache.Snapshot(new int[] { graph.numberOfNodes, graph.numberOfEdges },
+						new int[][] { graph.nodeWeights, adjacency.getOffsets(), adjacency.getNeighbors(),
+								adjacency.getEdgeIds() },
+						new double[0][]));
+		return graph;
 	}
 
 	// returns the number of nodes of this graph
@@ -76,9 +110,47 @@ public class Graph {
 		return this.numberOfNodes;
 	}
 
-	// returns 1 if edge exists connecting node i and j, 0 otherwise
+	// returns the number of edges of this graph
+	public int getNumberOfEdges() {
+		return this.numberOfEdges;
+	}
+
+	// returns 1 if edge exists connecting node i and j (or if i = j), 0 otherwise
 	public int edgeExists(int i, int j) {
-		return this.adjacentNodes[i][j];
+		if (i == j || this.adjacentNodes.isNeighbor(i, j)) {
+			return 1;
+		}
+		return 0;
+	}
+
+	// returns the number of nodes adjacent to node i (not counting i itself)
+	public int degree(int i) {
+		return this.adjacentNodes.degree(i);
+	}
+
+	// returns the position of the first neighbour of node i, see getNeighbor
+	public int neighborStart(int i) {
+		return this.adjacentNodes.neighborStart(i);
+	}
+
+	// returns the position after the last neighbour of node i, see getNeighbor
+	public int neighborEnd(int i) {
+		return this.adjacentNodes.neighborEnd(i);
+	}
+
+	// returns the neighbour stored at position k, where neighborStart(i) <= k < neighborEnd(i)
+	public int getNeighbor(int k) {
+		return this.adjacentNodes.neighbor(k);
+	}
+
+	// returns the sparse adjacency structure of this graph
+	public CsrGraph getAdjacency() {
+		return this.adjacentNodes;
+	}
+
+	// returns the speed at which the file was parsed, in MB/s
+	public double getParseThroughput() {
+		return this.parseThroughput;
 	}
 
 	// returns the weight of the node i
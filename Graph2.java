@@ -1,55 +1,97 @@
-
 /*******************************************************************************
-  * File: Graph.java
-  * Author: Andre Berger  
+  * File: Graph2.java
+  * Author: Andre Berger
   *
-  * Class to represent graphs using adjacency matrix and adjacency lists
+  * Class to represent graphs using adjacency lists
+  * Nodes and edges are stored as parallel primitive arrays (node ids and
+  * weights, edge endpoints and weights) and the adjacency lists in compressed
+  * sparse row form, so that no object is allocated per node or edge. The
+  * Node and Edge classes are lightweight views on these arrays.
   ******************************************************************************/
 
 import java.util.*;
 import java.io.*;
 
-public class Graph {
+public class Graph2 {
 
 	class Node {
-		private int id;
-		private double weight;
+		private int index;
 
-		public Node(int u, double w) {
-			this.id = u;
-			this.weight = w;
+		public Node(int i) {
+			this.index = i;
 		}
 
 		public int getID() {
-			return this.id;
+			return nodeIds[this.index];
 		}
 
 		public double getWeight() {
-			return this.weight;
+			return nodeWeights[this.index];
 		}
 	}
 
 	class Edge {
-		private int firstNode;
-		private int secondNode;
-		private double weight;
+		private int index;
 
-		public Edge(int u, int v, double w) {
-			this.firstNode = u;
-			this.secondNode = v;
-			this.weight = w;
+		public Edge(int e) {
+			this.index = e;
 		}
 
 		public int getFirstNodeOfEdge() {
-			return this.firstNode;
+			return src[this.index];
 		}
 
 		public int getSecondNodeOfEdge() {
-			return this.secondNode;
+			return dst[this.index];
+		}
+
+		public double getWeight() {
+			return weight[this.index];
+		}
+	}
+
+	/* Cursor over the edges incident to a node. A single cursor can be reused for
+	 * every node, so iterating over the adjacency lists allocates no objects:
+	 *
+	 *   Graph2.EdgeCursor cursor = graph.edgeCursor();
+	 *   for (cursor.reset(i); cursor.next();) { ... cursor.getOtherNode() ... }
+	 */
+	class EdgeCursor {
+		private int node;
+		private int position;
+		private int end;
+
+		// positions the cursor before the first edge incident to node i
+		public void reset(int i) {
+			this.node = i;
+			this.position = adjacencyLists.neighborStart(i) - 1;
+			this.end = adjacencyLists.neighborEnd(i);
+		}
+
+		// moves to the next incident edge, returns false if there is none
+		public boolean next() {
+			this.position++;
+			return this.position < this.end;
+		}
+
+		// returns the index of the current edge
+		public int getEdge() {
+			return adjacencyLists.edgeId(this.position);
+		}
+
+		// returns the endpoint of the current edge that is not the node being iterated
+		public int getOtherNode() {
+			return adjacencyLists.neighbor(this.position);
 		}
 
+		// returns the weight of the current edge
 		public double getWeight() {
-			return this.weight;
+			return weight[adjacencyLists.edgeId(this.position)];
+		}
+
+		// returns the node whose edges are being iterated
+		public int getNode() {
+			return this.node;
 		}
 	}
 
@@ -59,67 +101,130 @@ public class Graph {
 	private int sourceIndex;
 	private int destIndex;
 
-	private ArrayList<Node> nodeList;
-	private ArrayList<Edge> edgeList;
+	// the id and weight of the ith node in the file
+	private int[] nodeIds;
+	private double[] nodeWeights;
+
+	// the endpoints and weight of the eth edge in the file
+	private int[] src;
+	private int[] dst;
+	private double[] weight;
+
+	// every edge appears in the lists of both of its endpoints
+	private CsrGraph adjacencyLists;
 
-	private int[][] adjacent;
-	private ArrayList<ArrayList<Edge>> adjacencyLists;
+	// the speed at which the file was parsed, in MB/s
+	private double parseThroughput;
 
 	// Constructor for a graph, information is read from file
-	// adjacency matrix as well as adjacency list is filled
-
-	public Graph(String filename) throws java.io.FileNotFoundException {
-		File file = new File(filename);
-		Scanner input = new Scanner(file);
-		this.numberOfNodes = Integer.parseInt(input.nextLine().trim());
-		this.numberOfEdges = Integer.parseInt(input.nextLine().trim());
-		this.adjacent = new int[this.numberOfNodes][this.numberOfNodes];
-
-		for (int i = 0; i < this.numberOfNodes; i++) {
-			for (int j = 0; j < this.numberOfNodes; j++) {
-				adjacent[i][j] = 0;
-			}
-		}
-		this.nodeList = new ArrayList<Node>();
-		this.edgeList = new ArrayList<Edge>();
+	// the edge arrays as well as the adjacency lists are filled
+	// two formats are read: the number of nodes and edges followed by a line per node
+	// (id and weight) and a line per edge (both nodes and weight), or the format of
+	// instance*.txt, which starts with the name of the instance followed by the number
+	// of nodes and edges, the source and the destination, and a line per edge. The nodes
+	// in instance*.txt are numbered from 1, they are numbered from 0 in this class.
+
+	public Graph2(String filename) throws IOException {
+		this(new InstanceReader(filename));
+	}
 
-		this.adjacencyLists = new ArrayList<ArrayList<Edge>>();
-		for (int i = 0; i < this.numberOfNodes; i++) {
-			this.adjacencyLists.add(new ArrayList<Edge>());
+	// Constructor for a graph in one of the formats above, read from the reader, which is closed
+	public Graph2(InstanceReader input) throws IOException {
+		// instance*.txt starts with the name of the instance
+		boolean named = !input.nextIsNumber();
+		if (named) {
+			input.skipLine();
 		}
+		this.numberOfNodes = input.nextCount();
+		input.skipLine();
+		this.numberOfEdges = input.nextCount();
+		input.skipLine();
+		// the first node in the file, 1 for instance*.txt and 0 otherwise
+		int firstNode = 0;
+		if (named) {
+			firstNode = 1;
+			this.sourceIndex = input.nextInt() - firstNode;
+			input.skipLine();
+			this.destIndex = input.nextInt() - firstNode;
+			input.skipLine();
+		}
+
+		this.nodeIds = new int[this.numberOfNodes];
+		this.nodeWeights = new double[this.numberOfNodes];
+		this.src = new int[this.numberOfEdges];
+		this.dst = new int[this.numberOfEdges];
+		this.weight = new double[this.numberOfEdges];
 
-		for (int i = 0; i < this.numberOfNodes; i++) {
-			String line = input.nextLine().trim();
-			String[] parts = line.split("	");
-			int nodeIndex = Integer.parseInt(parts[0].trim());
-			double w = Double.parseDouble(parts[1].trim());
-			Node node = new Node(nodeIndex, w);
-			this.nodeList.add(node);
+		if (named) {
+			// the nodes are not listed, they all have weight 0
+			for (int i = 0; i < this.numberOfNodes; i++) {
+				this.nodeIds[i] = i;
+			}
+		} else {
+			for (int i = 0; i < this.numberOfNodes; i++) {
+				this.nodeIds[i] = input.nextInt();
+				this.nodeWeights[i] = input.nextDouble();
+				input.skipLine();
+			}
 		}
 		for (int i = 0; i < this.numberOfEdges; i++) {
-			String line = input.nextLine().trim();
-			String[] parts = line.split("	");
-			int firstNode = Integer.parseInt(parts[0].trim());
-			int secondNode = Integer.parseInt(parts[1].trim());
-			double weight = Double.parseDouble(parts[2].trim());
-			
-			this.adjacent[firstNode][secondNode] = 1;
-			this.adjacent[secondNode][firstNode] = 1;
+			this.src[i] = input.nextInt() - firstNode;
+			this.dst[i] = input.nextInt() - firstNode;
+			this.weight[i] = input.nextDouble();
+			input.skipLine();
+		}
+		input.close();
+		this.parseThroughput = input.getThroughput();
+		input.printSummary();
 
-			Edge edge = new Edge(firstNode, secondNode, weight);
+		this.adjacencyLists = CsrGraph.fromEdges(this.numberOfNodes, this.numberOfEdges, this.src, this.dst,
+				true, false);
+	}
 
-			this.edgeList.add(edge);
+	// Constructor for a graph, information is taken from a cached snapshot
+	private Graph2(GraphCache.Snapshot snapshot) {
+		this.numberOfNodes = snapshot.getScalar(0);
+		this.numberOfEdges = snapshot.getScalar(1);
+		this.sourceIndex = snapshot.getScalar(2);
+		this.destIndex = snapshot.getScalar(3);
+		this.nodeIds = snapshot.getIntArray(0);
+		this.src = snapshot.getIntArray(1);
+		this.dst = snapshot.getIntArray(2);
+		this.nodeWeights = snapshot.getDoubleArray(0);
+		this.weight = snapshot.getDoubleArray(1);
+		this.adjacencyLists = CsrGraph.fromArrays(this.numberOfNodes, snapshot.getIntArray(3),
+				snapshot.getIntArray(4), snapshot.getIntArray(5));
+	}
 
-			this.adjacencyLists.get(firstNode).add(edge);
-			this.adjacencyLists.get(secondNode).add(edge);
+	// loads the graph in the given file, using a cached snapshot if enabled (see GraphCache)
+	public static Graph2 load(String filename) throws IOException {
+		if (!GraphCache.isEnabled()) {
+			return new Graph2(filename);
 		}
-		input.close();
+		long start = System.nanoTime();
+		GraphCache.Snapshot snapshot = GraphCache.read(filename, GraphCache.KIND_GRAPH2);
+		if (snapshot != null) {
+			Graph2 graph = new Graph2(snapshot);
+			System.out.printf(Locale.ROOT, "Loaded %s from %s in %.3f ms%n", filename,
+					GraphCache.snapshotName(filename), (System.nanoTime() - start) / 1e6);
+			return graph;
+		}
+		Graph2 graph = new Graph2(filename);
+		CsrGraph adjacency = graph.adjacencyLists;
+		GraphCache.write(filename, GraphCache.KIND_GRAPH2, new GraphCache.Snapshot(
+				new int[] { graph.numberOfNodes, graph.numberOfEdges, graph.sourceIndex, graph.destIndex },
+				new int[][] { graph.nodeIds, graph.src, graph.dst, adjacency.getOffsets(), adjacency.getNeighbors(),
+						adjacency.getEdgeIds() },
+				new double[][] { graph.nodeWeights, graph.weight }));
+		return graph;
 	}
 
+	// returns the source node, numbered from 0
 	public int getSource() {
 		return this.sourceIndex;
 	}
 
+	// returns the destination node, numbered from 0
 	public int getDest() {
 		return this.destIndex;
 	}
@@ -136,27 +241,83 @@ public class Graph {
 
 	// returns whether node i and node j are adjacent in this graph
 	public boolean isAdjacent(int i, int j) {
-		return (this.adjacent[i][j] == 1);
+		return this.adjacencyLists.isNeighbor(i, j);
 	}
-	
-	public ArrayList<Edge> getEdgelist() {
-		return this.edgeList;
+
+	// returns a read-only view of the edges, an Edge is created on access
+	public List<Edge> getEdgelist() {
+		return new AbstractList<Edge>() {
+			public Edge get(int e) {
+				return getEdge(e);
+			}
+
+			public int size() {
+				return numberOfEdges;
+			}
+		};
 	}
 
-	public ArrayList<Node> getNodeList() {
-		return this.nodeList;
+	// returns a read-only view of the nodes, a Node is created on access
+	public List<Node> getNodeList() {
+		return new AbstractList<Node>() {
+			public Node get(int i) {
+				Objects.checkIndex(i, numberOfNodes);
+				return new Node(i);
+			}
+
+			public int size() {
+				return numberOfNodes;
+			}
+		};
 	}
+
 	// returns weight of vertex which is ith in the list
 	public double getNodeWeight(int i) {
-		return this.nodeList.get(i).weight;
+		return this.nodeWeights[i];
+	}
+
+	// returns id of vertex which is ith in the list
+	public int getNodeID(int i) {
+		return this.nodeIds[i];
 	}
 
 	public Edge getEdge(int i) {
-		return this.edgeList.get(i);
+		Objects.checkIndex(i, this.numberOfEdges);
+		return new Edge(i);
+	}
+
+	// returns the first node of edge e
+	public int getFirstNode(int e) {
+		return this.src[e];
+	}
+
+	// returns the second node of edge e
+	public int getSecondNode(int e) {
+		return this.dst[e];
+	}
+
+	// returns the weight of edge e
+	public double getEdgeWeight(int e) {
+		return this.weight[e];
+	}
+
+	// returns a reusable cursor over the edges incident to a node
+	public EdgeCursor edgeCursor() {
+		return new EdgeCursor();
+	}
+
+	// returns the adjacency lists, neighbour k of a node lies on edge edgeId(k)
+	public CsrGraph getAdjacency() {
+		return this.adjacencyLists;
+	}
+
+	// returns the speed at which the file was parsed, in MB/s
+	public double getParseThroughput() {
+		return this.parseThroughput;
 	}
 
 	public int degree(int i) {
-		return this.adjacencyLists.get(i).size();
+		return this.adjacencyLists.degree(i);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+  * File: GraphCache.java
+  * Class to store a parsed graph as a binary snapshot next to its text file
+  * (B1.txt is cached in B1.txt.bin), so that later runs can memory-map the
+  * snapshot instead of parsing the text again. A snapshot records the length
+  * and modification time of the text file it was made from and is ignored
+  * (and rewritten) as soon as either changes, or when its format version or
+  * graph kind does not match.
+  *
+  * Caching is switched off by default; run with -Dgraph.cache=true to use it.
+  *
+  * Layout (big endian): magic, version, kind, text length, text modification
+  * time, number of int scalars, the int scalars, number of int arrays, number
+  * of double arrays, then every array as its length followed by its values.
+  ******************************************************************************/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+public class GraphCache {
+
+	// the first four bytes of every snapshot, "CGRF"
+	private static final int MAGIC = 0x43475246;
+	// increase whenever the layout of a snapshot changes
+	public static final int VERSION = 1;
+	// the kinds of graph that can be cached
+	public static final int KIND_GRAPH = 1;
+	public static final int KIND_GRAPH2 = 2;
+
+	// the contents of a snapshot
+	public static class Snapshot {
+		private int[] scalars;
+		private int[][] intArrays;
+		private double[][] doubleArrays;
+
+		public Snapshot(int[] scalars, int[][] intArrays, double[][] doubleArrays) {
+			this.scalars = scalars;
+			this.intArrays = intArrays;
+			this.doubleArrays = doubleArrays;
+		}
+
+		public int getScalar(int i) {
+			return this.scalars[i];
+		}
+
+		public int[] getIntArray(int i) {
+			return this.intArrays[i];
+		}
+
+		public double[] getDoubleArray(int i) {
+			return this.doubleArrays[i];
+		}
+	}
+
+	// returns whether snapshots should be read and written
+	public static boolean isEnabled() {
+		return Boolean.getBoolean("graph.cache");
+	}
+
+	// returns the name of the snapshot belonging to a text file
+	public static String snapshotName(String filename) {
+		return filename + ".bin";
+	}
+
+	/* Reads the snapshot of a text file
+	 *
+	 * @param filename - the text file the snapshot was made from
+	 * @param kind - the kind of graph expected in the snapshot
+	 *
+	 * @returns the snapshot, or null if there is none or it is out of date
+	 */
+	public static Snapshot read(String filename, int kind) {
+		Path text = Paths.get(filename);
+		Path snapshot = Paths.get(snapshotName(filename));
+		if (!Files.isRegularFile(snapshot)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != kind) {
+				return null;
+			}
+			// the snapshot is only valid for the exact text file it was made from
+			if (buffer.getLong() != Files.size(text)
+					|| buffer.getLong() != Files.getLastModifiedTime(text).toMillis()) {
+				return null;
+			}
+			int[] scalars = readInts(buffer, buffer.getInt());
+			int[][] intArrays = new int[buffer.getInt()][];
+			double[][] doubleArrays = new double[buffer.getInt()][];
+			for (int i = 0; i < intArrays.length; i++) {
+				intArrays[i] = readInts(buffer, buffer.getInt());
+			}
+			for (int i = 0; i < doubleArrays.length; i++) {
+				double[] values = new double[buffer.getInt()];
+				buffer.asDoubleBuffer().get(values);
+				buffer.position(buffer.position() + 8 * values.length);
+				doubleArrays[i] = values;
+			}
+			return new Snapshot(scalars, intArrays, doubleArrays);
+		} catch (IOException | RuntimeException e) {
+			// a truncated or unreadable snapshot is treated as a missing one
+			System.out.println("Ignoring graph cache " + snapshot + ": " + e);
+			return null;
+		}
+	}
+
+	/* Writes the snapshot of a text file. The snapshot is written to a temporary
+	 * file first and then moved into place, so that concurrent runs never see a
+	 * partially written snapshot.
+	 *
+	 * @param filename - the text file the snapshot is made from
+	 * @param kind - the kind of graph stored in the snapshot
+	 * @param snapshot - the contents of the snapshot
+	 */
+	public static void write(String filename, int kind, Snapshot snapshot) {
+		Path text = Paths.get(filename);
+		Path target = Paths.get(snapshotName(filename));
+		Path temporary = null;
+		try {
+			Path directory = target.toAbsolutePath().getParent();
+			temporary = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(kind);
+				out.writeLong(Files.size(text));
+				out.writeLong(Files.getLastModifiedTime(text).toMillis());
+				writeInts(out, snapshot.scalars);
+				out.writeInt(snapshot.intArrays.length);
+				out.writeInt(snapshot.doubleArrays.length);
+				for (int[] values : snapshot.intArrays) {
+					writeInts(out, values);
+				}
+				for (double[] values : snapshot.doubleArrays) {
+					out.writeInt(values.length);
+					for (double value : values) {
+						out.writeDouble(value);
+					}
+				}
+			}
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// failing to write the cache does not stop the run
+			System.out.println("Could not write graph cache " + target + ": " + e);
+			try {
+				if (temporary != null) {
+					Files.deleteIfExists(temporary);
+				}
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	// reads the given number of ints from the buffer
+	private static int[] readInts(ByteBuffer buffer, int length) {
+		int[] values = new int[length];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + 4 * length);
+		return values;
+	}
+
+	// writes the length of the array followed by its values
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+}
@@ -0,0 +1,559 @@
+/*******************************************************************************
+  * File: InstanceGenerator.java
+  * Writes synthetic instances in the formats of the existing instance files,
+  * for scaling studies of the solvers.
+  * Usage: java InstanceGenerator family nodes edges seed format output [count]
+  *   family - random, geometric, powerlaw or grid
+  *   format - graph (B*.txt, read by Graph and Graph2), path (instance*.txt,
+  *            read by Graph2 and C0) or investment (budget.txt and
+  *            payoutMatrix.txt, read by InvestmentPlan; nodes is then the
+  *            number of projects, edges the number of years, and output the
+  *            directory of the two files) or facility (read by
+  *            FacilityLocation; nodes is the number of sites and edges the
+  *            number of (site, product) pairs, 20 per product) or project
+  *            (read by ProjectCrashing and B0; nodes is the number of tasks
+  *            and edges the number of precedence arcs) or scenarios (count
+  *            investment plans after each other in one file, read by
+  *            InvestmentPlanner; each one changes a few payouts and budgets
+  *            of the one before)
+  * The same family, size and seed always give the same file. Every edge is
+  * generated when it is written, and a node is described by a hash of the
+  * seed and its index instead of an array, so the memory used does not
+  * depend on the size of the instance (up to 10^7 edges and beyond).
+  *
+  * random    - both endpoints uniformly at random
+  * geometric - nodes at random points of the unit square; the nodes are
+  *             grouped in a grid of cells by index, and edges only join
+  *             nodes of the same or a neighbouring cell, with a weight that
+  *             grows with their distance
+  * powerlaw  - endpoints drawn with probability decreasing as a power of
+  *             the index of the node (Chung-Lu with exponent 2.5), so a few
+  *             nodes have a very high degree
+  * grid      - the lattice of about sqrt(nodes) by sqrt(nodes) nodes; the
+  *             number of edges follows from the number of nodes
+  * In the path format the source is node 1 and the destination node n, and
+  * the first n - 1 edges join every node to a random node with a smaller
+  * index, so that every node can be reached from the source (except in the
+  * grid, which is connected already).
+  ******************************************************************************/
+
+import java.io.*;
+import java.util.SplittableRandom;
+
+public class InstanceGenerator {
+
+	// the exponent of the degree distribution of the powerlaw family
+	private static final double POWER_LAW_EXPONENT = 2.5;
+	// the average number of nodes per cell in the geometric family
+	private static final int NODES_PER_CELL = 8;
+
+	private String family;
+	private int nodes;
+	private long edges;
+	private long seed;
+	private SplittableRandom random;
+
+	// the grid family: the number of rows and columns of the lattice
+	private int rows;
+	private int columns;
+	// the geometric family: the number of cells per side of the unit square
+	private int cellsPerSide;
+
+	/* Creates a generator of one instance
+	 *
+	 * @param family - random, geometric, powerlaw or grid
+	 * @param nodes - the number of nodes, for grid rounded to a full lattice
+	 * @param edges - the number of edges, ignored for grid
+	 * @param seed - the seed of the random numbers
+	 */
+	public InstanceGenerator(String family, int nodes, long edges, long seed) {
+		if (nodes < 2) {
+			throw new IllegalArgumentException("an instance needs at least 2 nodes");
+		}
+		this.family = family;
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
+		switch (family) {
+		case "grid":
+			this.columns = (int) Math.ceil(Math.sqrt(nodes));
+			this.rows = (nodes + columns - 1) / columns;
+			this.nodes = rows * columns;
+			this.edges = (long) rows * (columns - 1) + (long) columns * (rows - 1);
+			break;
+		case "geometric":
+		case "random":
+		case "powerlaw":
+			this.nodes = nodes;
+			this.edges = edges;
+			if (family.equals("geometric")) {
+				this.cellsPerSide = Math.max(1, (int) Math.sqrt(nodes / NODES_PER_CELL));
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("unknown family " + family);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 6) {
+			System.out.println("Usage: java InstanceGenerator family nodes edges seed format output [count]");
+			System.out.println("  family: random, geometric, powerlaw or grid");
+			System.out.println("  format: graph, path, investment, facility, project or scenarios");
+			return;
+		}
+		InstanceGenerator generator = new InstanceGenerator(args[0], Integer.parseInt(args[1]),
+				Long.parseLong(args[2]), Long.parseLong(args[3]));
+		long startTime = System.currentTimeMillis();
+		switch (args[4]) {
+		case "graph":
+			generator.writeGraph(args[5]);
+			break;
+		case "path":
+			generator.writePath(args[5]);
+			break;
+		case "investment":
+			generator.writeInvestment(args[5]);
+			break;
+		case "facility":
+			generator.writeFacility(args[5]);
+			break;
+		case "project":
+			generator.writeProject(args[5]);
+			break;
+		case "scenarios":
+			generator.writeScenarios(args[5], (args.length > 6) ? Integer.parseInt(args[6]) : 100);
+			break;
+		default:
+			System.out.println("unknown format " + args[4]);
+			return;
+		}
+		System.out.println("Wrote " + generator.getNumberOfNodes() + " nodes and " + generator.getNumberOfEdges()
+				+ " edges in " + (System.currentTimeMillis() - startTime) + " ms");
+	}
+
+	// returns the number of nodes of the instance
+	public int getNumberOfNodes() {
+		return this.nodes;
+	}
+
+	// returns the number of edges of the instance
+	public long getNumberOfEdges() {
+		return this.edges;
+	}
+
+	/* Writes the instance in the format of B*.txt: the number of nodes and edges, a
+	 * line per node with its index and a weight from 1 to 10, and a line per edge with
+	 * both nodes (numbered from 0) and the weight 1
+	 *
+	 * @param filename - the file to write
+	 */
+	public void writeGraph(String filename) throws IOException {
+		if (edges > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Graph cannot read more than " + Integer.MAX_VALUE + " edges");
+		}
+		try (Output out = new Output(filename)) {
+			out.writeLong(nodes).newLine();
+			out.writeLong(edges).newLine();
+			for (int i = 0; i < nodes; i++) {
+				out.writeLong(i).tab().writeLong(1 + random.nextInt(10)).newLine();
+			}
+			long[] edge = new long[3];
+			for (long e = 0; e < edges; e++) {
+				nextEdge(e, edge);
+				out.writeLong(edge[0]).tab().writeLong(edge[1]).tab().writeLong(1).newLine();
+			}
+		}
+	}
+
+	/* Writes the instance in the format of instance*.txt: the name, the number of nodes
+	 * and edges, the source and the destination, and a line per edge with both nodes
+	 * (numbered from 1) and a weight with one decimal
+	 *
+	 * @param filename - the file to write
+	 */
+	public void writePath(String filename) throws IOException {
+		// the edges that make every node reachable from the source
+		long backbone = family.equals("grid") ? 0 : nodes - 1;
+		if (edges + backbone > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Graph2 cannot read more than " + Integer.MAX_VALUE + " edges");
+		}
+		try (Output out = new Output(filename)) {
+			out.writeText(family + "-" + nodes + "-" + edges + "-" + seed).newLine();
+			out.writeLong(nodes).newLine();
+			out.writeLong(edges + backbone).newLine();
+			out.writeLong(1).newLine();
+			out.writeLong(nodes).newLine();
+			for (int i = 1; i <= backbone; i++) {
+				int from = random.nextInt(i);
+				out.writeLong(from + 1).space().writeLong(i + 1).space().writeTenths(10 + random.nextInt(91)).newLine();
+			}
+			long[] edge = new long[3];
+			for (long e = 0; e < edges; e++) {
+				nextEdge(e, edge);
+				out.writeLong(edge[0] + 1).space().writeLong(edge[1] + 1).space().writeTenths(edge[2]).newLine();
+			}
+		}
+		this.edges += backbone;
+	}
+
+	/* Writes an investment plan in the format of budget.txt and payoutMatrix.txt, with
+	 * the number of projects as the number of nodes and the number of years as the
+	 * number of edges. The projects cost money in the first third of the years and
+	 * pay out afterwards; the budget is spent in the same years.
+	 *
+	 * @param directory - the directory of budget.txt and payoutMatrix.txt
+	 */
+	public void writeInvestment(String directory) throws IOException {
+		int projects = nodes;
+		long years = edges;
+		if ((long) projects * years > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("the payout matrix is too large to read");
+		}
+		new File(directory).mkdirs();
+		long investmentYears = Math.max(1, years / 3);
+		try (Output out = new Output(new File(directory, "budget.txt").getPath())) {
+			out.writeLong(years).newLine();
+			for (long year = 0; year < years; year++) {
+				out.writeLong(year < investmentYears ? 100 * (1 + random.nextInt(10)) : 0).newLine();
+			}
+		}
+		try (Output out = new Output(new File(directory, "payoutMatrix.txt").getPath())) {
+			out.writeLong(projects).newLine();
+			out.writeLong(years).newLine();
+			for (int project = 0; project < projects; project++) {
+				for (long year = 0; year < years; year++) {
+					if (year > 0) {
+						out.space();
+					}
+					long payout = year < investmentYears ? -10 * (1 + random.nextInt(30)) : 10 * random.nextInt(60);
+					out.writeLong(payout);
+				}
+				out.newLine();
+			}
+		}
+	}
+
+	/* Writes a stream of investment plans in one file, each in the format of budget.txt
+	 * followed by payoutMatrix.txt, with the number of projects and years as in
+	 * writeInvestment. The first plan is drawn like there, and every next plan changes
+	 * about one in ten of the payouts and budgets of the plan before by up to 20%, as
+	 * when the forecasts are revised.
+	 *
+	 * @param filename - the file to write
+	 * @param count - the number of plans
+	 */
+	public void writeScenarios(String filename, int count) throws IOException {
+		int projects = nodes;
+		if ((long) projects * edges > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("the payout matrix is too large to read");
+		}
+		int years = (int) edges;
+		int investmentYears = Math.max(1, years / 3);
+		long[] budget = new long[years];
+		long[][] payout = new long[projects][years];
+		for (int year = 0; year < investmentYears; year++) {
+			budget[year] = 100 * (1 + random.nextInt(10));
+		}
+		for (int project = 0; project < projects; project++) {
+			for (int year = 0; year < years; year++) {
+				payout[project][year] = year < investmentYears ? -10 * (1 + random.nextInt(30)) : 10 * random.nextInt(60);
+			}
+		}
+		try (Output out = new Output(filename)) {
+			for (int scenario = 0; scenario < count; scenario++) {
+				if (scenario > 0) {
+					for (int year = 0; year < investmentYears; year++) {
+						if (random.nextInt(10) == 0) {
+							budget[year] = revise(budget[year]);
+						}
+					}
+					for (int project = 0; project < projects; project++) {
+						for (int year = 0; year < years; year++) {
+							if (random.nextInt(10) == 0) {
+								payout[project][year] = revise(payout[project][year]);
+							}
+						}
+					}
+				}
+				out.writeLong(years).newLine();
+				for (int year = 0; year < years; year++) {
+					out.writeLong(budget[year]).newLine();
+				}
+				out.writeLong(projects).newLine();
+				out.writeLong(years).newLine();
+				for (int project = 0; project < projects; project++) {
+					for (int year = 0; year < years; year++) {
+						if (year > 0) {
+							out.space();
+						}
+						out.writeLong(payout[project][year]);
+					}
+					out.newLine();
+				}
+			}
+		}
+	}
+
+	// returns the amount changed by -20% to 20%
+	private long revise(long amount) {
+		return amount + amount * (random.nextInt(41) - 20) / 100;
+	}
+
+	/* Writes a facility location instance in the format of FacilityLocation, with the
+	 * nodes as the sites and an edge per (site, product) pair: the site is the first
+	 * node of the edge and the cost per unit its weight. Product e % products belongs
+	 * to edge e, so every product has about 20 pairs. The demand of a product is 10 to
+	 * 1000, the sites together can supply about three times the total demand, and the
+	 * fixed cost of a site is about the cost of supplying its capacity.
+	 *
+	 * @param filename - the file to write
+	 */
+	public void writeFacility(String filename) throws IOException {
+		int products = (int) Math.max(1, Math.min(Integer.MAX_VALUE, edges / 20));
+		// the demands are drawn twice from the same seed: for the total first
+		SplittableRandom demands = new SplittableRandom(mix(seed + 1));
+		long totalDemand = 0;
+		for (int p = 0; p < products; p++) {
+			totalDemand += 10 + demands.nextInt(991);
+		}
+		double averageCapacity = 3.0 * totalDemand / nodes;
+		try (Output out = new Output(filename)) {
+			out.writeLong(nodes).space().writeLong(products).newLine();
+			out.writeLong(edges).newLine();
+			for (int i = 0; i < nodes; i++) {
+				long capacity = Math.max(1, Math.round(averageCapacity * (0.5 + random.nextDouble())));
+				long fixedCost = Math.round(capacity * (5 + random.nextInt(6)) * (0.5 + random.nextDouble()));
+				out.writeLong(fixedCost).tab().writeLong(capacity).newLine();
+			}
+			demands = new SplittableRandom(mix(seed + 1));
+			for (int p = 0; p < products; p++) {
+				out.writeLong(10 + demands.nextInt(991)).newLine();
+			}
+			long[] edge = new long[3];
+			for (long e = 0; e < edges; e++) {
+				nextEdge(e, edge);
+				out.writeLong(edge[0]).tab().writeLong(e % products).tab().writeTenths(edge[2]).newLine();
+			}
+		}
+	}
+
+	/* Writes a project in the format of ProjectCrashing, with a task per node and a
+	 * precedence arc per edge, from the node with the lower to the one with the higher
+	 * index so that the arcs form a DAG (self loops are left out). Every task has 1 to
+	 * 3 crash levels: the normal duration from 2 to 20, and every faster level takes
+	 * 20 to 50% less time for 10 to 60% more cost.
+	 *
+	 * @param filename - the file to write
+	 */
+	public void writeProject(String filename) throws IOException {
+		// the arcs are drawn twice from the same seed: to count the self loops first
+		SplittableRandom saved = random;
+		random = new SplittableRandom(mix(seed + 2));
+		long loops = 0;
+		long[] edge = new long[3];
+		for (long e = 0; e < edges; e++) {
+			nextEdge(e, edge);
+			if (edge[0] == edge[1]) {
+				loops++;
+			}
+		}
+		try (Output out = new Output(filename)) {
+			out.writeLong(nodes).tab().writeLong(edges - loops).newLine();
+			for (int i = 0; i < nodes; i++) {
+				int levels = 1 + saved.nextInt(3);
+				long duration = 2 + saved.nextInt(19);
+				long cost = 10 + saved.nextInt(91);
+				out.writeLong(levels);
+				for (int l = 0; l < levels; l++) {
+					out.tab().writeLong(duration).tab().writeLong(cost);
+					duration = Math.max(1, Math.round(duration * (0.5 + 0.3 * saved.nextDouble())));
+					cost = Math.round(cost * (1.1 + 0.5 * saved.nextDouble()));
+				}
+				out.newLine();
+			}
+			random = new SplittableRandom(mix(seed + 2));
+			for (long e = 0; e < edges; e++) {
+				nextEdge(e, edge);
+				if (edge[0] != edge[1]) {
+					out.writeLong(Math.min(edge[0], edge[1])).tab().writeLong(Math.max(edge[0], edge[1])).newLine();
+				}
+			}
+		}
+		random = saved;
+		this.edges -= loops;
+	}
+
+	/* Generates the edge with the given index
+	 *
+	 * @param e - the index of the edge
+	 * @param edge - receives both nodes, numbered from 0, and the weight in tenths
+	 */
+	private void nextEdge(long e, long[] edge) {
+		switch (family) {
+		case "grid": {
+			// the horizontal edges first, row by row, then the vertical ones
+			long horizontal = (long) rows * (columns - 1);
+			if (e < horizontal) {
+				long row = e / (columns - 1);
+				long column = e % (columns - 1);
+				edge[0] = row * columns + column;
+				edge[1] = edge[0] + 1;
+			} else {
+				edge[0] = e - horizontal;
+				edge[1] = edge[0] + columns;
+			}
+			edge[2] = 10 + random.nextInt(91);
+			break;
+		}
+		case "geometric": {
+			int u = random.nextInt(nodes);
+			int cell = cellOf(u);
+			int cellRow = cell / cellsPerSide + random.nextInt(3) - 1;
+			int cellColumn = cell % cellsPerSide + random.nextInt(3) - 1;
+			cellRow = Math.min(cellsPerSide - 1, Math.max(0, cellRow));
+			cellColumn = Math.min(cellsPerSide - 1, Math.max(0, cellColumn));
+			int other = cellRow * cellsPerSide + cellColumn;
+			int first = firstNodeOf(other);
+			int v = first + random.nextInt(firstNodeOf(other + 1) - first);
+			double dx = coordinate(u, 0) - coordinate(v, 0);
+			double dy = coordinate(u, 1) - coordinate(v, 1);
+			edge[0] = u;
+			edge[1] = v;
+			// the distance in units of the width of a cell, at least 0.1
+			edge[2] = 1 + Math.round(10 * cellsPerSide * Math.sqrt(dx * dx + dy * dy));
+			break;
+		}
+		case "powerlaw":
+			edge[0] = powerLawNode();
+			edge[1] = powerLawNode();
+			edge[2] = 10 + random.nextInt(91);
+			break;
+		default:
+			edge[0] = random.nextInt(nodes);
+			edge[1] = random.nextInt(nodes);
+			edge[2] = 10 + random.nextInt(91);
+		}
+	}
+
+	// returns the cell of a node in the geometric family: the nodes are divided evenly
+	// over the cells in order of their index
+	private int cellOf(int node) {
+		long cells = (long) cellsPerSide * cellsPerSide;
+		// the largest cell whose first node is at most node
+		return (int) (((node + 1L) * cells - 1) / nodes);
+	}
+
+	// returns the first node of a cell in the geometric family, the number of nodes for
+	// the cell after the last
+	private int firstNodeOf(int cell) {
+		long cells = (long) cellsPerSide * cellsPerSide;
+		return (int) (((long) cell * nodes) / cells);
+	}
+
+	// returns the x (axis 0) or y (axis 1) coordinate of a node in the geometric family,
+	// a random point of its cell derived from the seed and the node alone
+	private double coordinate(int node, int axis) {
+		int cell = cellOf(node);
+		int index = (axis == 0) ? cell % cellsPerSide : cell / cellsPerSide;
+		long hash = mix(seed * 0x9E3779B97F4A7C15L + 2L * node + axis);
+		double offset = (hash >>> 11) * 0x1.0p-53;
+		return (index + offset) / cellsPerSide;
+	}
+
+	// returns a node of the powerlaw family: node i is chosen with probability about
+	// proportional to (i + 1)^(-1 / (exponent - 1)), by inverting the distribution
+	private int powerLawNode() {
+		double beta = 1 / (POWER_LAW_EXPONENT - 1);
+		double u = random.nextDouble();
+		int node = (int) (nodes * Math.pow(u, 1 / (1 - beta)));
+		return Math.min(nodes - 1, node);
+	}
+
+	// returns a well mixed 64-bit hash of the value (the finalizer of SplitMix64)
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/* Writes numbers straight into a byte buffer, without creating a String for every
+	 * number, and passes the buffer on to the file when it is full
+	 */
+	private static class Output implements Closeable {
+		private OutputStream out;
+		private byte[] buffer = new byte[1 << 16];
+		private int size;
+		// the digits of a number, last digit first
+		private byte[] digits = new byte[20];
+
+		Output(String filename) throws IOException {
+			this.out = new FileOutputStream(filename);
+		}
+
+		// makes room for count more bytes in the buffer
+		private void ensure(int count) throws IOException {
+			if (size + count > buffer.length) {
+				out.write(buffer, 0, size);
+				size = 0;
+			}
+		}
+
+		Output writeLong(long value) throws IOException {
+			ensure(21);
+			if (value < 0) {
+				buffer[size++] = '-';
+				value = -value;
+			}
+			int count = 0;
+			do {
+				digits[count++] = (byte) ('0' + value % 10);
+				value /= 10;
+			} while (value > 0);
+			while (count > 0) {
+				buffer[size++] = digits[--count];
+			}
+			return this;
+		}
+
+		// writes a non-negative number of tenths as a number with one decimal
+		Output writeTenths(long tenths) throws IOException {
+			writeLong(tenths / 10);
+			ensure(2);
+			buffer[size++] = '.';
+			buffer[size++] = (byte) ('0' + tenths % 10);
+			return this;
+		}
+
+		Output writeText(String text) throws IOException {
+			for (int i = 0; i < text.length(); i++) {
+				ensure(1);
+				buffer[size++] = (byte) text.charAt(i);
+			}
+			return this;
+		}
+
+		Output tab() throws IOException {
+			ensure(1);
+			buffer[size++] = '\t';
+			return this;
+		}
+
+		Output space() throws IOException {
+			ensure(1);
+			buffer[size++] = ' ';
+			return this;
+		}
+
+		Output newLine() throws IOException {
+			ensure(1);
+			buffer[size++] = '\n';
+			return this;
+		}
+
+		public void close() throws IOException {
+			out.write(buffer, 0, size);
+			size = 0;
+			out.close();
+		}
+	}
+}
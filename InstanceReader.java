@@ -0,0 +1,339 @@
+/*******************************************************************************
+  * File: InstanceReader.java
+  * Class to read the numbers in the instance files (B*.txt, instance*.txt,
+  * budget.txt, payoutMatrix.txt) quickly. The file is streamed through a
+  * FileChannel into a reusable buffer and the bytes are turned into int and
+  * double values directly, without creating a String per line or token.
+  * Tokens may be separated by any mix of tabs, spaces and (Windows or Unix)
+  * line breaks, so trailing whitespace at the end of a line is accepted.
+  * Run with -Dparse.summary=true to print how fast every file is parsed.
+  ******************************************************************************/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class InstanceReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	// exact powers of ten, for the fast path of nextDouble
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private String filename;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private long bytesRead;
+	private long startTime;
+	private long endTime;
+	// scratch space for the rare numbers that need Double.parseDouble
+	private char[] token = new char[64];
+
+	// opens the file with the given name for reading
+	public InstanceReader(String filename) throws IOException {
+		this.filename = filename;
+		this.startTime = System.nanoTime();
+		try {
+			this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		} catch (java.nio.file.NoSuchFileException e) {
+			throw new FileNotFoundException(filename);
+		}
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		// start with an empty buffer, the first read fills it
+		this.buffer.flip();
+	}
+
+	// reads the given bytes instead of a file, e.g. an instance received by
+	// OptimizationService; the name is used in messages
+	public InstanceReader(String name, byte[] data) {
+		this.filename = name;
+		this.startTime = System.nanoTime();
+		this.buffer = ByteBuffer.wrap(data);
+		this.bytesRead = data.length;
+	}
+
+	// returns the next byte of the file, or -1 at the end of the file
+	private int read() throws IOException {
+		if (!this.buffer.hasRemaining()) {
+			if (this.channel == null) {
+				return -1;
+			}
+			this.buffer.clear();
+			int n = this.channel.read(this.buffer);
+			this.buffer.flip();
+			if (n <= 0) {
+				return -1;
+			}
+			this.bytesRead += n;
+		}
+		return this.buffer.get() & 0xff;
+	}
+
+	// returns the next byte of the file without consuming it, or -1 at the end
+	private int peek() throws IOException {
+		int b = read();
+		unread(b);
+		return b;
+	}
+
+	// puts back the byte that was just read, so that the line break ending a
+	// token is still seen by skipLine
+	private void unread(int b) {
+		if (b >= 0) {
+			this.buffer.position(this.buffer.position() - 1);
+		}
+	}
+
+	private static boolean isWhitespace(int b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f';
+	}
+
+	// skips whitespace and returns the first byte of the next token, or -1
+	private int skipWhitespace() throws IOException {
+		int b = read();
+		while (b >= 0 && isWhitespace(b)) {
+			b = read();
+		}
+		return b;
+	}
+
+	// returns whether there is another token in the file
+	public boolean hasNext() throws IOException {
+		int b = skipWhitespace();
+		unread(b);
+		return b >= 0;
+	}
+
+	// returns whether the next token starts like a number
+	public boolean nextIsNumber() throws IOException {
+		int b = skipWhitespace();
+		unread(b);
+		return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.';
+	}
+
+	// reads the next token as an integer
+	public int nextInt() throws IOException {
+		long value = nextLong();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new IOException(this.filename + ": " + value + " does not fit in an int after byte " + position());
+		}
+		return (int) value;
+	}
+
+	// reads the next token as the number of items that follow, which is not negative
+	public int nextCount() throws IOException {
+		int value = nextInt();
+		if (value < 0) {
+			throw new IOException(this.filename + ": expected a count but found " + value + " after byte "
+					+ position());
+		}
+		return value;
+	}
+
+	// reads the next token as a long
+	public long nextLong() throws IOException {
+		int b = skipWhitespace();
+		boolean negative = false;
+		if (b == '-' || b == '+') {
+			negative = (b == '-');
+			b = read();
+		}
+		if (b < '0' || b > '9') {
+			throw unexpected(b, "an integer");
+		}
+		long value = 0;
+		while (b >= '0' && b <= '9') {
+			if (value > (Long.MAX_VALUE - (b - '0')) / 10) {
+				throw new IOException(this.filename + ": the integer at byte " + position()
+						+ " does not fit in a long");
+			}
+			value = value * 10 + (b - '0');
+			b = read();
+		}
+		if (b >= 0 && !isWhitespace(b)) {
+			throw unexpected(b, "an integer");
+		}
+		unread(b);
+		return negative ? -value : value;
+	}
+
+	// reads the next token as a double
+	public double nextDouble() throws IOException {
+		int b = skipWhitespace();
+		int length = 0;
+		boolean negative = false;
+		if (b == '-' || b == '+') {
+			negative = (b == '-');
+			length = append(length, b);
+			b = read();
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean exact = true;
+		boolean seenDigit = false;
+		// integer part
+		while (b >= '0' && b <= '9') {
+			seenDigit = true;
+			length = append(length, b);
+			if (digits < 18) {
+				mantissa = mantissa * 10 + (b - '0');
+				if (mantissa != 0) {
+					digits++;
+				}
+			} else {
+				exact = false;
+			}
+			b = read();
+		}
+		// fractional part
+		if (b == '.') {
+			length = append(length, b);
+			b = read();
+			while (b >= '0' && b <= '9') {
+				seenDigit = true;
+				length = append(length, b);
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (b - '0');
+					if (mantissa != 0) {
+						digits++;
+					}
+					scale++;
+				} else {
+					exact = false;
+				}
+				b = read();
+			}
+		}
+		if (!seenDigit) {
+			throw unexpected(b, "a number");
+		}
+		// exponent
+		int exponent = 0;
+		if (b == 'e' || b == 'E') {
+			length = append(length, b);
+			b = read();
+			boolean negativeExponent = false;
+			if (b == '-' || b == '+') {
+				negativeExponent = (b == '-');
+				length = append(length, b);
+				b = read();
+			}
+			if (b < '0' || b > '9') {
+				throw unexpected(b, "an exponent");
+			}
+			while (b >= '0' && b <= '9') {
+				length = append(length, b);
+				exponent = Math.min(exponent * 10 + (b - '0'), 100000);
+				b = read();
+			}
+			if (negativeExponent) {
+				exponent = -exponent;
+			}
+		}
+		if (b >= 0 && !isWhitespace(b)) {
+			throw unexpected(b, "a number");
+		}
+		unread(b);
+		int power = exponent - scale;
+		// a mantissa below 2^53 times an exact power of ten is rounded correctly
+		if (exact && mantissa < (1L << 53) && power >= -22 && power <= 22) {
+			double value = (double) mantissa;
+			value = (power >= 0) ? value * POWERS_OF_TEN[power] : value / POWERS_OF_TEN[-power];
+			return negative ? -value : value;
+		}
+		return Double.parseDouble(new String(this.token, 0, length));
+	}
+
+	// skips the next token, e.g. the name of an instance
+	public void skipToken() throws IOException {
+		int b = skipWhitespace();
+		while (b >= 0 && !isWhitespace(b)) {
+			b = read();
+		}
+		unread(b);
+	}
+
+	// skips the rest of the current line, including the line break
+	public void skipLine() throws IOException {
+		int b = read();
+		while (b >= 0 && b != '\n') {
+			b = read();
+		}
+	}
+
+	// returns whether only whitespace is left on the current line
+	public boolean atEndOfLine() throws IOException {
+		int b = peek();
+		while (b == ' ' || b == '\t' || b == '\r' || b == '\f') {
+			read();
+			b = peek();
+		}
+		return b < 0 || b == '\n';
+	}
+
+	// returns the number of bytes read from the file so far
+	public long getBytesRead() {
+		return this.bytesRead;
+	}
+
+	// returns the time in nanoseconds between opening and closing the reader
+	public long getElapsedNanos() {
+		long end = (this.endTime != 0) ? this.endTime : System.nanoTime();
+		return end - this.startTime;
+	}
+
+	// returns the parse throughput in megabytes (10^6 bytes) per second
+	public double getThroughput() {
+		return this.bytesRead / 1e6 / Math.max(getElapsedNanos(), 1) * 1e9;
+	}
+
+	// returns a one-line summary of how fast the file was parsed
+	public String getSummary() {
+		return String.format(java.util.Locale.ROOT, "Parsed %s: %.3f MB in %.3f ms (%.1f MB/s)", this.filename,
+				this.bytesRead / 1e6, getElapsedNanos() / 1e6, getThroughput());
+	}
+
+	// prints the summary if the system property parse.summary is true
+	public void printSummary() {
+		if (Boolean.getBoolean("parse.summary")) {
+			System.out.println(getSummary());
+		}
+	}
+
+	// closes the file, the timing used for the throughput stops here
+	public void close() throws IOException {
+		if (this.endTime == 0) {
+			this.endTime = System.nanoTime();
+		}
+		if (this.channel != null) {
+			this.channel.close();
+		}
+	}
+
+	// stores a byte of the current token in case it has to be parsed the slow way
+	private int append(int length, int b) {
+		if (length == this.token.length) {
+			this.token = java.util.Arrays.copyOf(this.token, 2 * length);
+		}
+		this.token[length] = (char) b;
+		return length + 1;
+	}
+
+	// creates the exception thrown when the file does not contain what we expect
+	private IOException unexpected(int b, String expected) {
+		String found = (b < 0) ? "the end of the file" : "'" + (char) b + "'";
+		if (b < 0) {
+			return new EOFException(this.filename + ": expected " + expected + " but found " + found);
+		}
+		return new IOException(this.filename + ": expected " + expected + " but found " + found + " after byte "
+				+ position());
+	}
+
+	// returns the number of bytes of the file consumed so far
+	private long position() {
+		return this.bytesRead - this.buffer.remaining();
+	}
+}
@@ -0,0 +1,568 @@
+/*******************************************************************************
+  * File: InvestmentPlanner.java
+  * Class to plan the investments of InvestmentPlan for a stream of budget and
+  * payout scenarios with rules read from a file. The model is built once for
+  * the number of projects and years; every next scenario only changes the
+  * payouts and budgets that differ from the scenario before, and the solver
+  * starts from the last solution, instead of building the model again.
+  * Usage: java [-Dsolver=java] InvestmentPlanner rules scenarios [-rebuild]
+  *
+  * The scenario file holds any number of scenarios after each other, every
+  * one as budget.txt followed by payoutMatrix.txt: the number of years, the
+  * budget of every year, the number of projects and years, and the payout
+  * of every project in every year. With -rebuild the model is built again
+  * for every scenario, to compare. With -Dresults=file a row per scenario is
+  * appended to a CSV or JSON Lines file as soon as it is solved, see
+  * ResultSink. A scenario that was planned before with the same rules is
+  * answered from the cache (-Dcache.size, -Dcache.dir and -Dcache.max_mb),
+  * see SolveCache, without changing the model.
+  *
+  * The rules file has a rule per line, projects are numbered from 1 and
+  * anything after # is a comment:
+  *   interest r            money in the bank grows by a factor 1 + r a year (0.1)
+  *   borrowing_rate r      a loan grows by a factor 1 + r a year (0.2), only
+  *                         used by StochasticInvestment to cover shortfalls
+  *   minimum_fraction f    a chosen project gets at least this fraction (0.1)
+  *   minimum_projects n    at least n projects are chosen
+  *   maximum_projects n    at most n projects are chosen
+  *   exclusive p q ...     at most one of the projects is chosen
+  *   at_least_one p q ...  at least one of the projects is chosen
+  *   requires p q          project p is only chosen if q is
+  *   fraction_at_most p q  the fraction invested in p is at most that in q
+  * See investmentRules.txt for the rules of the exercise.
+  ******************************************************************************/
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class InvestmentPlanner {
+
+	// the rules of the projects, read from a file
+	public static class Rules {
+		private double interest = 0.1;
+		private double borrowingRate = 0.2;
+		private double minimumFraction = 0.1;
+		private int minimumProjects = 0;
+		private int maximumProjects = Integer.MAX_VALUE;
+		// every rule on a set of projects as its name and the projects (from 0)
+		private ArrayList<String> names = new ArrayList<String>();
+		private ArrayList<int[]> projects = new ArrayList<int[]>();
+
+		// creates the rules without any restriction on the projects
+		public Rules() {
+		}
+
+		/* Reads the rules from a file in the format described above
+		 *
+		 * @param filename - the file with the rules
+		 */
+		public Rules(String filename) throws IOException {
+			try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+				String line;
+				int lineNumber = 0;
+				while ((line = in.readLine()) != null) {
+					lineNumber++;
+					int comment = line.indexOf('#');
+					if (comment >= 0) {
+						line = line.substring(0, comment);
+					}
+					String[] tokens = line.trim().split("\\s+");
+					if (tokens[0].isEmpty()) {
+						continue;
+					}
+					try {
+						addRule(tokens);
+					} catch (RuntimeException e) {
+						throw new IOException(filename + ":" + lineNumber + ": " + e.getMessage(), e);
+					}
+				}
+			}
+		}
+
+		// adds the rule of one line, split into tokens
+		private void addRule(String[] tokens) {
+			switch (tokens[0]) {
+			case "interest":
+				interest = Double.parseDouble(tokens[1]);
+				break;
+			case "borrowing_rate":
+				borrowingRate = Double.parseDouble(tokens[1]);
+				break;
+			case "minimum_fraction":
+				minimumFraction = Double.parseDouble(tokens[1]);
+				break;
+			case "minimum_projects":
+				minimumProjects = Integer.parseInt(tokens[1]);
+				break;
+			case "maximum_projects":
+				maximumProjects = Integer.parseInt(tokens[1]);
+				break;
+			case "exclusive":
+			case "at_least_one":
+			case "requires":
+			case "fraction_at_most":
+				int[] rule = new int[tokens.length - 1];
+				for (int k = 0; k < rule.length; k++) {
+					rule[k] = Integer.parseInt(tokens[k + 1]) - 1;
+				}
+				if (rule.length < (tokens[0].equals("requires") || tokens[0].equals("fraction_at_most") ? 2 : 1)) {
+					throw new IllegalArgumentException(tokens[0] + " needs more projects");
+				}
+				names.add(tokens[0]);
+				projects.add(rule);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown rule " + tokens[0]);
+			}
+		}
+
+		// returns the interest on the money in the bank
+		public double getInterest() {
+			return this.interest;
+		}
+
+		// returns the interest on a loan
+		public double getBorrowingRate() {
+			return this.borrowingRate;
+		}
+
+		// checks that the rules only refer to the given number of projects
+		public void check(int numberOfProjects) {
+			for (int[] rule : projects) {
+				for (int project : rule) {
+					if (project < 0 || project >= numberOfProjects) {
+						throw new IllegalArgumentException("a rule refers to project " + (project + 1) + " of "
+								+ numberOfProjects);
+					}
+				}
+			}
+		}
+	}
+
+	private Rules rules;
+	private int numberOfProjects;
+	private int numberOfYears;
+
+	// the model, built once
+	private LinearSolver solver;
+	private int[] projectsChosen;
+	private int[] percentageInvested;
+	private int[] moneyInBank;
+	// the cash flow of every year and the rows that bound the spending in every year
+	private int[] balanceRows;
+	private int[] budgetRows;
+	// the scenario in the model
+	private int[] budget;
+	private int[][] payout;
+	// the projects chosen in the last feasible plan of the model, the start of the next solve
+	private double[] start;
+
+	// the solver of the caller, if any
+	private LinearSolver givenSolver;
+	// the results of earlier scenarios, if set
+	private SolveCache cache;
+
+	// the last plan: the final capital and, for every project, whether it is chosen and
+	// the fraction invested, and the money in the bank at the end of every year
+	private double objValue;
+	private boolean[] chosen;
+	private double[] fractions;
+	private double[] capital;
+	// whether the last plan is proven optimal, and not only the best plan found before
+	// the solver was stopped by a limit
+	private boolean optimal;
+
+	// statistics of the last scenario
+	private int coefficientsChanged;
+	private int budgetsChanged;
+
+	/* Creates a planner for a number of projects and years
+	 *
+	 * @param rules - the rules of the projects
+	 */
+	public InvestmentPlanner(Rules rules, int numberOfProjects, int numberOfYears) {
+		this.rules = rules;
+		this.numberOfProjects = numberOfProjects;
+		this.numberOfYears = numberOfYears;
+		rules.check(numberOfProjects);
+	}
+
+	/* Creates a planner that builds its model on the given empty solver, e.g. one of a
+	 * SolverPool, which is left to the caller to clear or end
+	 */
+	public InvestmentPlanner(Rules rules, int numberOfProjects, int numberOfYears, LinearSolver solver) {
+		this(rules, numberOfProjects, numberOfYears);
+		this.givenSolver = solver;
+	}
+
+	/* Looks up the plan of the same scenario and rules in the cache before solving, and
+	 * stores it after if it is proven optimal. A scenario found in the cache leaves the
+	 * model as it is, so the next scenario is still compared with the last one that was
+	 * solved.
+	 */
+	public void setCache(SolveCache cache) {
+		this.cache = cache;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java [-Dsolver=java] InvestmentPlanner rules scenarios [-rebuild]");
+			return;
+		}
+		Rules rules = new Rules(args[0]);
+		boolean rebuild = args.length > 2 && args[2].equals("-rebuild");
+		InvestmentPlanner planner = null;
+		SolveCache cache = SolveCache.getShared();
+		long totalTime = 0;
+		int scenarios = 0;
+		try (InstanceReader in = new InstanceReader(args[1]);
+				ResultSink sink = ResultSink.fromProperty("scenario", "status", "value", "projects",
+						"payouts_changed", "budgets_changed", "running_ms")) {
+			while (in.hasNext()) {
+				int[] budget = readBudget(in);
+				int[][] payout = readPayout(in);
+				long startTime = System.nanoTime();
+				if (planner == null || rebuild) {
+					if (planner != null) {
+						planner.end();
+					}
+					planner = new InvestmentPlanner(rules, payout.length, budget.length);
+					planner.setCache(cache);
+				}
+				boolean solved = planner.solve(budget, payout);
+				long time = System.nanoTime() - startTime;
+				totalTime += time;
+				scenarios++;
+				if (!solved) {
+					System.out.println("Scenario " + scenarios + ": no plan meets the rules");
+					if (sink != null) {
+						sink.write(scenarios, "infeasible", null, null, planner.coefficientsChanged,
+								planner.budgetsChanged, time / 1000000.0);
+					}
+					continue;
+				}
+				StringBuilder chosen = new StringBuilder();
+				for (int p = 0; p < planner.numberOfProjects; p++) {
+					if (planner.isChosen(p)) {
+						chosen.append(chosen.length() == 0 ? "" : " ").append(p + 1);
+					}
+				}
+				System.out.println("Scenario " + scenarios + ": final capital " + planner.getObjValue()
+						+ ", projects " + chosen + ", " + planner.coefficientsChanged + " payouts and "
+						+ planner.budgetsChanged + " budgets changed, " + (time / 1000000.0) + "ms");
+				if (sink != null) {
+					sink.write(scenarios, planner.isOptimal() ? "optimal" : "feasible", planner.getObjValue(),
+							chosen.toString(), planner.coefficientsChanged, planner.budgetsChanged,
+							time / 1000000.0);
+				}
+			}
+		} finally {
+			if (planner != null) {
+				planner.end();
+			}
+		}
+		System.out.println(scenarios + " scenarios in " + (totalTime / 1000000.0) + "ms");
+		if (cache != null) {
+			System.out.println(cache.getSummary());
+		}
+	}
+
+	/* Reads the budget of every year in the format of budget.txt
+	 *
+	 * @returns the budget of every year
+	 */
+	public static int[] readBudget(InstanceReader in) throws IOException {
+		int[] budget = new int[in.nextCount()];
+		for (int year = 0; year < budget.length; year++) {
+			budget[year] = in.nextInt();
+		}
+		return budget;
+	}
+
+	/* Reads the payout matrix in the format of payoutMatrix.txt
+	 *
+	 * @returns the payout of every project in every year
+	 */
+	public static int[][] readPayout(InstanceReader in) throws IOException {
+		int rows = in.nextCount();
+		int cols = in.nextCount();
+		int[][] payout = new int[rows][cols];
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < cols; j++) {
+				payout[i][j] = in.nextInt();
+			}
+		}
+		return payout;
+	}
+
+	// builds the model of InvestmentPlan for the scenario, with the rules
+	private void buildModel(int[] budget, int[][] payout) {
+		solver = (givenSolver != null) ? givenSolver : LinearSolver.create();
+		solver.setQuiet();
+		int numberProjects = numberOfProjects;
+		int numberYears = numberOfYears;
+		double growth = 1 + rules.interest;
+		projectsChosen = solver.addVariables(numberProjects, 0, 1, true);
+		percentageInvested = solver.addVariables(numberProjects, 0, 1, false);
+		moneyInBank = solver.addVariables(numberYears + 1, 0, Double.POSITIVE_INFINITY, false);
+		// maximise the money in the bank at the end, after the interest of the last year
+		solver.maximize(new LinearExpr().addTerm(moneyInBank[numberYears], 1));
+		// the money in the bank at the end of a year is the money of the year before
+		// with interest, plus the budget and the cash flows of the projects
+		balanceRows = new int[numberYears];
+		for (int year = 0; year < numberYears; year++) {
+			LinearExpr balance = new LinearExpr();
+			for (int project = 0; project < numberProjects; project++) {
+				balance.addTerm(percentageInvested[project], payout[project][year]);
+			}
+			if (year > 0) {
+				balance.addTerm(moneyInBank[year - 1], growth);
+			}
+			balance.addTerm(moneyInBank[year], -1);
+			balanceRows[year] = solver.addEq(balance, -budget[year]);
+		}
+		LinearExpr last = new LinearExpr();
+		last.addTerm(moneyInBank[numberYears - 1], growth);
+		last.addTerm(moneyInBank[numberYears], -1);
+		solver.addEq(last, 0);
+		// the projects cannot spend more than the budget of a year
+		budgetRows = new int[numberYears];
+		for (int year = 0; year < numberYears; year++) {
+			LinearExpr spent = new LinearExpr();
+			for (int project = 0; project < numberProjects; project++) {
+				spent.addTerm(percentageInvested[project], payout[project][year]);
+			}
+			budgetRows[year] = solver.addGe(spent, -budget[year]);
+		}
+		addRules(solver, rules, projectsChosen, percentageInvested);
+		this.budget = budget.clone();
+		this.payout = new int[numberProjects][];
+		for (int project = 0; project < numberProjects; project++) {
+			this.payout[project] = payout[project].clone();
+		}
+	}
+
+	/* Adds the rows of the rules on the choice of the projects and the fractions
+	 * invested in them to a model
+	 *
+	 * @param projectsChosen - the binary variables of the projects
+	 * @param percentageInvested - the fractions invested in the projects
+	 */
+	static void addRules(LinearSolver solver, Rules rules, int[] projectsChosen, int[] percentageInvested) {
+		// a project that is not chosen gets nothing, a chosen one the minimum fraction
+		for (int project = 0; project < projectsChosen.length; project++) {
+			LinearExpr most = new LinearExpr();
+			most.addTerm(percentageInvested[project], 1);
+			most.addTerm(projectsChosen[project], -1);
+			solver.addLe(most, 0);
+			LinearExpr least = new LinearExpr();
+			least.addTerm(percentageInvested[project], 1);
+			least.addTerm(projectsChosen[project], -rules.minimumFraction);
+			solver.addGe(least, 0);
+		}
+		LinearExpr count = new LinearExpr().addTerms(projectsChosen, 1);
+		solver.addRow(count, rules.minimumProjects, Math.min(rules.maximumProjects, projectsChosen.length));
+		for (int k = 0; k < rules.names.size(); k++) {
+			int[] rule = rules.projects.get(k);
+			LinearExpr expr = new LinearExpr();
+			switch (rules.names.get(k)) {
+			case "exclusive":
+				for (int project : rule) {
+					expr.addTerm(projectsChosen[project], 1);
+				}
+				solver.addLe(expr, 1);
+				break;
+			case "at_least_one":
+				for (int project : rule) {
+					expr.addTerm(projectsChosen[project], 1);
+				}
+				solver.addGe(expr, 1);
+				break;
+			case "requires":
+				expr.addTerm(projectsChosen[rule[0]], 1);
+				expr.addTerm(projectsChosen[rule[1]], -1);
+				solver.addLe(expr, 0);
+				break;
+			default:
+				// fraction_at_most
+				expr.addTerm(percentageInvested[rule[0]], 1);
+				expr.addTerm(percentageInvested[rule[1]], -1);
+				solver.addLe(expr, 0);
+			}
+		}
+	}
+
+	// changes the payouts and budgets of the model that differ from the scenario
+	private void updateModel(int[] budget, int[][] payout) {
+		coefficientsChanged = 0;
+		budgetsChanged = 0;
+		for (int project = 0; project < numberOfProjects; project++) {
+			for (int year = 0; year < numberOfYears; year++) {
+				int value = payout[project][year];
+				if (value != this.payout[project][year]) {
+					solver.setCoefficient(balanceRows[year], percentageInvested[project], value);
+					solver.setCoefficient(budgetRows[year], percentageInvested[project], value);
+					this.payout[project][year] = value;
+					coefficientsChanged++;
+				}
+			}
+		}
+		for (int year = 0; year < numberOfYears; year++) {
+			if (budget[year] != this.budget[year]) {
+				solver.setRowBounds(balanceRows[year], -budget[year], -budget[year]);
+				solver.setRowBounds(budgetRows[year], -budget[year], Double.POSITIVE_INFINITY);
+				this.budget[year] = budget[year];
+				budgetsChanged++;
+			}
+		}
+	}
+
+	/* Plans the investments for a scenario, starting from the plan of the scenario
+	 * before if there was one
+	 *
+	 * @param budget - the budget of every year
+	 * @param payout - the payout of every project in every year
+	 *
+	 * @returns true if a plan meets the rules
+	 */
+	public boolean solve(int[] budget, int[][] payout) {
+		if (budget.length != numberOfYears || payout.length != numberOfProjects) {
+			throw new IllegalArgumentException("the scenario has " + payout.length + " projects and "
+					+ budget.length + " years instead of " + numberOfProjects + " and " + numberOfYears);
+		}
+		for (int[] row : payout) {
+			if (row.length != numberOfYears) {
+				throw new IllegalArgumentException("the payout matrix has " + row.length + " years instead of "
+						+ numberOfYears);
+			}
+		}
+		String key = (cache != null) ? cacheKey(budget, payout) : null;
+		if (key != null) {
+			double[] result = cache.get(key);
+			if (result != null) {
+				coefficientsChanged = 0;
+				budgetsChanged = 0;
+				// only optimal plans are stored
+				optimal = true;
+				return restore(result);
+			}
+		}
+		if (solver == null) {
+			buildModel(budget, payout);
+			coefficientsChanged = numberOfProjects * numberOfYears;
+			budgetsChanged = numberOfYears;
+		} else {
+			updateModel(budget, payout);
+			// the projects of the last plan are likely to be chosen again; an infeasible
+			// scenario leaves no plan to start from
+			if (start != null) {
+				solver.setStart(projectsChosen, start);
+			}
+		}
+		// a scenario without a plan has an empty result
+		double[] result = new double[0];
+		boolean solved = solver.solve();
+		optimal = solved && solver.isOptimal();
+		if (solved) {
+			double[] selected = solver.getValues(projectsChosen);
+			start = selected;
+			double[] invested = solver.getValues(percentageInvested);
+			double[] bank = solver.getValues(moneyInBank);
+			result = new double[1 + selected.length + invested.length + bank.length];
+			result[0] = solver.getObjValue();
+			System.arraycopy(selected, 0, result, 1, selected.length);
+			System.arraycopy(invested, 0, result, 1 + selected.length, invested.length);
+			System.arraycopy(bank, 0, result, 1 + selected.length + invested.length, bank.length);
+		}
+		// only a plan proven optimal is stored; a solve stopped by a limit may have
+		// missed the optimal plan, or a plan at all
+		if (key != null && optimal) {
+			cache.put(key, result);
+		}
+		return restore(result);
+	}
+
+	/* Makes a result the last plan
+	 *
+	 * @param result - the final capital, whether every project is chosen, the fraction
+	 * invested in every project and the money in the bank at the end of every year, or
+	 * an empty array if no plan meets the rules
+	 *
+	 * @returns true if a plan meets the rules
+	 */
+	private boolean restore(double[] result) {
+		if (result.length == 0) {
+			chosen = null;
+			return false;
+		}
+		objValue = result[0];
+		chosen = new boolean[numberOfProjects];
+		for (int project = 0; project < numberOfProjects; project++) {
+			chosen[project] = result[1 + project] > 0.5;
+		}
+		fractions = Arrays.copyOfRange(result, 1 + numberOfProjects, 1 + 2 * numberOfProjects);
+		capital = Arrays.copyOfRange(result, 1 + 2 * numberOfProjects, result.length);
+		return true;
+	}
+
+	// returns the key of the rules and a scenario in the cache
+	private String cacheKey(int[] budget, int[][] payout) {
+		SolveCache.Key key = new SolveCache.Key("investment").add(rules.interest).add(rules.borrowingRate)
+				.add(rules.minimumFraction).add(rules.minimumProjects).add(rules.maximumProjects)
+				.add(rules.names.size());
+		for (int r = 0; r < rules.names.size(); r++) {
+			key.add(rules.names.get(r)).add(rules.projects.get(r));
+		}
+		key.add(budget).add(payout.length);
+		for (int[] row : payout) {
+			key.add(row);
+		}
+		return key.toString();
+	}
+
+	// returns whether a project is chosen in the last plan
+	public boolean isChosen(int project) {
+		return chosen[project];
+	}
+
+	// returns the fraction invested in a project in the last plan
+	public double getFraction(int project) {
+		return fractions[project];
+	}
+
+	// returns the money in the bank at the end of a year (0 is the first year, and the
+	// number of years is the end, after interest) in the last plan
+	public double getMoneyInBank(int year) {
+		return capital[year];
+	}
+
+	// returns the final capital of the last plan
+	public double getObjValue() {
+		return objValue;
+	}
+
+	// returns whether the last plan is proven optimal
+	public boolean isOptimal() {
+		return optimal;
+	}
+
+	// returns the number of payouts that differed from the scenario before
+	public int getCoefficientsChanged() {
+		return this.coefficientsChanged;
+	}
+
+	// returns the number of budgets that differed from the scenario before
+	public int getBudgetsChanged() {
+		return this.budgetsChanged;
+	}
+
+	// releases the model, unless the solver belongs to the caller
+	public void end() {
+		if (solver != null && solver != givenSolver) {
+			solver.end();
+		}
+		solver = null;
+		start = null;
+	}
+}
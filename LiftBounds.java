@@ -0,0 +1,146 @@
+/*******************************************************************************
+  * File: LiftBounds.java
+  * Class to decide the lift problem of C2 without cplex where possible. The
+  * problem asks whether numberLifts sets (lifts) of at most numberStops
+  * floors each can cover every pair of numberFloors floors, which is a
+  * covering design question. Counting bounds prove infeasibility and simple
+  * constructions prove feasibility; only the numbers of floors in between
+  * need a MIP.
+  ******************************************************************************/
+
+public class LiftBounds {
+
+	// the answer to a single feasibility query, and what decided it
+	public static class Decision {
+		private boolean determined;
+		private boolean feasible;
+		private String reason;
+
+		public Decision(boolean determined, boolean feasible, String reason) {
+			this.determined = determined;
+			this.feasible = feasible;
+			this.reason = reason;
+		}
+
+		// returns whether the answer is known
+		public boolean isDetermined() {
+			return this.determined;
+		}
+
+		// returns the answer, only meaningful if it is determined
+		public boolean isFeasible() {
+			return this.feasible;
+		}
+
+		// returns a short description of what decided the query
+		public String getReason() {
+			return this.reason;
+		}
+	}
+
+	/* Tries to decide a query with bounds and constructions only
+	 *
+	 * @returns the decision, which is undetermined if cplex is needed
+	 */
+	public static Decision decide(int numberLifts, int numberStops, int numberFloors) {
+		if (numberFloors <= 0) {
+			return new Decision(true, true, "no floors");
+		}
+		if (numberLifts <= 0 || numberStops <= 0) {
+			return new Decision(true, false, "no lift can stop anywhere");
+		}
+		String construction = construction(numberLifts, numberStops, numberFloors);
+		if (construction != null) {
+			return new Decision(true, true, construction);
+		}
+		String bound = violatedBound(numberLifts, numberStops, numberFloors);
+		if (bound != null) {
+			return new Decision(true, false, bound);
+		}
+		return new Decision(false, false, "undetermined by bounds");
+	}
+
+	// returns the largest number of floors that a construction is known for
+	public static int lowerBound(int numberLifts, int numberStops) {
+		if (numberLifts <= 0 || numberStops <= 0) {
+			return 0;
+		}
+		// constructions stay valid when floors are removed, so binary search
+		int low = 1;
+		int high = numberLifts * numberStops + 1;
+		while (high - low > 1) {
+			int middle = (low + high) >>> 1;
+			if (construction(numberLifts, numberStops, middle) != null) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// returns the largest number of floors that is not excluded by a counting bound
+	public static int upperBound(int numberLifts, int numberStops) {
+		if (numberLifts <= 0 || numberStops <= 0) {
+			return 0;
+		}
+		// the bounds only get stronger as floors are added, so binary search
+		int low = 1;
+		int high = numberLifts * numberStops + 1;
+		while (high - low > 1) {
+			int middle = (low + high) >>> 1;
+			if (violatedBound(numberLifts, numberStops, middle) == null) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// returns a construction connecting all floors, or null if none is known
+	private static String construction(long lifts, long stops, long floors) {
+		// one lift stops everywhere
+		if (floors <= stops) {
+			return "one lift stops at every floor";
+		}
+		// every pair of floors gets its own lift
+		if (stops >= 2 && pairs(floors) <= lifts) {
+			return "one lift per pair of floors";
+		}
+		// split the floors into groups of half a lift, and give every pair of groups a lift
+		long half = stops / 2;
+		if (half >= 1) {
+			long groups = (floors + half - 1) / half;
+			if (pairs(groups) <= lifts) {
+				return "one lift per pair of " + groups + " groups of at most " + half + " floors";
+			}
+		}
+		return null;
+	}
+
+	// returns the counting bound that proves infeasibility, or null if there is none
+	private static String violatedBound(long lifts, long stops, long floors) {
+		// a lift stopping at s floors connects s(s - 1)/2 pairs
+		if (lifts * pairs(stops) < pairs(floors)) {
+			return "pair count: " + lifts + " * C(" + stops + ", 2) < C(" + floors + ", 2)";
+		}
+		// with one stop per lift the pair count already decides
+		if (stops == 1) {
+			return null;
+		}
+		// every floor is connected to the other floors - 1 floors, at most stops - 1 per lift,
+		// so it needs ceil((floors - 1) / (stops - 1)) lifts (the Schoenheim bound)
+		long perFloor = (floors - 1 + stops - 2) / (stops - 1);
+		long needed = (floors * perFloor + stops - 1) / stops;
+		if (lifts < needed) {
+			return "Schoenheim bound: at least " + needed + " lifts needed";
+		}
+		return null;
+	}
+
+	// returns n(n - 1)/2
+	private static long pairs(long n) {
+		return n * (n - 1) / 2;
+	}
+}
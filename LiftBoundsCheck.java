@@ -0,0 +1,117 @@
+/*******************************************************************************
+  * File: LiftBoundsCheck.java
+  * Checks LiftBounds against an exhaustive search for small lift problems:
+  * every query that the bounds and constructions decide must have the
+  * answer of the search, and lowerBound and upperBound must enclose the
+  * largest number of floors the search connects. With -solver the queries
+  * left undetermined are also decided by ExerciseC21.checkFeasibility, whose
+  * answer must match as well.
+  * Usage: java [-Dsolver=java] LiftBoundsCheck [-solver]
+  * Exits with status 1 if any check fails.
+  ******************************************************************************/
+
+public class LiftBoundsCheck {
+
+	// the largest problem searched; 9 floors have 36 pairs, which fit in a long
+	private static final int MAXIMUM_LIFTS = 4;
+	private static final int MAXIMUM_STOPS = 4;
+	private static final int MAXIMUM_FLOORS = 9;
+
+	public static void main(String[] args) {
+		boolean withSolver = args.length > 0 && args[0].equals("-solver");
+		int checked = 0;
+		int failed = 0;
+		for (int lifts = 1; lifts <= MAXIMUM_LIFTS; lifts++) {
+			for (int stops = 1; stops <= MAXIMUM_STOPS; stops++) {
+				int maximum = 0;
+				for (int floors = 1; floors <= MAXIMUM_FLOORS; floors++) {
+					boolean feasible = search(lifts, stops, floors);
+					if (feasible) {
+						maximum = floors;
+					}
+					LiftBounds.Decision decision = LiftBounds.decide(lifts, stops, floors);
+					if (!decision.isDetermined() && withSolver) {
+						decision = ExerciseC21.checkFeasibility(lifts, stops, floors);
+					}
+					if (decision.isDetermined()) {
+						checked++;
+						if (decision.isFeasible() != feasible) {
+							failed++;
+							System.out.println(lifts + " lifts, " + stops + " stops, " + floors + " floors: "
+									+ decision.getReason() + " says " + decision.isFeasible() + ", the search "
+									+ feasible);
+						}
+					}
+				}
+				// the search stops at MAXIMUM_FLOORS, so only a smaller maximum is exact
+				int lower = LiftBounds.lowerBound(lifts, stops);
+				int upper = LiftBounds.upperBound(lifts, stops);
+				checked++;
+				if ((lower > maximum && maximum < MAXIMUM_FLOORS) || upper < maximum) {
+					failed++;
+					System.out.println(lifts + " lifts, " + stops + " stops: bounds " + lower + " and " + upper
+							+ " do not enclose " + maximum + " floors");
+				}
+			}
+		}
+		System.out.println("LiftBounds: " + checked + " checked, " + failed + " failed");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+	/* Searches all ways to choose the stops of the lifts
+	 *
+	 * @returns whether the lifts can connect every pair of floors
+	 */
+	private static boolean search(int lifts, int stops, int floors) {
+		if (stops >= floors) {
+			return true;
+		}
+		// a lift that stops at more floors connects more pairs, so every lift gets all
+		// of its stops; the pairs it connects are the bits of a mask
+		int subsets = 0;
+		long[] masks = new long[1 << floors];
+		for (int set = 0; set < (1 << floors); set++) {
+			if (Integer.bitCount(set) == stops) {
+				masks[subsets++] = pairMask(set, floors);
+			}
+		}
+		long all = pairMask((1 << floors) - 1, floors);
+		return cover(masks, subsets, 0, lifts, 0, all, Long.bitCount(pairMask((1 << stops) - 1, stops)));
+	}
+
+	// returns whether the lifts left, with stops from masks[first] onwards, can connect
+	// the pairs that are not covered yet
+	private static boolean cover(long[] masks, int subsets, int first, int liftsLeft, long covered, long all,
+			int pairsPerLift) {
+		if (covered == all) {
+			return true;
+		}
+		if ((long) liftsLeft * pairsPerLift < Long.bitCount(all & ~covered)) {
+			return false;
+		}
+		for (int s = first; s < subsets; s++) {
+			if ((masks[s] & ~covered) != 0
+					&& cover(masks, subsets, s + 1, liftsLeft - 1, covered | masks[s], all, pairsPerLift)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// returns a bit for every pair of floors in the set
+	private static long pairMask(int set, int floors) {
+		long mask = 0;
+		int bit = 0;
+		for (int i = 0; i < floors; i++) {
+			for (int j = i + 1; j < floors; j++) {
+				if ((set >> i & 1) == 1 && (set >> j & 1) == 1) {
+					mask |= 1L << bit;
+				}
+				bit++;
+			}
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+  * File: LiftModel.java
+  * Class holding one model of the lift problem of C2 for a fixed number
+  * of lifts and stops per lift, that can be reused for different numbers of
+  * floors. Floors are added to the model incrementally, and a model built for
+  * F floors can test any smaller number of floors by switching off the
+  * covering constraints and stops of the floors that are not used.
+  *
+  * Connections are only modelled for unordered pairs of floors f1 < f2, and
+  * a floor being connected to itself reduces to some lift stopping there. The
+  * connection variables may be continuous: they are bounded by binary stop
+  * variables, so a pair can only be covered if some lift stops at both floors.
+  * As lifts and floors are interchangeable, two symmetry breaking constraints
+  * are added: lifts are ordered by their number of stops, and the floors at
+  * which the first lift stops come first.
+  ******************************************************************************/
+
+import java.util.ArrayList;
+
+public class LiftModel {
+
+	private int numberLifts;
+	private int numberStops;
+	private LinearSolver solver;
+	// whether end() releases the solver, false for a solver of the caller
+	private boolean ownsSolver;
+
+	// stops.get(f)[l] is 1 if lift l stops at floor f
+	private ArrayList<int[]> stops = new ArrayList<int[]>();
+	// connections.get(f2).get(f1)[l] is 1 if lift l connects floor f1 < f2 and f2
+	private ArrayList<ArrayList<int[]>> connections = new ArrayList<ArrayList<int[]>>();
+	// cover.get(f2).get(f1) requires floors f1 < f2 to be connected by some lift
+	private ArrayList<ArrayList<Integer>> cover = new ArrayList<ArrayList<Integer>>();
+	// served.get(f) requires some lift to stop at floor f
+	private ArrayList<Integer> served = new ArrayList<Integer>();
+	// stopLimit[l] limits the number of stops of lift l
+	private int[] stopLimit;
+	// liftOrder[l] requires lift l to stop at least as often as lift l + 1
+	private int[] liftOrder;
+
+	// the number of floors that currently have to be connected
+	private int activeFloors;
+	private int numberOfSolves;
+
+	// creates a model without floors
+	public LiftModel(int numberLifts, int numberStops) {
+		this(numberLifts, numberStops, LinearSolver.create());
+		this.ownsSolver = true;
+	}
+
+	// creates a model without floors on the given empty solver, e.g. one of a SolverPool,
+	// which is left to the caller to clear or end
+	public LiftModel(int numberLifts, int numberStops, LinearSolver solver) {
+		this.numberLifts = numberLifts;
+		this.numberStops = numberStops;
+		this.solver = solver;
+		// do not print any information regarding the progress of the solver (quicker
+		// run times)
+		this.solver.setQuiet();
+		// maximise a constant, as we are testing feasibility
+		int constant = solver.addVariable(2043, 2043, true);
+		solver.maximize(new LinearExpr().addTerm(constant, 1));
+		// for every lift, the stops are added to these constraints as floors are added
+		this.stopLimit = new int[numberLifts];
+		for (int l = 0; l < numberLifts; l++) {
+			this.stopLimit[l] = solver.addLe(new LinearExpr(), numberStops);
+		}
+		this.liftOrder = new int[Math.max(numberLifts - 1, 0)];
+		for (int l = 0; l + 1 < numberLifts; l++) {
+			this.liftOrder[l] = solver.addGe(new LinearExpr(), 0);
+		}
+	}
+
+	// returns the number of floors in the model
+	public int getNumberOfFloors() {
+		return this.stops.size();
+	}
+
+	// returns the number of times the model has been solved
+	public int getNumberOfSolves() {
+		return this.numberOfSolves;
+	}
+
+	// adds floors to the model until it has the given number of floors
+	public void growTo(int numberFloors) {
+		while (getNumberOfFloors() < numberFloors) {
+			addFloor();
+		}
+	}
+
+	// adds one floor, with its stops, connections and constraints
+	private void addFloor() {
+		int f = getNumberOfFloors();
+		// binary variables for the stops of every lift at the new floor, switched
+		// off until the floor becomes active
+		int[] floorStops = solver.addVariables(numberLifts, 0, 0, true);
+		this.stops.add(floorStops);
+		LinearExpr expr1 = new LinearExpr();
+		for (int l = 0; l < numberLifts; l++) {
+			expr1.addTerm(floorStops[l], 1);
+			solver.setCoefficient(stopLimit[l], floorStops[l], 1);
+			// lift l - 1 stops at least as often as lift l
+			if (l > 0) {
+				solver.setCoefficient(liftOrder[l - 1], floorStops[l], -1);
+			}
+			if (l + 1 < numberLifts) {
+				solver.setCoefficient(liftOrder[l], floorStops[l], 1);
+			}
+		}
+		// the floor needs to be reached by some lift once it is active
+		this.served.add(solver.addGe(expr1, 0));
+		// the first lift only stops at this floor if it stops at the floor below
+		if (f > 0 && numberLifts > 0) {
+			LinearExpr expr2 = new LinearExpr();
+			expr2.addTerm(floorStops[0], 1);
+			expr2.addTerm(stops.get(f - 1)[0], -1);
+			solver.addLe(expr2, 0);
+		}
+		this.connections.add(new ArrayList<int[]>());
+		this.cover.add(new ArrayList<Integer>());
+		// connect the new floor to every floor below it
+		for (int other = 0; other < f; other++) {
+			addPair(other, f);
+		}
+	}
+
+	// adds the connection variables and constraints of the pair f1 < f2, all pairs
+	// (f', f2) with f' < f1 must exist already
+	private void addPair(int f1, int f2) {
+		int[] pair = solver.addVariables(numberLifts, 0, 1, false);
+		LinearExpr expr1 = new LinearExpr();
+		for (int l = 0; l < numberLifts; l++) {
+			expr1.addTerm(pair[l], 1);
+			// if a lift does not stop at either floor, there is no connection with it
+			solver.addLe(new LinearExpr().addTerm(pair[l], 1).addTerm(stops.get(f1)[l], -1), 0);
+			solver.addLe(new LinearExpr().addTerm(pair[l], 1).addTerm(stops.get(f2)[l], -1), 0);
+		}
+		this.connections.get(f2).add(pair);
+		// the floors should be connected by at least one lift, once both are active
+		this.cover.get(f2).add(solver.addGe(expr1, 0));
+	}
+
+	/* Activates the first numberFloors floors and switches off all others, growing the
+	 * model if it does not have enough floors yet
+	 *
+	 * @param numberFloors - the number of floors that have to be connected
+	 */
+	public void setActiveFloors(int numberFloors) {
+		growTo(numberFloors);
+		int low = Math.min(activeFloors, numberFloors);
+		int high = Math.max(activeFloors, numberFloors);
+		// only the floors between the old and new number of floors change
+		for (int f = low; f < high; f++) {
+			boolean active = f < numberFloors;
+			for (int l = 0; l < numberLifts; l++) {
+				solver.setBounds(stops.get(f)[l], 0, active ? 1 : 0);
+			}
+			solver.setRowBounds(served.get(f), active ? 1 : 0, Double.POSITIVE_INFINITY);
+			for (int other = 0; other < getNumberOfFloors(); other++) {
+				double bound = (active && other < numberFloors) ? 1 : 0;
+				if (other < f) {
+					solver.setRowBounds(cover.get(f).get(other), bound, Double.POSITIVE_INFINITY);
+				} else if (other > f) {
+					solver.setRowBounds(cover.get(other).get(f), bound, Double.POSITIVE_INFINITY);
+				}
+			}
+		}
+		this.activeFloors = numberFloors;
+	}
+
+	/* Tests whether every pair of the first numberFloors floors can be connected. A
+	 * solve that is stopped by a limit before it finds a set up or proves that there is
+	 * none throws an IllegalStateException, as it cannot answer the question.
+	 *
+	 * @param numberFloors - the number of floors to test
+	 *
+	 * @returns true if the lifts can be set up for this number of floors, false if the
+	 * solver proved that they cannot
+	 */
+	public boolean isFeasible(int numberFloors) {
+		setActiveFloors(numberFloors);
+		this.numberOfSolves++;
+		if (solver.solve()) {
+			return true;
+		}
+		if (!solver.isInfeasible()) {
+			throw new IllegalStateException("the solve for " + numberFloors + " floors was stopped before it "
+					+ "found a set up or proved that there is none");
+		}
+		return false;
+	}
+
+	// releases the native memory of the model, unless the solver belongs to the caller
+	public void end() {
+		if (ownsSolver) {
+			this.solver.end();
+		}
+	}
+}
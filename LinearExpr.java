@@ -0,0 +1,69 @@
+/*******************************************************************************
+  * File: LinearExpr.java
+  * Class for a linear expression over the variables of a LinearSolver, kept
+  * as parallel arrays of variable indices and coefficients. Terms of the same
+  * variable are not merged; the solvers add them up.
+  ******************************************************************************/
+
+import java.util.Arrays;
+
+public class LinearExpr {
+
+	private int[] vars = new int[4];
+	private double[] coefs = new double[4];
+	private int size;
+
+	// creates an empty expression
+	public LinearExpr() {
+	}
+
+	/* Adds coef * var to the expression
+	 *
+	 * @param var - the index of the variable, as returned by the solver
+	 * @param coef - the coefficient of the variable
+	 *
+	 * @returns this expression
+	 */
+	public LinearExpr addTerm(int var, double coef) {
+		if (size == vars.length) {
+			vars = Arrays.copyOf(vars, 2 * size);
+			coefs = Arrays.copyOf(coefs, 2 * size);
+		}
+		vars[size] = var;
+		coefs[size] = coef;
+		size++;
+		return this;
+	}
+
+	// adds coef * var for every variable in the array
+	public LinearExpr addTerms(int[] vars, double coef) {
+		for (int var : vars) {
+			addTerm(var, coef);
+		}
+		return this;
+	}
+
+	// returns the number of terms
+	public int size() {
+		return this.size;
+	}
+
+	// returns the variable of term k
+	public int getVar(int k) {
+		return this.vars[k];
+	}
+
+	// returns the coefficient of term k
+	public double getCoef(int k) {
+		return this.coefs[k];
+	}
+
+	// returns the value of the expression for the values of all variables
+	public double evaluate(double[] values) {
+		double value = 0;
+		for (int k = 0; k < size; k++) {
+			value += coefs[k] * values[vars[k]];
+		}
+		return value;
+	}
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+  * File: LinearSolver.java
+  * Interface to build and solve linear and mixed integer programs without
+  * depending on a particular solver. Variables and rows are referred to by
+  * the index returned when they are added. There are two implementations:
+  * CplexSolver, which passes the model on to cplex, and SimplexSolver, which
+  * solves it in plain Java. create() picks one with the system property
+  * solver (cplex or java, cplex by default), and falls back to the Java
+  * solver if the cplex library cannot be loaded.
+  ******************************************************************************/
+
+public interface LinearSolver {
+
+	// receives the rows generated by a LazyRows object
+	public interface RowSink {
+		// adds the row lb <= expr <= ub
+		void addRow(LinearExpr expr, double lb, double ub);
+	}
+
+	/* Generates rows that are left out of the model until an integer solution
+	 * violates them. It can be called from several threads at the same time.
+	 */
+	public interface LazyRows {
+		/* Adds rows violated by an integer solution to the sink
+		 *
+		 * @param values - the value of every variable, by index
+		 * @param sink - receives the violated rows
+		 */
+		void separate(double[] values, RowSink sink);
+	}
+
+	/* Receives the progress of a solve, e.g. to record it with Telemetry. It can be
+	 * called from several threads at the same time.
+	 */
+	public interface SolveListener {
+		/* Called when a phase of a solve ends: presolve (cplex only), root (the LP, or
+		 * the LP relaxation at the root) or branch (the rest of branch and bound)
+		 *
+		 * @param nanos - the duration of the phase
+		 */
+		void phaseEnded(String phase, long nanos);
+
+		/* Called when branch and bound finds a better solution or improves its bound
+		 *
+		 * @param nodes - the number of nodes so far
+		 * @param incumbent - the best objective value so far, infinite without a solution
+		 * @param bound - the best objective value possible
+		 */
+		void progress(long nodes, double incumbent, double bound);
+	}
+
+	// returns the solver chosen with the system property solver
+	public static LinearSolver create() {
+		if (System.getProperty("solver", "cplex").equals("java")) {
+			return new SimplexSolver();
+		}
+		try {
+			return new CplexSolver();
+		} catch (LinkageError e) {
+			// no cplex jar or native library on this machine
+			System.out.println("cplex is not available (" + e + "), using the Java solver");
+			return new SimplexSolver();
+		}
+	}
+
+	// returns the name of the solver
+	String getName();
+
+	/* Adds a variable
+	 *
+	 * @param lb - the lower bound, may be Double.NEGATIVE_INFINITY
+	 * @param ub - the upper bound, may be Double.POSITIVE_INFINITY
+	 * @param integer - whether the variable has to take an integer value
+	 *
+	 * @returns the index of the variable
+	 */
+	int addVariable(double lb, double ub, boolean integer);
+
+	// adds count variables with the same bounds and returns their indices
+	default int[] addVariables(int count, double lb, double ub, boolean integer) {
+		int[] vars = new int[count];
+		for (int i = 0; i < count; i++) {
+			vars[i] = addVariable(lb, ub, integer);
+		}
+		return vars;
+	}
+
+	// changes the bounds of a variable
+	void setBounds(int var, double lb, double ub);
+
+	// makes the variables integer or continuous, e.g. to solve the LP relaxation first
+	void setInteger(int[] vars, boolean integer);
+
+	/* Adds the row lb <= expr <= ub
+	 *
+	 * @returns the index of the row
+	 */
+	int addRow(LinearExpr expr, double lb, double ub);
+
+	// adds the row expr <= rhs
+	default int addLe(LinearExpr expr, double rhs) {
+		return addRow(expr, Double.NEGATIVE_INFINITY, rhs);
+	}
+
+	// adds the row expr >= rhs
+	default int addGe(LinearExpr expr, double rhs) {
+		return addRow(expr, rhs, Double.POSITIVE_INFINITY);
+	}
+
+	// adds the row expr == rhs
+	default int addEq(LinearExpr expr, double rhs) {
+		return addRow(expr, rhs, rhs);
+	}
+
+	// changes the bounds of a row
+	void setRowBounds(int row, double lb, double ub);
+
+	// sets the coefficient of a variable in a row
+	void setCoefficient(int row, int var, double coef);
+
+	// sets the objective to minimise, replacing any earlier objective
+	void minimize(LinearExpr expr);
+
+	// sets the objective to maximise, replacing any earlier objective
+	void maximize(LinearExpr expr);
+
+	// gives a (partial) solution to start branch and bound from, replacing any earlier start
+	void setStart(int[] vars, double[] values);
+
+	// sets the generator of rows that are added when integer solutions violate them
+	void setLazyRows(LazyRows lazyRows);
+
+	// limits the number of threads, 0 lets the solver decide
+	void setThreads(int threads);
+
+	// stops the solver from printing its progress
+	void setQuiet();
+
+	// sets the listener that receives the progress of every solve, or null for none
+	void setListener(SolveListener listener);
+
+	/* Solves the model
+	 *
+	 * @returns true if a feasible solution was found
+	 */
+	boolean solve();
+
+	// returns whether the last solve proved its solution optimal; a solve stopped by a
+	// limit can have a feasible solution that is not
+	boolean isOptimal();
+
+	// returns whether the last solve proved that the model has no feasible solution; a
+	// solve stopped by a limit before it found one has not
+	boolean isInfeasible();
+
+	// returns the objective value of the last solution
+	double getObjValue();
+
+	// returns the value of a variable in the last solution
+	double getValue(int var);
+
+	// returns the values of the variables in the last solution
+	default double[] getValues(int[] vars) {
+		double[] values = new double[vars.length];
+		for (int i = 0; i < vars.length; i++) {
+			values[i] = getValue(vars[i]);
+		}
+		return values;
+	}
+
+	/* Returns the dual value of a row in the last solution, which has to be the
+	 * solution of an LP: the change of the objective value per unit of change of the
+	 * bound of the row that holds with equality
+	 */
+	double getDual(int row);
+
+	// returns the number of branch and bound nodes of the last solve
+	long getNumberOfNodes();
+
+	// returns the number of simplex iterations of the last solve
+	long getNumberOfIterations();
+
+	/* Removes the model, the start, the lazy rows and the listener, so that the next
+	 * model can be built with the same solver; setThreads and setQuiet stay in effect.
+	 * Cheaper than end() and create(), as cplex keeps its environment and license.
+	 */
+	void clear();
+
+	// releases the resources of the solver
+	void end();
+}
@@ -9,177 +9,540 @@
   * the program will take all arguments as filenames and attempt to solve the 
   * ILPs and LPs of the Minimum Weight Vertex Dominant Set problem associated
   * with the graphs in those files. It will then output the results in a file named
-  * Output.csv, with the Dutch delimiter and the Dutch number format.
+  * Output.csv, in the number format of the machine (or of -Dresults.locale), or
+  * in the file given with -Dresults, see ResultSink.
+  * With the option -parallel N, N instances are solved at the same time.
+  * With the option -lazy, the domination rows are generated as they are needed.
+  * Run with -Dgraph.cache=true to cache the parsed graphs, see GraphCache, and
+  * with -Dsolver=java to solve without cplex, see LinearSolver. With
+  * -Dtelemetry=name the phases of every instance are written to name.csv and
+  * name.json, see Telemetry. A graph that was solved before with the same
+  * options is answered from the cache (-Dcache.size, -Dcache.dir and
+  * -Dcache.max_mb), see SolveCache; its ILP run time is then the lookup time.
   ******************************************************************************/
 
-import ilog.concert.*;
-import ilog.cplex.*;
 import java.io.*;
+import java.util.concurrent.*;
 
 public class MinimumWeightVertexDominantSet {
 	private Graph graph;
+	private String filename;
+
+	// the model, between buildModel and end
+	private LinearSolver solver;
+	private int[] nodeChosen;
+	private LinearExpr objective;
+
+	// whether the domination rows are generated lazily
+	private boolean lazy;
+	// rowAdded[i] is true if the row of node i is in the model
+	private boolean[] rowAdded;
+	private int rowsGenerated;
+
+	// the weight of the dominating set found by the heuristic, the start of the ILP
+	private double heuristicValue;
+	// the dominating set of the last ILP, or null if it has none
+	private boolean[] chosen;
+	// the status of the last solve: optimal, feasible if the ILP was stopped by a limit
+	// before proving its solution optimal, or unsolved if it has no solution
+	private String status;
+
+	// the columns of the results of solveAll, see ResultSink
+	private static final String[] COLUMNS = { "instance", "name", "status", "ilp_value", "ilp_ms", "lp_bound",
+			"lp_ms", "ratio", "heuristic_value", "heuristic_gap_percent", "parse_ms" };
+
+	// the phases of reading the graph and of the solve
+	private Telemetry telemetry;
+	// the results of earlier solves, if set
+	private SolveCache cache;
+
+	/* Adds the domination rows that are violated by integer solutions found during
+	 * branch and bound. The solver may call it from several threads, so the
+	 * bookkeeping of the rows is synchronized.
+	 */
+	private class DominationRows implements LinearSolver.LazyRows {
+		private int[] nodeChosen;
+
+		DominationRows(int[] nodeChosen) {
+			this.nodeChosen = nodeChosen;
+		}
+
+		public void separate(double[] values, LinearSolver.RowSink sink) {
+			double[] x = new double[nodeChosen.length];
+			for (int i = 0; i < x.length; i++) {
+				x[i] = values[nodeChosen[i]];
+			}
+			for (int i = 0; i < x.length; i++) {
+				if (rowValue(x, i) < 0.5) {
+					synchronized (MinimumWeightVertexDominantSet.this) {
+						if (!rowAdded[i]) {
+							rowAdded[i] = true;
+							rowsGenerated++;
+						}
+					}
+					sink.addRow(dominationRow(nodeChosen, i), 1, Double.POSITIVE_INFINITY);
+				}
+			}
+		}
+	}
 
 	// constructor
 	public MinimumWeightVertexDominantSet(String filename) {
+		this.filename = filename;
+		this.telemetry = new Telemetry(filename);
+		telemetry.begin("parse");
 		try {
-			this.graph = new Graph(filename);
+			this.graph = Graph.load(filename);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		telemetry.end();
+	}
+
+	// constructor for a graph that has been read already
+	public MinimumWeightVertexDominantSet(String filename, Graph graph) {
+		this.filename = filename;
+		this.graph = graph;
+		this.telemetry = new Telemetry(filename);
+	}
+
+	// returns the phases and counters of reading the graph and of the last solve
+	public Telemetry getTelemetry() {
+		return this.telemetry;
+	}
+
+	// generate the domination rows lazily: the LP starts from a subset of the rows and
+	// adds violated rows until none is left, the ILP adds rows in a lazy constraint callback
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	// looks up the result of the same graph in the cache before solving, and stores it after
+	public void setCache(SolveCache cache) {
+		this.cache = cache;
+	}
+
+	// returns the weight of the dominating set the last ILP was started from
+	public double getHeuristicValue() {
+		return this.heuristicValue;
+	}
+
+	// returns the number of domination rows in the model after the last solve
+	public int getRowsGenerated() {
+		return this.rowsGenerated;
+	}
+
+	// returns for every node whether it is in the dominating set of the last ILP, or
+	// null if it has none
+	public boolean[] getChosen() {
+		return this.chosen;
+	}
+
+	// returns the status of the last solve: optimal, feasible or unsolved
+	public String getStatus() {
+		return this.status;
+	}
+
+	// returns the left hand side of the domination row of node i: the sum of the
+	// variables of i and every node adjacent to it
+	private LinearExpr dominationRow(int[] nodeChosen, int i) {
+		LinearExpr expr2 = new LinearExpr();
+		// the node dominates itself
+		expr2.addTerm(nodeChosen[i], 1);
+		// as well as every node adjacent to it
+		for (int k = graph.neighborStart(i); k < graph.neighborEnd(i); k++) {
+			expr2.addTerm(nodeChosen[graph.getNeighbor(k)], 1);
+		}
+		return expr2;
+	}
+
+	// returns the value of the domination row of node i for the given solution
+	private double rowValue(double[] x, int i) {
+		double value = x[i];
+		for (int k = graph.neighborStart(i); k < graph.neighborEnd(i); k++) {
+			value += x[graph.getNeighbor(k)];
+		}
+		return value;
+	}
+
+	/* Chooses the rows to start from when rows are generated lazily: going through the
+	 * nodes from low to high degree, the row of a node is taken if no neighbour's row
+	 * was taken yet. Rows of low degree have the fewest ways of being satisfied, and
+	 * rows of independent nodes give a good first LP bound.
+	 */
+	private boolean[] initialRows() {
+		int n = graph.getNumberOfNodes();
+		// sort the nodes by degree with a counting sort
+		int[] start = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			start[graph.degree(i) + 1]++;
+		}
+		for (int d = 0; d < n; d++) {
+			start[d + 1] += start[d];
+		}
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[start[graph.degree(i)]++] = i;
+		}
+		boolean[] taken = new boolean[n];
+		boolean[] blocked = new boolean[n];
+		for (int i : order) {
+			if (!blocked[i]) {
+				taken[i] = true;
+				for (int k = graph.neighborStart(i); k < graph.neighborEnd(i); k++) {
+					blocked[graph.getNeighbor(k)] = true;
+				}
+			}
+		}
+		return taken;
+	}
+
+	/* Builds the model once, solves the LP relaxation and then converts the variables
+	 * to integers and solves the ILP on the same model. The LP value is a lower bound
+	 * for the ILP and, as the node weights are integers, so is its ceiling; this bound
+	 * is added to the ILP as a cut on the objective.
+	 *
+	 * @returns the ILP value, the ILP run time (ms, including the heuristic), the LP
+	 * value, the LP run time (ms, including building the model), the ratio of ILP value
+	 * to LP value, the value of the heuristic and its gap to the ILP value (%)
+	 */
+	public double[] solve() {
+		return solve(0);
+	}
+
+	/* Same as solve(), but with a limit on the number of threads the solver may use
+	 *
+	 * @param threads - the maximum number of threads, or 0 to let the solver decide
+	 */
+	public double[] solve(int threads) {
+		double[] info = lookup();
+		if (info != null) {
+			return info;
+		}
+		LinearSolver solver = LinearSolver.create();
+		// limit the number of threads when other solvers run at the same time
+		if (threads > 0) {
+			solver.setThreads(threads);
+		}
+		try {
+			return solveModel(solver);
+		} finally {
+			// release the memory of the model
+			solver.end();
+		}
+	}
+
+	/* Same as solve(), but builds the model on the given empty solver, e.g. one of a
+	 * SolverPool, and leaves it to the caller to clear or end the solver
+	 */
+	public double[] solve(LinearSolver solver) {
+		double[] info = lookup();
+		return (info != null) ? info : solveModel(solver);
 	}
 
-	public double solveLP(int type) {
+	// solves the model on the solver and stores the result in the cache, if set
+	private double[] solveModel(LinearSolver solver) {
+		double[] info = new double[7];
 		try {
-			// create the cplex object
-			IloCplex cplex = new IloCplex();
-			// number of nodes
-			int n = graph.getNumberOfNodes();
-			// binary matrix of nodes
-			IloNumVar[] nodeChosen;
-			// if type = 1, ILP
-			if (type == 1) {
-				nodeChosen = cplex.numVarArray(n, 0, 1, IloNumVarType.Int);
-			} // otherwise LP
-			else {
-				nodeChosen = cplex.numVarArray(n, 0, 1, IloNumVarType.Float);
+			// record the starting time of building the model and solving the LP
+			long startTime = System.nanoTime();
+			buildModel(solver);
+			info[2] = solveLP();
+			info[3] = (System.nanoTime() - startTime) / 1e6;
+			// record the starting time of the ILP
+			startTime = System.nanoTime();
+			info[0] = solveILP(info[2]);
+			info[1] = (System.nanoTime() - startTime) / 1e6;
+			// compute the ratio of ILP value to LP value, 1 if both are 0
+			info[4] = (info[0] == 0 && info[2] == 0) ? 1 : info[0] / info[2];
+			// how far the start was from the optimum; the weights are integers, so an
+			// optimum of 0 (all weights 0) is measured against 1
+			info[5] = heuristicValue;
+			info[6] = 100 * (heuristicValue - info[0]) / Math.max(info[0], 1);
+			// report how many rows were needed
+			if (lazy) {
+				System.out.println(filename + ": " + rowsGenerated + " of " + graph.getNumberOfNodes()
+						+ " domination rows generated");
 			}
-			// add objective function
-			IloLinearNumExpr expr1 = cplex.linearNumExpr();
-			// for every node
-			for (int i = 0; i < n; i++) {
-				// multiply nodeChosen by node weight
-				expr1.addTerm(graph.getNodeWeight(i), nodeChosen[i]);
+			telemetry.record("heuristic_gap_percent", info[6]);
+			telemetry.recordMemory();
+			telemetry.report();
+		} finally {
+			// the solver belongs to the caller
+			this.solver = null;
+		}
+		if (cache != null && status.equals("optimal")) {
+			// the result, the number of rows generated and the dominating set
+			double[] result = new double[8 + chosen.length];
+			System.arraycopy(info, 0, result, 0, 7);
+			result[7] = rowsGenerated;
+			for (int i = 0; i < chosen.length; i++) {
+				result[8 + i] = chosen[i] ? 1 : 0;
+			}
+			cache.put(cacheKey(), result);
+		}
+		return info;
+	}
+
+	/* Looks up the result of the same graph and options in the cache, if set
+	 *
+	 * @returns the result as solve() returns it, with the time of the lookup as ILP run
+	 * time and 0 as LP run time, or null if it is not in the cache
+	 */
+	private double[] lookup() {
+		if (cache == null) {
+			return null;
+		}
+		long startTime = System.nanoTime();
+		double[] result = cache.get(cacheKey());
+		if (result == null) {
+			return null;
+		}
+		double[] info = java.util.Arrays.copyOf(result, 7);
+		heuristicValue = info[5];
+		rowsGenerated = (int) result[7];
+		chosen = new boolean[result.length - 8];
+		for (int i = 0; i < chosen.length; i++) {
+			chosen[i] = result[8 + i] > 0.5;
+		}
+		info[1] = (System.nanoTime() - startTime) / 1e6;
+		info[3] = 0;
+		status = "optimal";
+		telemetry.record("cache_hit", 1);
+		telemetry.report();
+		return info;
+	}
+
+	// returns the key of the graph and the options in the cache
+	private String cacheKey() {
+		int n = graph.getNumberOfNodes();
+		int[] weights = new int[n];
+		int[] first = new int[graph.getAdjacency().getNumberOfEntries()];
+		int[] second = new int[first.length];
+		int e = 0;
+		for (int i = 0; i < n; i++) {
+			weights[i] = graph.getNodeWeight(i);
+			for (int k = graph.neighborStart(i); k < graph.neighborEnd(i); k++) {
+				first[e] = i;
+				second[e++] = graph.getNeighbor(k);
 			}
-			// minimize this sum
-			cplex.addMinimize(expr1);
-			// add constraints
-			// for every node
+		}
+		return new SolveCache.Key("mwvds").add(lazy).add(weights).addEdges(first, second, e).toString();
+	}
+
+	/* Builds the LP relaxation of the model: a variable between 0 and 1 for every node,
+	 * and the domination rows (in lazy mode only some of them)
+	 *
+	 * @param threads - the maximum number of threads, or 0 to let the solver decide
+	 */
+	public void buildModel(int threads) {
+		// create the solver object
+		LinearSolver solver = LinearSolver.create();
+		// limit the number of threads when other solvers run at the same time
+		if (threads > 0) {
+			solver.setThreads(threads);
+		}
+		buildModel(solver);
+	}
+
+	// same as buildModel(threads), on the given empty solver
+	public void buildModel(LinearSolver solver) {
+		telemetry.begin("build");
+		this.solver = solver;
+		solver.setListener(telemetry);
+		// number of nodes
+		int n = graph.getNumberOfNodes();
+		// variables between 0 and 1, one for every node, made integer after the LP
+		nodeChosen = solver.addVariables(n, 0, 1, false);
+		// add objective function
+		objective = new LinearExpr();
+		// for every node
+		for (int i = 0; i < n; i++) {
+			// multiply nodeChosen by node weight
+			objective.addTerm(nodeChosen[i], graph.getNodeWeight(i));
+		}
+		// minimize this sum
+		solver.minimize(objective);
+		// add constraints
+		// in lazy mode only some rows are added now
+		rowAdded = lazy ? initialRows() : null;
+		rowsGenerated = 0;
+		// for every node
+		for (int i = 0; i < n; i++) {
+			if (!lazy || rowAdded[i]) {
+				// make sure the sum over the node and its neighbours is at least 1
+				solver.addGe(dominationRow(nodeChosen, i), 1);
+				rowsGenerated++;
+			}
+		}
+		telemetry.end();
+	}
+
+	/* Solves the LP relaxation of the model built by buildModel, adding violated rows
+	 * until there are none in lazy mode
+	 *
+	 * @returns the LP value, or NaN if the LP was not solved to optimality
+	 */
+	public double solveLP() {
+		int n = graph.getNumberOfNodes();
+		boolean solved = solver.solve() && solver.isOptimal();
+		while (lazy && solved) {
+			double[] x = solver.getValues(nodeChosen);
+			int violated = 0;
 			for (int i = 0; i < n; i++) {
-				// create a new constraint expression
-				IloLinearNumExpr expr2 = cplex.linearNumExpr();
-				// for every node
-				for (int j = 0; j < n; j++) {
-					// multiply if the edge exists by if the node was chosen or not
-					expr2.addTerm(graph.edgeExists(i, j), nodeChosen[j]);
+				if (!rowAdded[i] && rowValue(x, i) < 1 - 1e-6) {
+					solver.addGe(dominationRow(nodeChosen, i), 1);
+					rowAdded[i] = true;
+					rowsGenerated++;
+					violated++;
 				}
-				// make sure this sum is greater than or equal to 1
-				cplex.addGe(expr2, 1);
 			}
-			// solve this ILP/LP
-			cplex.solve();
-			// return the objective value
-			return cplex.getObjValue();
+			if (violated == 0) {
+				break;
+			}
+			solved = solver.solve() && solver.isOptimal();
+		}
+		telemetry.recordSolver(solver);
+		return solved ? solver.getObjValue() : Double.NaN;
+	}
 
-		} catch (IloException e) {
-			// catch any IloException thrown and print the stack trace
-			e.printStackTrace();
-			return 0;
+	/* Turns the LP relaxation solved by solveLP into the ILP and solves it
+	 *
+	 * @param lpValue - the LP value, whose ceiling is a lower bound for the ILP, or NaN
+	 * if it is not known
+	 *
+	 * @returns the ILP value, or NaN if the ILP has no solution; see getStatus()
+	 */
+	public double solveILP(double lpValue) {
+		// turn the variables into binary variables
+		solver.setInteger(nodeChosen, true);
+		// the ILP value is an integer which is at least the LP value
+		if (!Double.isNaN(lpValue)) {
+			solver.addGe(objective, Math.ceil(lpValue - 1e-6));
+		}
+		// rows still missing are added when an integer solution violates them
+		if (lazy) {
+			solver.setLazyRows(new DominationRows(nodeChosen));
+		}
+		// start from the dominating set of the heuristic, so the solver has an
+		// incumbent before the first node
+		telemetry.begin("heuristic");
+		DominatingSetHeuristic heuristic = new DominatingSetHeuristic(graph);
+		boolean[] start = heuristic.solve();
+		heuristicValue = heuristic.getValue();
+		double[] values = new double[start.length];
+		for (int i = 0; i < start.length; i++) {
+			values[i] = start[i] ? 1 : 0;
+		}
+		solver.setStart(nodeChosen, values);
+		telemetry.end();
+		// solve the ILP
+		boolean solved = solver.solve();
+		telemetry.recordSolver(solver);
+		if (!solved) {
+			status = "unsolved";
+			chosen = null;
+			return Double.NaN;
+		}
+		status = solver.isOptimal() ? "optimal" : "feasible";
+		double[] x = solver.getValues(nodeChosen);
+		chosen = new boolean[x.length];
+		for (int i = 0; i < x.length; i++) {
+			chosen[i] = x[i] > 0.5;
+		}
+		return solver.getObjValue();
+	}
+
+	// releases the model
+	public void end() {
+		if (solver != null) {
+			solver.end();
+			solver = null;
 		}
 	}
 
 	public static void main(String[] args) {
-		// if no arguments are given, read the prespecified files
-		if (args.length == 0) {
-			// matrix to record all data
-			double[][] infoMatrix = new double[5][5];
-			String name;
-			String extension = ".txt";
-			// for every instance
-			for (int i = 1; i < 6; i++) {
-				// start with B
-				name = "B";
-				// add the numbers 1 to 5 when needed
-				name += (String.valueOf(i));
-				// add the extension
-				name += (extension);
-				// create a new MinimumWeightVertexDominantSet object with the file name
-				// associated to it
-				MinimumWeightVertexDominantSet set = new MinimumWeightVertexDominantSet(name);
-				// record the current starting time for the ILP solver
-				double startTime = System.currentTimeMillis();
-				// solve the ILP and save the results in the information matrix
-				infoMatrix[i - 1][0] = set.solveLP(1);
-				// record the running time of the ILP solver
-				double endTime = System.currentTimeMillis();
-				infoMatrix[i - 1][1] = (endTime - startTime);
-				// record the current starting time for the LP solver
-				startTime = System.currentTimeMillis();
-				// solve the LP and save the results in the information matrix
-				infoMatrix[i - 1][2] = set.solveLP(0);
-				// record the running time of the LP solver
-				endTime = System.currentTimeMillis();
-				infoMatrix[i - 1][3] = (endTime - startTime);
-				// compute the ratio of ILP value to LP value and save the value
-				infoMatrix[i - 1][4] = (infoMatrix[i - 1][0] / infoMatrix[i - 1][2]);
+		// the files to solve
+		java.util.List<String> names = new java.util.ArrayList<String>();
+		// the number of instances that are solved at the same time
+		int parallel = 1;
+		// whether the domination rows are generated lazily
+		boolean lazy = false;
+		// read the options and the files as they are given in the command line
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-parallel") && i + 1 < args.length) {
+				parallel = Math.max(1, Integer.parseInt(args[++i]));
+			} else if (args[i].equals("-lazy")) {
+				lazy = true;
+			} else {
+				names.add(args[i]);
 			}
-			// print the information matrix to a .csv file for easy data processing
-			printToFile(infoMatrix);
-		// otherwise, read the files as they are given in the command line
-		} else {
-			double[][] infoMatrix = new double[args.length][5];
-			for (int i = 0; i < args.length; i++) {
-				
-				String name = args[i];
-				MinimumWeightVertexDominantSet set = new MinimumWeightVertexDominantSet(name);
-				// record the current starting time for the ILP solver
-				double startTime = System.currentTimeMillis();
-				// solve the ILP and save the results in the information matrix
-				infoMatrix[i - 1][0] = set.solveLP(1);
-				// record the running time of the ILP solver
-				double endTime = System.currentTimeMillis();
-				infoMatrix[i - 1][1] = (endTime - startTime);
-				// record the current starting time for the LP solver
-				startTime = System.currentTimeMillis();
-				// solve the LP and save the results in the information matrix
-				infoMatrix[i - 1][2] = set.solveLP(0);
-				// record the running time of the LP solver
-				endTime = System.currentTimeMillis();
-				infoMatrix[i - 1][3] = (endTime - startTime);
-				// compute the ratio of ILP value to LP value and save the value
-				infoMatrix[i - 1][4] = (infoMatrix[i - 1][0] / infoMatrix[i - 1][2]);
+		}
+		// if no files are given, read the prespecified files B1.txt up to B5.txt
+		if (names.isEmpty()) {
+			for (int i = 1; i < 6; i++) {
+				names.add("B" + i + ".txt");
 			}
-			// print the information matrix to a .csv file for easy data processing
-			printToFile(infoMatrix);
 		}
+		solveAll(names, parallel, lazy);
 	}
 
-	public static void printToFile(double[][] infoMatrix) {
-		try {
-			// define the delimiter (works for dutch computers)
-			String delimiter = ";";
-			// define the newline symbol
-			String newLine = "\n";
-			// create a new PrintWriter object to print to a file
-			PrintWriter pw = new PrintWriter(new File("Output.csv"));
-			// write the header of the document with all the appropriate headers
-			pw.append("Instance;Optimal Value (ILP);Run time ILP (ms);Optimal value (LP);"
-					+ "Run time LP (ms); ratio ILP/LP\n");
-			// for as many times as there are rows in the information matrix
-			for (int i = 0; i < infoMatrix.length; i++) {
-				// write the instance number
-				pw.append(String.valueOf(i + 1));
-				// move on to next column
-				pw.append(delimiter);
-				// for the number of columns in the current row
-				for (int j = 0; j < infoMatrix[i].length; j++) {
-					// append the information in the information matrix, replacing decimals with
-					// commas
-					pw.append(String.valueOf(infoMatrix[i][j]).replace(".", ","));
-					// move on to next column
-					pw.append(delimiter);
-				}
-				// finally add a next line
-				pw.append(newLine);
+	/* Solves the given instances on a SolverPool of parallel workers, each of which
+	 * keeps its solver from one instance to the next. The cores are shared between the
+	 * workers, so that the solvers are not given more threads than there are cores.
+	 * Every row of Output.csv (or of the file of -Dresults) is written as soon as its
+	 * instance is solved, so rows appear in order of completion; see ResultSink for the
+	 * format. The status of a row is that of getStatus(), or error if the instance
+	 * could not be read or solved.
+	 *
+	 * @param names - the files containing the instances
+	 * @param parallel - the number of instances that are solved at the same time
+	 * @param lazy - whether the domination rows are generated lazily
+	 */
+	public static void solveAll(java.util.List<String> names, int parallel, boolean lazy) {
+		int workers = Math.max(1, Math.min(parallel, names.size()));
+		// the rows of the instances that are done, in order of completion
+		BlockingQueue<Object[]> done = new LinkedBlockingQueue<Object[]>();
+		String filename = System.getProperty("results", "Output.csv");
+		SolveCache cache = SolveCache.getShared();
+		try (SolverPool pool = new SolverPool(workers, 0);
+				ResultSink sink = new ResultSink(filename, false, ResultSink.getLocale(), COLUMNS)) {
+			for (int i = 0; i < names.size(); i++) {
+				String name = names.get(i);
+				int instance = i + 1;
+				pool.submit(solver -> {
+					// create a new MinimumWeightVertexDominantSet object with the file name
+					// associated to it, then solve the LP and the ILP
+					MinimumWeightVertexDominantSet set = new MinimumWeightVertexDominantSet(name);
+					set.setLazy(lazy);
+					set.setCache(cache);
+					double[] info = set.solve(solver);
+					return new Object[] { instance, name, set.getStatus(), info[0], info[1], info[2], info[3], info[4],
+							info[5], info[6], set.getTelemetry().getMillis("parse") };
+				}).whenComplete((row, error) -> {
+					if (error != null) {
+						// one failing instance does not stop the others
+						System.out.println("Could not solve " + name);
+						error.printStackTrace();
+						row = new Object[] { instance, name, "error", null, null, null, null, null, null, null, null };
+					}
+					done.add(row);
+				});
+			}
+			// write every result as soon as it is available
+			for (int i = 0; i < names.size(); i++) {
+				sink.write(done.take());
+			}
+			if (cache != null) {
+				System.out.println(cache.getSummary());
 			}
-			// flush the PrintWriter object
-			pw.flush();
-			// close it
-			pw.close();
 			// notify the console that the task has been completed
 			System.out.println("Done");
 		} catch (IOException e) {
 			// print a stack trace in case an exception is thrown
 			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 	}
 }
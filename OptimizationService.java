@@ -0,0 +1,570 @@
+/*******************************************************************************
+  * File: OptimizationService.java
+  * Local HTTP service that solves the models of this project for instances
+  * sent in their usual text formats, so that a request costs a solve instead
+  * of starting a JVM and a solver. It only listens on the loopback address.
+  * Usage: java [-Dsolver=java] OptimizationService [-port 8080] [-workers n]
+  *        [-queue n] [-io n] [-deadline ms] [-rules investmentRules.txt]
+  *
+  * POST /solve/<model> with the instance as the body and the options in the
+  * query string; the answer is a JSON object with the status (optimal,
+  * feasible if a limit stopped the solver before it proved the solution
+  * optimal, infeasible, or unsolved if a limit stopped it before it found a
+  * solution), the solution and the time taken in ms:
+  *   facility      A0, a file of FacilityLocation; strong=true
+  *   project       B0, a file of ProjectCrashing; deadline=days (required)
+  *   shortestpath  C0, instance*.txt; mode=lp (default), dijkstra,
+  *                 bellman-ford, auto or dag-longest; the status of lp is
+  *                 unbounded if the destination cannot be reached
+  *   vertexcover   D0, B*.txt; lazy=true
+  *   investment    InvestmentPlan, budget.txt followed by payoutMatrix.txt,
+  *                 with the rules of -rules
+  *   lifts         ExerciseC21, no body; lifts=n, stops=s and floors=f to
+  *                 test f floors, or without floors the maximum is searched
+  *   mwvds         MinimumWeightVertexDominantSet, B*.txt; lazy=true
+  * GET /metrics returns a histogram of the latency of every model, and the
+  * number of responses per model and status code, in the Prometheus text
+  * format. GET /health returns {"status":"ok"}.
+  *
+  * vertexcover, investment and mwvds answer an instance they solved before
+  * with the same options from the cache (-Dcache.size, -Dcache.dir and
+  * -Dcache.max_mb), see SolveCache; /metrics counts its hits and misses.
+  *
+  * The solves run on a SolverPool of -workers workers (1 by default), which
+  * keep their solver between requests; facility and project build their own
+  * solvers. At most workers + queue requests are admitted at the same time,
+  * any further request is answered 503 at once, with Retry-After, instead of
+  * queueing without bound. Every request has a deadline, the X-Deadline-Ms
+  * header or the deadline_ms parameter (-deadline, 60 s, by default): a
+  * request still queued at its deadline is not solved, and a client still
+  * waiting at its deadline gets 504 while the solve finishes in the
+  * background and keeps its place among the admitted requests.
+  *
+  * Requests are read and answered on a fixed pool of -io threads (16 by
+  * default): the JDK this project is built with has no virtual threads. The
+  * I/O threads only wait for the solves, so they can be many.
+  ******************************************************************************/
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class OptimizationService {
+
+	// the upper bounds of the buckets of the latency histograms, in seconds
+	private static final double[] BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5,
+			10, 30, 60 };
+
+	// a request for a model: the instance and the options
+	public static class Request {
+		private String model;
+		private byte[] body;
+		private Map<String, String> query;
+
+		public Request(String model, byte[] body, Map<String, String> query) {
+			this.model = model;
+			this.body = body;
+			this.query = query;
+		}
+
+		// returns a reader of the instance in the body
+		public InstanceReader getReader() {
+			return new InstanceReader(model, body);
+		}
+
+		// returns an option, or the default if it is not given
+		public String get(String name, String defaultValue) {
+			String value = query.get(name);
+			return (value == null) ? defaultValue : value;
+		}
+
+		// returns a required numeric option
+		public double getNumber(String name) {
+			String value = query.get(name);
+			if (value == null) {
+				throw new IllegalArgumentException("missing parameter " + name);
+			}
+			return Double.parseDouble(value);
+		}
+
+		// returns whether an option is true
+		public boolean is(String name) {
+			return Boolean.parseBoolean(query.get(name));
+		}
+	}
+
+	// solves a request on the solver of a worker, which it must not end
+	public interface Model {
+		// returns the fields of the solution
+		Json solve(Request request, LinearSolver solver) throws Exception;
+	}
+
+	// the fields of a JSON object, in the order in which they are added
+	public static class Json {
+		private StringBuilder text = new StringBuilder("{");
+
+		// adds a field; numbers, booleans, strings, null and arrays of those are supported
+		public Json put(String name, Object value) {
+			if (text.length() > 1) {
+				text.append(',');
+			}
+			text.append(ResultSink.jsonString(name)).append(':');
+			value(value);
+			return this;
+		}
+
+		// adds a value; scalars are written as in ResultSink
+		private void value(Object value) {
+			if (value instanceof double[]) {
+				double[] array = (double[]) value;
+				text.append('[');
+				for (int i = 0; i < array.length; i++) {
+					text.append(i > 0 ? "," : "");
+					value(array[i]);
+				}
+				text.append(']');
+			} else if (value instanceof int[]) {
+				text.append(Arrays.toString((int[]) value).replace(" ", ""));
+			} else {
+				text.append(ResultSink.jsonValue(value));
+			}
+		}
+
+		public String toString() {
+			return text + "}";
+		}
+	}
+
+	// the latencies of one model, as cumulative counts per bucket
+	private static class Histogram {
+		private long[] counts = new long[BUCKETS.length + 1];
+		private double sum;
+
+		synchronized void observe(double seconds) {
+			int b = 0;
+			while (b < BUCKETS.length && seconds > BUCKETS[b]) {
+				b++;
+			}
+			counts[b]++;
+			sum += seconds;
+		}
+
+		synchronized void write(StringBuilder out, String model) {
+			long cumulative = 0;
+			for (int b = 0; b <= BUCKETS.length; b++) {
+				cumulative += counts[b];
+				String le = (b < BUCKETS.length) ? String.valueOf(BUCKETS[b]) : "+Inf";
+				out.append("solve_latency_seconds_bucket{model=\"").append(model).append("\",le=\"").append(le)
+						.append("\"} ").append(cumulative).append('\n');
+			}
+			out.append("solve_latency_seconds_sum{model=\"").append(model).append("\"} ").append(sum).append('\n');
+			out.append("solve_latency_seconds_count{model=\"").append(model).append("\"} ").append(cumulative)
+					.append('\n');
+		}
+	}
+
+	private HashMap<String, Model> models = new LinkedHashMap<String, Model>();
+	private SolverPool pool;
+	// a permit for every request that may be admitted at the same time
+	private Semaphore admitted;
+	private int capacity;
+	private long defaultDeadline;
+	private HttpServer server;
+	private ExecutorService io;
+
+	private ConcurrentHashMap<String, Histogram> latency = new ConcurrentHashMap<String, Histogram>();
+	// the number of responses per model and status code, separated by a space
+	private ConcurrentHashMap<String, AtomicLong> responses = new ConcurrentHashMap<String, AtomicLong>();
+
+	/* Creates the service with the models of this project
+	 *
+	 * @param workers - the number of solves at the same time
+	 * @param queue - the number of admitted requests that may wait for a worker
+	 * @param defaultDeadline - the deadline of a request that does not set one, in ms
+	 * @param rules - the rules of the investment model
+	 */
+	public OptimizationService(int workers, int queue, long defaultDeadline, InvestmentPlanner.Rules rules) {
+		this.pool = new SolverPool(workers, 0);
+		this.capacity = workers + queue;
+		this.admitted = new Semaphore(capacity);
+		this.defaultDeadline = defaultDeadline;
+		models.put("facility", (request, solver) -> solveFacility(request));
+		models.put("project", (request, solver) -> solveProject(request));
+		models.put("shortestpath", OptimizationService::solveShortestPath);
+		models.put("vertexcover", OptimizationService::solveVertexCover);
+		models.put("investment", (request, solver) -> solveInvestment(request, solver, rules));
+		models.put("lifts", OptimizationService::solveLifts);
+		models.put("mwvds", OptimizationService::solveDominatingSet);
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = 8080;
+		int workers = 1;
+		int queue = 16;
+		int ioThreads = 16;
+		long deadline = 60000;
+		String rules = "investmentRules.txt";
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "-port":
+				port = Integer.parseInt(args[i + 1]);
+				break;
+			case "-workers":
+				workers = Math.max(1, Integer.parseInt(args[i + 1]));
+				break;
+			case "-queue":
+				queue = Math.max(0, Integer.parseInt(args[i + 1]));
+				break;
+			case "-io":
+				ioThreads = Math.max(1, Integer.parseInt(args[i + 1]));
+				break;
+			case "-deadline":
+				deadline = Long.parseLong(args[i + 1]);
+				break;
+			case "-rules":
+				rules = args[i + 1];
+				break;
+			default:
+				System.out.println("Unknown option " + args[i]);
+				return;
+			}
+		}
+		OptimizationService service = new OptimizationService(workers, queue, deadline,
+				new InvestmentPlanner.Rules(rules));
+		service.start(port, ioThreads);
+		Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+		System.out.println("Listening on http://localhost:" + port + "/ with " + workers + " workers");
+	}
+
+	// starts listening on the loopback address
+	public void start(int port, int ioThreads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		io = Executors.newFixedThreadPool(ioThreads);
+		server.setExecutor(io);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	// stops listening, finishes the admitted solves and ends the solvers
+	public void stop() {
+		if (server != null) {
+			server.stop(1);
+			io.shutdown();
+			server = null;
+		}
+		pool.close();
+	}
+
+	// answers one request
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getPath();
+			String method = exchange.getRequestMethod();
+			if (method.equals("GET") && path.equals("/health")) {
+				send(exchange, 200, "application/json", new Json().put("status", "ok").toString());
+			} else if (method.equals("GET") && path.equals("/metrics")) {
+				send(exchange, 200, "text/plain; version=0.0.4", metrics());
+			} else if (method.equals("POST") && path.startsWith("/solve/")) {
+				solve(exchange, path.substring("/solve/".length()));
+			} else {
+				send(exchange, 404, "application/json", error("unknown path " + path));
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	// solves the instance in the body with the model and answers with the solution
+	private void solve(HttpExchange exchange, String name) throws IOException {
+		Model model = models.get(name);
+		if (model == null) {
+			send(exchange, 404, "application/json", error("unknown model " + name));
+			return;
+		}
+		long start = System.nanoTime();
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		String header = exchange.getRequestHeaders().getFirst("X-Deadline-Ms");
+		long deadline;
+		try {
+			long millis = (header != null) ? Long.parseLong(header.trim())
+					: Long.parseLong(query.getOrDefault("deadline_ms", String.valueOf(defaultDeadline)));
+			deadline = start + millis * 1000000;
+		} catch (NumberFormatException e) {
+			respond(exchange, name, 400, error("bad deadline"));
+			return;
+		}
+		// backpressure: refuse at once when the queue is full
+		if (!admitted.tryAcquire()) {
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			respond(exchange, name, 503, error("too many requests"));
+			return;
+		}
+		CompletableFuture<Json> result;
+		try {
+			Request request = new Request(name, exchange.getRequestBody().readAllBytes(), query);
+			result = pool.submit(solver -> {
+				if (System.nanoTime() > deadline) {
+					throw new TimeoutException("the deadline passed before the solve started");
+				}
+				return model.solve(request, solver);
+			});
+		} catch (IOException | RuntimeException e) {
+			admitted.release();
+			throw e;
+		}
+		// the request keeps its place until the solve is done, also if the client stops waiting
+		result.whenComplete((solution, error) -> admitted.release());
+		try {
+			Json solution = result.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			latency.computeIfAbsent(name, key -> new Histogram()).observe(seconds);
+			respond(exchange, name, 200, solution.put("millis", seconds * 1000).toString());
+		} catch (TimeoutException e) {
+			respond(exchange, name, 504, error("deadline exceeded"));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, name, 503, error("interrupted"));
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TimeoutException) {
+				respond(exchange, name, 504, error("deadline exceeded"));
+			} else if (cause instanceof IOException || cause instanceof IllegalArgumentException) {
+				// the instance or an option cannot be read
+				respond(exchange, name, 400, error(cause.getMessage()));
+			} else {
+				cause.printStackTrace();
+				respond(exchange, name, 500, error(String.valueOf(cause)));
+			}
+		}
+	}
+
+	// sends a JSON response and counts it
+	private void respond(HttpExchange exchange, String model, int code, String json) throws IOException {
+		responses.computeIfAbsent(model + " " + code, key -> new AtomicLong()).incrementAndGet();
+		send(exchange, code, "application/json", json);
+	}
+
+	private static void send(HttpExchange exchange, int code, String type, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", type);
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static String error(String message) {
+		return new Json().put("error", message).toString();
+	}
+
+	// returns the parameters of a query string
+	private static Map<String, String> parseQuery(String query) {
+		HashMap<String, String> parameters = new HashMap<String, String>();
+		if (query == null) {
+			return parameters;
+		}
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+			} else if (!pair.isEmpty()) {
+				parameters.put(URLDecoder.decode(pair, StandardCharsets.UTF_8), "true");
+			}
+		}
+		return parameters;
+	}
+
+	// returns the histograms and counters in the Prometheus text format
+	private String metrics() {
+		StringBuilder out = new StringBuilder();
+		out.append("# TYPE solve_latency_seconds histogram\n");
+		for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(latency).entrySet()) {
+			entry.getValue().write(out, entry.getKey());
+		}
+		out.append("# TYPE responses_total counter\n");
+		for (Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(responses).entrySet()) {
+			String[] key = entry.getKey().split(" ");
+			out.append("responses_total{model=\"").append(key[0]).append("\",code=\"").append(key[1]).append("\"} ")
+					.append(entry.getValue().get()).append('\n');
+		}
+		out.append("# TYPE solver_jobs_total counter\n");
+		out.append("solver_jobs_total ").append(pool.getJobsDone()).append('\n');
+		out.append("# TYPE admitted_requests gauge\n");
+		out.append("admitted_requests ").append(capacity - admitted.availablePermits()).append('\n');
+		SolveCache cache = SolveCache.getShared();
+		if (cache != null) {
+			out.append("# TYPE cache_hits_total counter\n");
+			out.append("cache_hits_total ").append(cache.getHits()).append('\n');
+			out.append("# TYPE cache_disk_hits_total counter\n");
+			out.append("cache_disk_hits_total ").append(cache.getDiskHits()).append('\n');
+			out.append("# TYPE cache_misses_total counter\n");
+			out.append("cache_misses_total ").append(cache.getMisses()).append('\n');
+		}
+		return out.toString();
+	}
+
+	// returns the indices where a flag is set
+	private static int[] indices(boolean[] flags) {
+		int count = 0;
+		for (boolean flag : flags) {
+			count += flag ? 1 : 0;
+		}
+		int[] result = new int[count];
+		count = 0;
+		for (int i = 0; i < flags.length; i++) {
+			if (flags[i]) {
+				result[count++] = i;
+			}
+		}
+		return result;
+	}
+
+	private static Json infeasible() {
+		return new Json().put("status", "infeasible");
+	}
+
+	// A0: opens sites to meet the demand at the lowest cost
+	private static Json solveFacility(Request request) throws IOException {
+		FacilityLocation problem = new FacilityLocation(request.getReader());
+		if (!problem.solve(request.is("strong"))) {
+			return infeasible();
+		}
+		boolean[] open = new boolean[problem.getNumberOfSites()];
+		for (int i = 0; i < open.length; i++) {
+			open[i] = problem.isOpen(i);
+		}
+		return new Json().put("status", "optimal").put("value", problem.getObjValue()).put("open", indices(open));
+	}
+
+	// B0: crashes the tasks of a project to finish by the deadline at the lowest cost
+	private static Json solveProject(Request request) throws IOException {
+		ProjectCrashing project = new ProjectCrashing(request.getReader());
+		try {
+			if (!project.solve(request.getNumber("deadline"))) {
+				return infeasible().put("shortest", project.getProjectLength(true));
+			}
+			int[] levels = new int[project.getNumberOfTasks()];
+			double[] starts = new double[levels.length];
+			for (int i = 0; i < levels.length; i++) {
+				levels[i] = project.getChosenLevel(i);
+				starts[i] = project.getStartTime(i);
+			}
+			return new Json().put("status", "optimal").put("value", project.getObjValue()).put("levels", levels)
+					.put("starts", starts);
+		} finally {
+			project.end();
+		}
+	}
+
+	// C0: the labels of the shortest (or longest, on a DAG) paths from the source
+	private static Json solveShortestPath(Request request, LinearSolver solver) throws IOException {
+		Graph2 graph = new Graph2(request.getReader());
+		String mode = request.get("mode", "lp");
+		double[] values;
+		if (mode.equals("lp")) {
+			values = C0.solveLP(graph, null, solver);
+			if (values == null) {
+				return new Json().put("status", C0.unsolvedStatus(graph, solver));
+			}
+		} else {
+			PathEngine engine = new PathEngine(graph);
+			if (mode.equals("dijkstra")) {
+				values = engine.dijkstra();
+			} else if (mode.equals("bellman-ford")) {
+				values = engine.bellmanFord();
+			} else if (mode.equals("auto")) {
+				values = engine.shortestPaths();
+			} else if (mode.equals("dag-longest")) {
+				values = engine.dagLongestPaths();
+			} else {
+				throw new IllegalArgumentException("unknown mode " + mode);
+			}
+		}
+		return new Json().put("status", "optimal").put("value", values[graph.getDest()]).put("labels", values);
+	}
+
+	// D0: the minimum weight vertex cover
+	private static Json solveVertexCover(Request request, LinearSolver solver) throws IOException {
+		VertexCover problem = new VertexCover(new Graph2(request.getReader()));
+		problem.setLazy(request.is("lazy"));
+		problem.setSolver(solver);
+		problem.setCache(SolveCache.getShared());
+		double[] nodes = problem.solve();
+		boolean[] cover = new boolean[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			cover[i] = nodes[i] > 0.5;
+		}
+		return new Json().put("status", problem.getStatus()).put("value", problem.coverWeight(nodes))
+				.put("kernel_nodes", problem.getKernelNodes()).put("cover", indices(cover));
+	}
+
+	// InvestmentPlan: the projects to invest in, numbered from 1 as in the rules
+	private static Json solveInvestment(Request request, LinearSolver solver, InvestmentPlanner.Rules rules)
+			throws IOException {
+		InstanceReader in = request.getReader();
+		int[] budget = InvestmentPlanner.readBudget(in);
+		int[][] payout = InvestmentPlanner.readPayout(in);
+		InvestmentPlanner planner = new InvestmentPlanner(rules, payout.length, budget.length, solver);
+		planner.setCache(SolveCache.getShared());
+		try {
+			if (!planner.solve(budget, payout)) {
+				return infeasible();
+			}
+			ArrayList<Integer> chosen = new ArrayList<Integer>();
+			double[] fractions = new double[payout.length];
+			for (int p = 0; p < payout.length; p++) {
+				if (planner.isChosen(p)) {
+					chosen.add(p + 1);
+				}
+				fractions[p] = planner.getFraction(p);
+			}
+			double[] capital = new double[budget.length + 1];
+			for (int year = 0; year <= budget.length; year++) {
+				capital[year] = planner.getMoneyInBank(year);
+			}
+			return new Json().put("status", planner.isOptimal() ? "optimal" : "feasible")
+					.put("value", planner.getObjValue())
+					.put("projects", chosen.stream().mapToInt(Integer::intValue).toArray())
+					.put("fractions", fractions).put("capital", capital);
+		} finally {
+			planner.end();
+		}
+	}
+
+	// ExerciseC21: whether the lifts connect the floors, or the most floors they connect
+	private static Json solveLifts(Request request, LinearSolver solver) {
+		int lifts = (int) request.getNumber("lifts");
+		int stops = (int) request.getNumber("stops");
+		if (request.get("floors", null) == null) {
+			ExerciseC21.SearchResult result = ExerciseC21.maximumFloors(lifts, stops, solver);
+			return new Json().put("status", "optimal").put("floors", result.getMaximumFloors())
+					.put("solves", result.getNumberOfSolves());
+		}
+		int floors = (int) request.getNumber("floors");
+		LiftBounds.Decision decision = ExerciseC21.checkFeasibility(lifts, stops, floors, solver);
+		return new Json().put("status", decision.isFeasible() ? "feasible" : "infeasible").put("floors", floors)
+				.put("decided_by", decision.getReason());
+	}
+
+	// MinimumWeightVertexDominantSet: the dominating set of minimum weight and the LP bound
+	private static Json solveDominatingSet(Request request, LinearSolver solver) throws IOException {
+		MinimumWeightVertexDominantSet set = new MinimumWeightVertexDominantSet(request.model,
+				new Graph(request.getReader()));
+		set.setLazy(request.is("lazy"));
+		set.setCache(SolveCache.getShared());
+		double[] info = set.solve(solver);
+		if (set.getChosen() == null) {
+			return new Json().put("status", set.getStatus());
+		}
+		return new Json().put("status", set.getStatus()).put("value", info[0]).put("lp_bound", info[2])
+				.put("heuristic_value", info[5]).put("nodes", indices(set.getChosen()));
+	}
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+  * File: PathEngine.java
+  * Class to compute paths from the source of a Graph2 without cplex. Edges are
+  * directed from their first to their second node, and are kept in a CSR
+  * structure of outgoing edges, so every algorithm runs on O(n + m) memory:
+  * Dijkstra for non-negative weights, Bellman-Ford for arbitrary weights and a
+  * longest path over a topological order for acyclic graphs. Unreachable
+  * nodes get distance Double.POSITIVE_INFINITY (NEGATIVE_INFINITY for longest
+  * paths).
+  ******************************************************************************/
+
+import java.util.Arrays;
+
+public class PathEngine {
+
+	private int numberOfNodes;
+	private int source;
+	private double[] weight;
+	// the outgoing edges of every node
+	private CsrGraph outgoing;
+	// whether some edge has a negative weight
+	private boolean negativeWeights;
+
+	// creates the engine for the directed edges of the graph
+	public PathEngine(Graph2 graph) {
+		this.numberOfNodes = graph.getNumberOfNodes();
+		this.source = graph.getSource();
+		int m = graph.getNumberOfEdges();
+		int[] src = new int[m];
+		int[] dst = new int[m];
+		this.weight = new double[m];
+		for (int e = 0; e < m; e++) {
+			src[e] = graph.getFirstNode(e);
+			dst[e] = graph.getSecondNode(e);
+			this.weight[e] = graph.getEdgeWeight(e);
+			if (this.weight[e] < 0) {
+				this.negativeWeights = true;
+			}
+		}
+		this.outgoing = CsrGraph.fromEdges(this.numberOfNodes, m, src, dst, false, false);
+	}
+
+	// returns whether some edge has a negative weight
+	public boolean hasNegativeWeights() {
+		return this.negativeWeights;
+	}
+
+	// returns whether a path of edges leads from the source to the node, whatever the weights
+	public boolean isReachable(int node) {
+		boolean[] seen = new boolean[this.numberOfNodes];
+		// depth-first search with an explicit stack
+		int[] stack = new int[this.numberOfNodes];
+		int size = 0;
+		seen[this.source] = true;
+		stack[size++] = this.source;
+		while (size > 0) {
+			int u = stack[--size];
+			if (u == node) {
+				return true;
+			}
+			for (int k = outgoing.neighborStart(u); k < outgoing.neighborEnd(u); k++) {
+				int v = outgoing.neighbor(k);
+				if (!seen[v]) {
+					seen[v] = true;
+					stack[size++] = v;
+				}
+			}
+		}
+		return false;
+	}
+
+	// returns the shortest distances from the source, with Dijkstra if all weights are
+	// non-negative and with Bellman-Ford otherwise
+	public double[] shortestPaths() {
+		return this.negativeWeights ? bellmanFord() : dijkstra();
+	}
+
+	/* Computes the shortest distances from the source with Dijkstra's algorithm, using
+	 * a binary heap stored in primitive arrays. All weights must be non-negative.
+	 *
+	 * @returns the distance of every node
+	 */
+	public double[] dijkstra() {
+		if (this.negativeWeights) {
+			throw new IllegalStateException("Dijkstra needs non-negative edge weights");
+		}
+		int n = this.numberOfNodes;
+		double[] distance = new double[n];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		// heap[k] is a node, position[v] its place in the heap or -1 if it is not in it
+		int[] heap = new int[n];
+		int[] position = new int[n];
+		Arrays.fill(position, -1);
+		int size = 0;
+		distance[this.source] = 0;
+		heap[size] = this.source;
+		position[this.source] = size++;
+		while (size > 0) {
+			// remove the node closest to the source
+			int u = heap[0];
+			position[u] = -1;
+			size--;
+			if (size > 0) {
+				heap[0] = heap[size];
+				position[heap[0]] = 0;
+				siftDown(heap, position, distance, size, 0);
+			}
+			for (int k = outgoing.neighborStart(u); k < outgoing.neighborEnd(u); k++) {
+				int v = outgoing.neighbor(k);
+				double candidate = distance[u] + weight[outgoing.edgeId(k)];
+				if (candidate < distance[v]) {
+					if (distance[v] == Double.POSITIVE_INFINITY) {
+						heap[size] = v;
+						position[v] = size++;
+					}
+					distance[v] = candidate;
+					siftUp(heap, position, distance, position[v]);
+				}
+			}
+		}
+		return distance;
+	}
+
+	/* Computes the shortest distances from the source with the Bellman-Ford algorithm,
+	 * stopping as soon as a round changes nothing
+	 *
+	 * @returns the distance of every node
+	 */
+	public double[] bellmanFord() {
+		int n = this.numberOfNodes;
+		double[] distance = new double[n];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		distance[this.source] = 0;
+		for (int round = 0; round < n; round++) {
+			boolean changed = false;
+			for (int u = 0; u < n; u++) {
+				if (distance[u] == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				for (int k = outgoing.neighborStart(u); k < outgoing.neighborEnd(u); k++) {
+					int v = outgoing.neighbor(k);
+					double candidate = distance[u] + weight[outgoing.edgeId(k)];
+					if (candidate < distance[v]) {
+						distance[v] = candidate;
+						changed = true;
+					}
+				}
+			}
+			if (!changed) {
+				return distance;
+			}
+		}
+		// a change in round n means a cycle of negative weight
+		throw new IllegalStateException("The graph has a cycle of negative weight reachable from the source");
+	}
+
+	/* Computes the longest distances from the source in an acyclic graph, by relaxing
+	 * the edges in topological order
+	 *
+	 * @returns the distance of every node
+	 */
+	public double[] dagLongestPaths() {
+		int[] order = topologicalOrder();
+		double[] distance = new double[this.numberOfNodes];
+		Arrays.fill(distance, Double.NEGATIVE_INFINITY);
+		distance[this.source] = 0;
+		for (int u : order) {
+			if (distance[u] == Double.NEGATIVE_INFINITY) {
+				continue;
+			}
+			for (int k = outgoing.neighborStart(u); k < outgoing.neighborEnd(u); k++) {
+				int v = outgoing.neighbor(k);
+				double candidate = distance[u] + weight[outgoing.edgeId(k)];
+				if (candidate > distance[v]) {
+					distance[v] = candidate;
+				}
+			}
+		}
+		return distance;
+	}
+
+	// returns the nodes in topological order (Kahn's algorithm)
+	public int[] topologicalOrder() {
+		int n = this.numberOfNodes;
+		int[] indegree = new int[n];
+		for (int k = 0; k < outgoing.getNumberOfEntries(); k++) {
+			indegree[outgoing.neighbor(k)]++;
+		}
+		// order doubles as the queue of nodes without remaining incoming edges
+		int[] order = new int[n];
+		int head = 0;
+		int tail = 0;
+		for (int v = 0; v < n; v++) {
+			if (indegree[v] == 0) {
+				order[tail++] = v;
+			}
+		}
+		while (head < tail) {
+			int u = order[head++];
+			for (int k = outgoing.neighborStart(u); k < outgoing.neighborEnd(u); k++) {
+				int v = outgoing.neighbor(k);
+				if (--indegree[v] == 0) {
+					order[tail++] = v;
+				}
+			}
+		}
+		if (tail < n) {
+			throw new IllegalStateException("The graph has a cycle, longest paths need an acyclic graph");
+		}
+		return order;
+	}
+
+	// moves the node at place k up the heap until its parent is closer to the source
+	private static void siftUp(int[] heap, int[] position, double[] distance, int k) {
+		int node = heap[k];
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			if (distance[heap[parent]] <= distance[node]) {
+				break;
+			}
+			heap[k] = heap[parent];
+			position[heap[k]] = k;
+			k = parent;
+		}
+		heap[k] = node;
+		position[node] = k;
+	}
+
+	// moves the node at place k down the heap until its children are further away
+	private static void siftDown(int[] heap, int[] position, double[] distance, int size, int k) {
+		int node = heap[k];
+		while (true) {
+			int child = 2 * k + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && distance[heap[child + 1]] < distance[heap[child]]) {
+				child++;
+			}
+			if (distance[heap[child]] >= distance[node]) {
+				break;
+			}
+			heap[k] = heap[child];
+			position[heap[k]] = k;
+			k = child;
+		}
+		heap[k] = node;
+		position[node] = k;
+	}
+}
@@ -0,0 +1,336 @@
+/*******************************************************************************
+  * File: ProjectCrashing.java
+  * Class to solve the project crashing problem (B0) on a precedence DAG of
+  * tasks: every task is done at one of its crash levels, each with its own
+  * duration and cost, and the project has to finish by a deadline at the
+  * lowest total cost. The start time formulation has one start variable per
+  * task and one row per precedence arc, instead of a row per path, whose
+  * number grows exponentially with the size of the project.
+  *
+  * The file has the number of tasks and arcs, a line per task with the
+  * number of crash levels followed by the duration and cost of every level,
+  * and a line per arc with the task that comes first and the task that has
+  * to wait for it (both numbered from 0). See project.txt.
+  ******************************************************************************/
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ProjectCrashing {
+
+	private int numberOfTasks;
+	// the levels of task i are levels levelStart[i] to levelStart[i + 1] - 1
+	private int[] levelStart;
+	private double[] levelDuration;
+	private double[] levelCost;
+	// the arcs, first task before second task
+	private int[] arcFrom;
+	private int[] arcTo;
+	// the tasks that wait for every task
+	private CsrGraph successors;
+	// the tasks in an order that respects the arcs
+	private int[] topologicalOrder;
+
+	// the model, built once for all deadlines
+	private LinearSolver solver;
+	private int[] levelChosen;
+	private int[] start;
+	private int finish;
+
+	// the solution
+	private int[] chosenLevel;
+	private double[] startTime;
+	private double objValue;
+
+	/* Reads a project from a file
+	 *
+	 * @param filename - the file in the format described above
+	 */
+	public ProjectCrashing(String filename) throws IOException {
+		this(new InstanceReader(filename));
+	}
+
+	// reads a project in the format described above from the reader, which is closed
+	public ProjectCrashing(InstanceReader input) throws IOException {
+		int tasks = input.nextCount();
+		int arcs = input.nextCount();
+		int[] levelStart = new int[tasks + 1];
+		ArrayList<double[]> levels = new ArrayList<double[]>();
+		for (int i = 0; i < tasks; i++) {
+			int count = input.nextCount();
+			for (int l = 0; l < count; l++) {
+				levels.add(new double[] { input.nextDouble(), input.nextDouble() });
+			}
+			levelStart[i + 1] = levelStart[i] + count;
+		}
+		double[] duration = new double[levels.size()];
+		double[] cost = new double[levels.size()];
+		for (int k = 0; k < duration.length; k++) {
+			duration[k] = levels.get(k)[0];
+			cost[k] = levels.get(k)[1];
+		}
+		int[] arcFrom = new int[arcs];
+		int[] arcTo = new int[arcs];
+		for (int a = 0; a < arcs; a++) {
+			arcFrom[a] = input.nextInt();
+			arcTo[a] = input.nextInt();
+		}
+		input.close();
+		input.printSummary();
+		init(levelStart, duration, cost, arcFrom, arcTo);
+	}
+
+	/* Creates a project from arrays
+	 *
+	 * @param levelStart - the levels of task i are levelStart[i] to levelStart[i + 1] - 1
+	 * @param levelDuration, levelCost - the duration and cost of every level
+	 * @param arcFrom, arcTo - task arcFrom[a] has to be finished before task arcTo[a] starts
+	 */
+	public ProjectCrashing(int[] levelStart, double[] levelDuration, double[] levelCost, int[] arcFrom,
+			int[] arcTo) {
+		init(levelStart, levelDuration, levelCost, arcFrom, arcTo);
+	}
+
+	// stores the project and orders its tasks
+	private void init(int[] levelStart, double[] levelDuration, double[] levelCost, int[] arcFrom, int[] arcTo) {
+		this.numberOfTasks = levelStart.length - 1;
+		this.levelStart = levelStart;
+		this.levelDuration = levelDuration;
+		this.levelCost = levelCost;
+		this.arcFrom = arcFrom;
+		this.arcTo = arcTo;
+		for (int i = 0; i < numberOfTasks; i++) {
+			if (levelStart[i + 1] <= levelStart[i]) {
+				throw new IllegalArgumentException("task " + i + " has no crash level");
+			}
+		}
+		// Kahn's algorithm: a task is ordered once all tasks before it are
+		int[] waiting = new int[numberOfTasks];
+		for (int a = 0; a < arcTo.length; a++) {
+			if (arcFrom[a] < 0 || arcFrom[a] >= numberOfTasks || arcTo[a] < 0 || arcTo[a] >= numberOfTasks) {
+				throw new IllegalArgumentException("arc " + a + " has no valid tasks");
+			}
+			waiting[arcTo[a]]++;
+		}
+		// repeated arcs are kept, as they are counted in waiting as well
+		this.successors = CsrGraph.fromEdges(numberOfTasks, arcFrom.length, arcFrom, arcTo, false, false);
+		this.topologicalOrder = new int[numberOfTasks];
+		int ordered = 0;
+		for (int i = 0; i < numberOfTasks; i++) {
+			if (waiting[i] == 0) {
+				topologicalOrder[ordered++] = i;
+			}
+		}
+		for (int k = 0; k < ordered; k++) {
+			int i = topologicalOrder[k];
+			for (int e = successors.neighborStart(i); e < successors.neighborEnd(i); e++) {
+				int j = successors.neighbor(e);
+				if (--waiting[j] == 0) {
+					topologicalOrder[ordered++] = j;
+				}
+			}
+		}
+		if (ordered < numberOfTasks) {
+			throw new IllegalArgumentException("the precedences of the tasks have a cycle");
+		}
+	}
+
+	// returns the number of tasks
+	public int getNumberOfTasks() {
+		return this.numberOfTasks;
+	}
+
+	// returns the number of crash levels of a task
+	public int getNumberOfLevels(int task) {
+		return levelStart[task + 1] - levelStart[task];
+	}
+
+	/* Returns the length of the project when every task takes its shortest duration
+	 * (fastest true) or the duration of its cheapest level (fastest false), the longest
+	 * path through the DAG
+	 */
+	public double getProjectLength(boolean fastest) {
+		double[] durations = new double[numberOfTasks];
+		for (int i = 0; i < numberOfTasks; i++) {
+			int best = levelStart[i];
+			for (int k = levelStart[i]; k < levelStart[i + 1]; k++) {
+				boolean better = fastest ? levelDuration[k] < levelDuration[best]
+						: levelCost[k] < levelCost[best]
+								|| (levelCost[k] == levelCost[best] && levelDuration[k] < levelDuration[best]);
+				if (better) {
+					best = k;
+				}
+			}
+			durations[i] = levelDuration[best];
+		}
+		return longestPath(durations);
+	}
+
+	// returns the length of the project for the given durations of the tasks
+	private double longestPath(double[] durations) {
+		double[] earliest = new double[numberOfTasks];
+		double length = 0;
+		for (int i : topologicalOrder) {
+			double end = earliest[i] + durations[i];
+			length = Math.max(length, end);
+			for (int e = successors.neighborStart(i); e < successors.neighborEnd(i); e++) {
+				int j = successors.neighbor(e);
+				earliest[j] = Math.max(earliest[j], end);
+			}
+		}
+		return length;
+	}
+
+	/* Builds the model: a binary variable per crash level, of which every task
+	 * chooses one, a start time per task, and the finish time of the project, which
+	 * the deadline bounds. Every arc (i, j) gives start_j >= start_i + duration_i, and
+	 * every task finishes before the project does.
+	 */
+	private void buildModel() {
+		solver = LinearSolver.create();
+		solver.setQuiet();
+		levelChosen = solver.addVariables(levelDuration.length, 0, 1, true);
+		start = solver.addVariables(numberOfTasks, 0, Double.POSITIVE_INFINITY, false);
+		finish = solver.addVariable(0, Double.POSITIVE_INFINITY, false);
+		LinearExpr objective = new LinearExpr();
+		for (int k = 0; k < levelDuration.length; k++) {
+			objective.addTerm(levelChosen[k], levelCost[k]);
+		}
+		solver.minimize(objective);
+		for (int i = 0; i < numberOfTasks; i++) {
+			LinearExpr once = new LinearExpr();
+			for (int k = levelStart[i]; k < levelStart[i + 1]; k++) {
+				once.addTerm(levelChosen[k], 1);
+			}
+			solver.addEq(once, 1);
+		}
+		boolean[] hasSuccessor = new boolean[numberOfTasks];
+		for (int a = 0; a < arcFrom.length; a++) {
+			hasSuccessor[arcFrom[a]] = true;
+			solver.addGe(precedence(arcFrom[a], start[arcTo[a]]), 0);
+		}
+		// only tasks without successors can be the last one
+		for (int i = 0; i < numberOfTasks; i++) {
+			if (!hasSuccessor[i]) {
+				solver.addGe(precedence(i, finish), 0);
+			}
+		}
+	}
+
+	// returns later - start_i - duration_i, which is at least 0 if later is after task i
+	private LinearExpr precedence(int i, int later) {
+		LinearExpr expr = new LinearExpr().addTerm(later, 1).addTerm(start[i], -1);
+		for (int k = levelStart[i]; k < levelStart[i + 1]; k++) {
+			expr.addTerm(levelChosen[k], -levelDuration[k]);
+		}
+		return expr;
+	}
+
+	/* Finds the cheapest way to finish the project by the deadline. The model is kept,
+	 * so that a sweep over the deadlines only changes the bound of the finish time.
+	 *
+	 * @returns true if the project can finish by the deadline
+	 */
+	public boolean solve(double deadline) {
+		if (solver == null) {
+			buildModel();
+		}
+		solver.setBounds(finish, 0, deadline);
+		if (!solver.solve()) {
+			return false;
+		}
+		this.objValue = solver.getObjValue();
+		this.chosenLevel = new int[numberOfTasks];
+		double[] chosen = solver.getValues(levelChosen);
+		for (int i = 0; i < numberOfTasks; i++) {
+			for (int k = levelStart[i]; k < levelStart[i + 1]; k++) {
+				if (chosen[k] > 0.5) {
+					chosenLevel[i] = k - levelStart[i];
+				}
+			}
+		}
+		this.startTime = solver.getValues(start);
+		return true;
+	}
+
+	/* Solves the project for every deadline from the shortest possible length of the
+	 * project up to its length when every task is done at its cheapest level, which
+	 * gives the trade-off between time and cost. Every deadline is started from the
+	 * solution of the one before, which still finishes in time.
+	 *
+	 * @param step - the increase of the deadline, greater than 0
+	 *
+	 * @returns the deadlines and the cost at each of them, as pairs
+	 */
+	public ArrayList<double[]> sweep(double step) {
+		if (!(step > 0)) {
+			throw new IllegalArgumentException("the step of the deadline is " + step + " instead of more than 0");
+		}
+		ArrayList<double[]> curve = new ArrayList<double[]>();
+		double shortest = getProjectLength(true);
+		double cheapest = getProjectLength(false);
+		for (int n = 0;; n++) {
+			double deadline = Math.min(shortest + n * step, cheapest);
+			if (!curve.isEmpty()) {
+				warmStart();
+			}
+			if (!solve(deadline)) {
+				throw new IllegalStateException("no solution for deadline " + deadline);
+			}
+			curve.add(new double[] { deadline, objValue });
+			if (deadline >= cheapest) {
+				return curve;
+			}
+		}
+	}
+
+	// gives the last solution to the solver as the start of the next solve
+	private void warmStart() {
+		int[] vars = new int[levelChosen.length + numberOfTasks + 1];
+		double[] values = new double[vars.length];
+		for (int k = 0; k < levelChosen.length; k++) {
+			vars[k] = levelChosen[k];
+		}
+		for (int i = 0; i < numberOfTasks; i++) {
+			values[levelStart[i] + chosenLevel[i]] = 1;
+			vars[levelChosen.length + i] = start[i];
+			values[levelChosen.length + i] = startTime[i];
+		}
+		double last = 0;
+		for (int i = 0; i < numberOfTasks; i++) {
+			last = Math.max(last, startTime[i] + getDuration(i));
+		}
+		vars[vars.length - 1] = finish;
+		values[vars.length - 1] = last;
+		solver.setStart(vars, values);
+	}
+
+	// returns the crash level of a task in the solution
+	public int getChosenLevel(int task) {
+		return this.chosenLevel[task];
+	}
+
+	// returns the duration of a task in the solution
+	public double getDuration(int task) {
+		return levelDuration[levelStart[task] + chosenLevel[task]];
+	}
+
+	// returns the start time of a task in the solution
+	public double getStartTime(int task) {
+		return this.startTime[task];
+	}
+
+	// returns the total cost of the solution
+	public double getObjValue() {
+		return this.objValue;
+	}
+
+	// releases the model
+	public void end() {
+		if (solver != null) {
+			solver.end();
+			solver = null;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+  * File: ProjectCrashingCheck.java
+  * Checks ProjectCrashing on random small DAGs: every point of the sweep over
+  * the deadlines must have the cost of the cheapest choice of crash levels
+  * that finishes by the deadline, found by trying them all, and the schedule
+  * of the last solve must respect the arcs, finish by the deadline and cost
+  * what it reports. A deadline shorter than the project cannot be met.
+  * Usage: java [-Dsolver=java] ProjectCrashingCheck [projects]
+  * Exits with status 1 if any check fails.
+  ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class ProjectCrashingCheck {
+
+	private static final double TOLERANCE = 1e-6;
+
+	public static void main(String[] args) {
+		int projects = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+		Random random = new Random(3);
+		int checked = 0;
+		int failed = 0;
+		for (int t = 0; t < projects; t++) {
+			int tasks = 2 + random.nextInt(6);
+			int[] levelStart = new int[tasks + 1];
+			ArrayList<double[]> levels = new ArrayList<double[]>();
+			for (int i = 0; i < tasks; i++) {
+				int count = 1 + random.nextInt(3);
+				for (int l = 0; l < count; l++) {
+					levels.add(new double[] { 1 + random.nextInt(9), random.nextInt(10) });
+				}
+				levelStart[i + 1] = levelStart[i] + count;
+			}
+			double[] duration = new double[levels.size()];
+			double[] cost = new double[levels.size()];
+			for (int k = 0; k < levels.size(); k++) {
+				duration[k] = levels.get(k)[0];
+				cost[k] = levels.get(k)[1];
+			}
+			// arcs only go to later tasks, so the graph has no cycle
+			ArrayList<int[]> arcs = new ArrayList<int[]>();
+			for (int i = 0; i < tasks; i++) {
+				for (int j = i + 1; j < tasks; j++) {
+					if (random.nextInt(3) == 0) {
+						arcs.add(new int[] { i, j });
+					}
+				}
+			}
+			int[] arcFrom = new int[arcs.size()];
+			int[] arcTo = new int[arcs.size()];
+			for (int a = 0; a < arcs.size(); a++) {
+				arcFrom[a] = arcs.get(a)[0];
+				arcTo[a] = arcs.get(a)[1];
+			}
+
+			ProjectCrashing project = new ProjectCrashing(levelStart, duration, cost, arcFrom, arcTo);
+			try {
+				for (double[] point : project.sweep(1)) {
+					double best = cheapest(levelStart, duration, cost, arcs, point[0]);
+					checked++;
+					if (Math.abs(point[1] - best) > TOLERANCE) {
+						failed++;
+						System.out.println("project " + t + ", deadline " + point[0] + ": costs " + point[1]
+								+ ", the cheapest levels " + best);
+					}
+				}
+				double shortest = project.getProjectLength(true);
+				checked++;
+				if (project.solve(shortest - 0.5)) {
+					failed++;
+					System.out.println("project " + t + ": finishes by " + (shortest - 0.5) + ", before its "
+							+ "shortest length " + shortest);
+				}
+				double deadline = shortest + random.nextInt(10);
+				String error = project.solve(deadline) ? verify(project, levelStart, cost, arcs, deadline)
+						: "cannot finish by " + deadline;
+				checked++;
+				if (error != null) {
+					failed++;
+					System.out.println("project " + t + ", deadline " + deadline + ": " + error);
+				}
+			} finally {
+				project.end();
+			}
+		}
+		System.out.println("ProjectCrashing: " + checked + " checked, " + failed + " failed");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+	// returns the cost of the cheapest levels that finish by the deadline, trying them all
+	private static double cheapest(int[] levelStart, double[] duration, double[] cost, ArrayList<int[]> arcs,
+			double deadline) {
+		int tasks = levelStart.length - 1;
+		double best = Double.POSITIVE_INFINITY;
+		int[] level = new int[tasks];
+		while (true) {
+			double total = 0;
+			double length = 0;
+			double[] end = new double[tasks];
+			// the tasks are in a topological order, as the arcs go to later tasks
+			for (int i = 0; i < tasks; i++) {
+				double begin = 0;
+				for (int[] arc : arcs) {
+					if (arc[1] == i) {
+						begin = Math.max(begin, end[arc[0]]);
+					}
+				}
+				end[i] = begin + duration[levelStart[i] + level[i]];
+				length = Math.max(length, end[i]);
+				total += cost[levelStart[i] + level[i]];
+			}
+			if (length <= deadline + 1e-9) {
+				best = Math.min(best, total);
+			}
+			int i = 0;
+			while (i < tasks && ++level[i] == levelStart[i + 1] - levelStart[i]) {
+				level[i] = 0;
+				i++;
+			}
+			if (i == tasks) {
+				return best;
+			}
+		}
+	}
+
+	// returns what is wrong with the schedule of the last solve, null if it is right
+	private static String verify(ProjectCrashing project, int[] levelStart, double[] cost, ArrayList<int[]> arcs,
+			double deadline) {
+		double total = 0;
+		for (int i = 0; i < project.getNumberOfTasks(); i++) {
+			if (project.getStartTime(i) < -TOLERANCE) {
+				return "task " + i + " starts at " + project.getStartTime(i);
+			}
+			if (project.getStartTime(i) + project.getDuration(i) > deadline + TOLERANCE) {
+				return "task " + i + " ends at " + (project.getStartTime(i) + project.getDuration(i));
+			}
+			total += cost[levelStart[i] + project.getChosenLevel(i)];
+		}
+		for (int[] arc : arcs) {
+			if (project.getStartTime(arc[0]) + project.getDuration(arc[0]) > project.getStartTime(arc[1])
+					+ TOLERANCE) {
+				return "task " + arc[1] + " starts before task " + arc[0] + " ends";
+			}
+		}
+		if (Math.abs(total - project.getObjValue()) > TOLERANCE) {
+			return "reports a cost of " + project.getObjValue() + " for levels of cost " + total;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+  * File: ResultSink.java
+  * Class to write the results of a batch of runs as they come in, a row per
+  * run, so that a crash halfway only loses the runs that had not finished.
+  * Every row is flushed as soon as it is written: rows come once per solved
+  * instance, so a row waiting in the buffer for the next one could be lost
+  * during a long solve.
+  *
+  * A file ending in .jsonl or .json gets one JSON object per row (JSON
+  * Lines), with the columns as keys, for other programs. Any other file is
+  * CSV in the locale of the system property results.locale (a language tag
+  * such as nl-NL or en-US, or root), or of the machine if it is not set: the
+  * decimal separator of the locale, and ; between the columns if that is a
+  * comma. Numbers are never grouped or rounded.
+  *
+  * Run a program with -Dresults=file to write its results to the file, see
+  * fromProperty; rows of later runs are appended to it.
+  ******************************************************************************/
+
+import java.io.*;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+public class ResultSink implements Closeable {
+
+	private Writer out;
+	private String[] columns;
+	private boolean json;
+	private char delimiter;
+	private char decimalSeparator;
+
+	/* Opens a sink
+	 *
+	 * @param filename - the file, JSON Lines if it ends in .jsonl or .json and CSV otherwise
+	 * @param append - whether rows are added to an existing file; the CSV header is only
+	 * written to a file that is new or empty
+	 * @param locale - the locale of the numbers in CSV
+	 * @param columns - the names of the columns
+	 */
+	public ResultSink(String filename, boolean append, Locale locale, String... columns) throws IOException {
+		this.columns = columns.clone();
+		String lower = filename.toLowerCase(Locale.ROOT);
+		this.json = lower.endsWith(".jsonl") || lower.endsWith(".json");
+		this.decimalSeparator = DecimalFormatSymbols.getInstance(locale).getDecimalSeparator();
+		this.delimiter = (decimalSeparator == ',') ? ';' : ',';
+		File file = new File(filename);
+		boolean header = !json && (!append || file.length() == 0);
+		this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), "UTF-8"));
+		if (header) {
+			for (int c = 0; c < columns.length; c++) {
+				if (c > 0) {
+					out.write(delimiter);
+				}
+				out.write(csvField(columns[c], delimiter));
+			}
+			out.write('\n');
+			out.flush();
+		}
+	}
+
+	/* Opens the sink of the system property results, appending to it, or returns null if
+	 * the property is not set
+	 *
+	 * @param columns - the names of the columns
+	 */
+	public static ResultSink fromProperty(String... columns) throws IOException {
+		String filename = System.getProperty("results");
+		if (filename == null) {
+			return null;
+		}
+		return new ResultSink(filename, true, getLocale(), columns);
+	}
+
+	// returns the locale of the system property results.locale, or that of the machine
+	public static Locale getLocale() {
+		String tag = System.getProperty("results.locale");
+		if (tag == null) {
+			return Locale.getDefault(Locale.Category.FORMAT);
+		}
+		return tag.equalsIgnoreCase("root") ? Locale.ROOT : Locale.forLanguageTag(tag);
+	}
+
+	/* Writes a row. Strings, numbers and booleans are written as they are, null as an
+	 * empty field (null in JSON).
+	 *
+	 * @param values - a value for every column
+	 */
+	public synchronized void write(Object... values) throws IOException {
+		if (values.length != columns.length) {
+			throw new IllegalArgumentException(values.length + " values for " + columns.length + " columns");
+		}
+		StringBuilder row = new StringBuilder();
+		if (json) {
+			row.append('{');
+			for (int c = 0; c < columns.length; c++) {
+				if (c > 0) {
+					row.append(',');
+				}
+				row.append(jsonString(columns[c])).append(':').append(jsonValue(values[c]));
+			}
+			row.append('}');
+		} else {
+			for (int c = 0; c < columns.length; c++) {
+				if (c > 0) {
+					row.append(delimiter);
+				}
+				row.append(csvValue(values[c]));
+			}
+		}
+		row.append('\n');
+		out.write(row.toString());
+		out.flush();
+	}
+
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	// returns a value for CSV
+	private String csvValue(Object value) {
+		if (value == null) {
+			return "";
+		}
+		if (value instanceof Double || value instanceof Float) {
+			return number(((Number) value).doubleValue());
+		}
+		if (value instanceof Number || value instanceof Boolean) {
+			return value.toString();
+		}
+		return csvField(value.toString(), delimiter);
+	}
+
+	// returns a double with the decimal separator of the locale and all of its digits
+	private String number(double value) {
+		String text = String.valueOf(value);
+		return (decimalSeparator == '.') ? text : text.replace('.', decimalSeparator);
+	}
+
+	// returns a field for CSV, quoted if it has the delimiter, a quote or a line break
+	public static String csvField(String value, char delimiter) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+				return '"' + value.replace("\"", "\"\"") + '"';
+			}
+		}
+		return value;
+	}
+
+	// returns a value for JSON, which has no infinity or NaN: null, a number, a boolean
+	// or else the string of the value
+	public static String jsonValue(Object value) {
+		if (value == null) {
+			return "null";
+		}
+		if (value instanceof Double || value instanceof Float) {
+			double number = ((Number) value).doubleValue();
+			return (Double.isInfinite(number) || Double.isNaN(number)) ? "null" : String.valueOf(number);
+		}
+		if (value instanceof Number || value instanceof Boolean) {
+			return value.toString();
+		}
+		return jsonString(value.toString());
+	}
+
+	// returns a quoted JSON string
+	public static String jsonString(String value) {
+		StringBuilder escaped = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				escaped.append('\\').append(c);
+			} else if (c < ' ') {
+				escaped.append(String.format("\\u%04x", (int) c));
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.append('"').toString();
+	}
+}
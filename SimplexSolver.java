@@ -0,0 +1,1260 @@
+/*******************************************************************************
+  * File: SimplexSolver.java
+  * LinearSolver in plain Java, for machines without cplex. Linear programs are
+  * solved with a bounded-variable revised primal simplex method: every row
+  * gets a slack variable s = a x with the bounds of the row, so that bounds of
+  * variables and rows are handled by the ratio test instead of extra rows.
+  * The inverse of the basis is kept as a dense matrix and updated after every
+  * pivot, only touching the rows where the entering column is non-zero, which
+  * is most of the work saved on the sparse covering and flow models of this
+  * project. Phase 1 minimises the sum of infeasibilities, and after a solve
+  * the basis is kept, so that re-solving after changing bounds or adding rows
+  * starts from the last basis.
+  *
+  * Integer variables are handled with depth-first branch and bound on the
+  * most fractional variable, exploring the child on the side the variable
+  * rounds to first. Every node starts from the basis of the node solved
+  * before it. When the objective can only take integer values, nodes are
+  * pruned on the rounded up bound. A start solution is completed by fixing
+  * its integer variables and solving the LP, and lazy rows are separated at
+  * every integer solution. The dense inverse limits this solver to models
+  * with a few thousand rows. A primal simplex run that has not finished
+  * after 50 iterations per variable and row is stopped; the solve then has
+  * no solution (LP) or keeps its incumbent, and isOptimal() and isInfeasible()
+  * are false.
+  ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class SimplexSolver implements LinearSolver {
+
+	private static final double FEASIBILITY_TOLERANCE = 1e-7;
+	private static final double OPTIMALITY_TOLERANCE = 1e-7;
+	private static final double PIVOT_TOLERANCE = 1e-9;
+	private static final double INTEGRALITY_TOLERANCE = 1e-6;
+	// the number of degenerate pivots after which Bland's rule is used against cycling
+	private static final int DEGENERATE_LIMIT = 50;
+	// the primal simplex method stops after this many iterations per variable and row,
+	// when it has stalled on numerical trouble
+	private static final int ITERATION_FACTOR = 50;
+	// the number of nodes between two reports of the bound to the listener
+	private static final int PROGRESS_INTERVAL = 1000;
+
+	private static final int OPTIMAL = 0;
+	private static final int INFEASIBLE = 1;
+	private static final int UNBOUNDED = 2;
+	private static final int ITERATION_LIMIT = 3;
+
+	// the variables of the model
+	private int numberOfVars;
+	private double[] varLB = new double[16];
+	private double[] varUB = new double[16];
+	private boolean[] integer = new boolean[16];
+	private double[] objective = new double[16];
+	private boolean maximize;
+
+	// the rows of the model, with their terms sorted by variable
+	private int numberOfRows;
+	private double[] rowLB = new double[16];
+	private double[] rowUB = new double[16];
+	private int[][] rowVars = new int[16][];
+	private double[][] rowCoefs = new double[16][];
+
+	private int[] startVars;
+	private double[] startValues;
+	private LazyRows lazyRows;
+	private SolveListener listener;
+
+	// the columns of the rows, rebuilt when the rows change
+	private boolean columnsValid;
+	private int[] columnStart;
+	private int[] columnRows;
+	private double[] columnCoefs;
+
+	// the state of the simplex method; variables j < n are the variables of the model
+	// and variable n + i is the slack of row i
+	private int lpVars;
+	private int lpRows;
+	private double[] lower;
+	private double[] upper;
+	private double[] cost;
+	private double[] x;
+	// head[i] is the variable at position i of the basis, where[j] the position of
+	// variable j or -1 if it is not basic
+	private int[] head;
+	private int[] where;
+	// whether a variable that is not basic is at its upper bound
+	private boolean[] atUpper;
+	private double[][] inverse;
+	private boolean inverseValid;
+	private int pivotsSinceRefactor;
+
+	// the result of the last solve
+	private boolean hasSolution;
+	// whether the solution of the last solve is proved optimal
+	private boolean optimal;
+	// whether the last solve proved that the model has no solution
+	private boolean infeasible;
+	private double[] solution;
+	// the dual value of every row, only for an LP
+	private double[] duals;
+	private double objValue;
+	private long numberOfNodes;
+	private long numberOfIterations;
+
+	// creates an empty model
+	public SimplexSolver() {
+	}
+
+	public String getName() {
+		return "java";
+	}
+
+	public int addVariable(double lb, double ub, boolean integer) {
+		if (numberOfVars == varLB.length) {
+			int size = 2 * numberOfVars;
+			varLB = Arrays.copyOf(varLB, size);
+			varUB = Arrays.copyOf(varUB, size);
+			this.integer = Arrays.copyOf(this.integer, size);
+			objective = Arrays.copyOf(objective, size);
+		}
+		varLB[numberOfVars] = lb;
+		varUB[numberOfVars] = ub;
+		this.integer[numberOfVars] = integer;
+		objective[numberOfVars] = 0;
+		columnsValid = false;
+		return numberOfVars++;
+	}
+
+	public void setBounds(int var, double lb, double ub) {
+		varLB[var] = lb;
+		varUB[var] = ub;
+	}
+
+	public void setInteger(int[] vars, boolean integer) {
+		for (int var : vars) {
+			this.integer[var] = integer;
+		}
+	}
+
+	public int addRow(LinearExpr expr, double lb, double ub) {
+		if (numberOfRows == rowLB.length) {
+			int size = 2 * numberOfRows;
+			rowLB = Arrays.copyOf(rowLB, size);
+			rowUB = Arrays.copyOf(rowUB, size);
+			rowVars = Arrays.copyOf(rowVars, size);
+			rowCoefs = Arrays.copyOf(rowCoefs, size);
+		}
+		// sort the terms by variable and merge the terms of the same variable
+		int size = expr.size();
+		long[] order = new long[size];
+		for (int k = 0; k < size; k++) {
+			order[k] = ((long) expr.getVar(k) << 32) | k;
+		}
+		Arrays.sort(order);
+		int[] vars = new int[size];
+		double[] coefs = new double[size];
+		int terms = 0;
+		for (int k = 0; k < size; k++) {
+			int term = (int) order[k];
+			int var = expr.getVar(term);
+			if (terms > 0 && vars[terms - 1] == var) {
+				coefs[terms - 1] += expr.getCoef(term);
+			} else {
+				vars[terms] = var;
+				coefs[terms++] = expr.getCoef(term);
+			}
+		}
+		rowVars[numberOfRows] = Arrays.copyOf(vars, terms);
+		rowCoefs[numberOfRows] = Arrays.copyOf(coefs, terms);
+		rowLB[numberOfRows] = lb;
+		rowUB[numberOfRows] = ub;
+		columnsValid = false;
+		return numberOfRows++;
+	}
+
+	public void setRowBounds(int row, double lb, double ub) {
+		rowLB[row] = lb;
+		rowUB[row] = ub;
+	}
+
+	public void setCoefficient(int row, int var, double coef) {
+		int[] vars = rowVars[row];
+		int k = Arrays.binarySearch(vars, var);
+		if (k >= 0) {
+			rowCoefs[row][k] = coef;
+		} else {
+			// insert the term, keeping the row sorted
+			k = -k - 1;
+			int[] newVars = new int[vars.length + 1];
+			double[] newCoefs = new double[vars.length + 1];
+			System.arraycopy(vars, 0, newVars, 0, k);
+			System.arraycopy(rowCoefs[row], 0, newCoefs, 0, k);
+			newVars[k] = var;
+			newCoefs[k] = coef;
+			System.arraycopy(vars, k, newVars, k + 1, vars.length - k);
+			System.arraycopy(rowCoefs[row], k, newCoefs, k + 1, vars.length - k);
+			rowVars[row] = newVars;
+			rowCoefs[row] = newCoefs;
+		}
+		columnsValid = false;
+		// the basis may contain the variable, so its inverse has to be recomputed
+		inverseValid = false;
+	}
+
+	public void minimize(LinearExpr expr) {
+		setObjective(expr, false);
+	}
+
+	public void maximize(LinearExpr expr) {
+		setObjective(expr, true);
+	}
+
+	// replaces the objective
+	private void setObjective(LinearExpr expr, boolean maximize) {
+		Arrays.fill(objective, 0);
+		for (int k = 0; k < expr.size(); k++) {
+			objective[expr.getVar(k)] += expr.getCoef(k);
+		}
+		this.maximize = maximize;
+	}
+
+	public void setStart(int[] vars, double[] values) {
+		this.startVars = vars.clone();
+		this.startValues = values.clone();
+	}
+
+	public void setLazyRows(LazyRows lazyRows) {
+		this.lazyRows = lazyRows;
+	}
+
+	// the Java solver runs in the calling thread
+	public void setThreads(int threads) {
+	}
+
+	// the Java solver does not print anything
+	public void setQuiet() {
+	}
+
+	public void setListener(SolveListener listener) {
+		this.listener = listener;
+	}
+
+	// returns the number of simplex iterations of the last solve
+	public long getNumberOfIterations() {
+		return this.numberOfIterations;
+	}
+
+	public long getNumberOfNodes() {
+		return this.numberOfNodes;
+	}
+
+	public double getObjValue() {
+		if (!hasSolution) {
+			throw new IllegalStateException("No solution available");
+		}
+		return this.objValue;
+	}
+
+	public double getValue(int var) {
+		if (!hasSolution) {
+			throw new IllegalStateException("No solution available");
+		}
+		return this.solution[var];
+	}
+
+	public double getDual(int row) {
+		if (duals == null) {
+			throw new IllegalStateException("Dual values are only available after solving an LP");
+		}
+		return this.duals[row];
+	}
+
+	// removes the model, keeping the arrays of the variables and rows for the next one
+	public void clear() {
+		numberOfVars = 0;
+		Arrays.fill(rowVars, 0, numberOfRows, null);
+		Arrays.fill(rowCoefs, 0, numberOfRows, null);
+		numberOfRows = 0;
+		maximize = false;
+		startVars = null;
+		startValues = null;
+		lazyRows = null;
+		listener = null;
+		columnsValid = false;
+		// the basis of the last model does not fit the next one
+		lpVars = 0;
+		lpRows = 0;
+		inverse = null;
+		inverseValid = false;
+		hasSolution = false;
+		solution = null;
+		duals = null;
+		numberOfNodes = 0;
+		numberOfIterations = 0;
+	}
+
+	public void end() {
+		this.inverse = null;
+	}
+
+	/* Solves the LP, or the MIP if there are integer variables or lazy rows
+	 *
+	 * @returns true if a (optimal) solution was found
+	 */
+	public boolean solve() {
+		this.hasSolution = false;
+		this.optimal = false;
+		this.infeasible = false;
+		this.duals = null;
+		this.numberOfNodes = 0;
+		this.numberOfIterations = 0;
+		boolean mip = lazyRows != null;
+		for (int j = 0; j < numberOfVars && !mip; j++) {
+			mip = integer[j];
+		}
+		if (!mip) {
+			long startTime = System.nanoTime();
+			prepare(varLB, varUB);
+			int status = simplex();
+			if (status == OPTIMAL) {
+				storeSolution();
+				storeDuals();
+				optimal = true;
+			}
+			infeasible = status == INFEASIBLE;
+			if (listener != null) {
+				listener.phaseEnded("root", System.nanoTime() - startTime);
+			}
+			return hasSolution;
+		}
+		// a tree explored completely without an integer solution proves there is none
+		boolean complete = branchAndBound();
+		optimal = complete && hasSolution;
+		infeasible = complete && !hasSolution;
+		return hasSolution;
+	}
+
+	public boolean isOptimal() {
+		return this.optimal;
+	}
+
+	public boolean isInfeasible() {
+		return this.infeasible;
+	}
+
+	// a node of the branch and bound tree: the bounds of one variable, on top of the
+	// bounds of its parent
+	private static class Node {
+		Node parent;
+		int var;
+		double lb;
+		double ub;
+		// the objective value of the parent, a bound for this node
+		double bound;
+
+		Node(Node parent, int var, double lb, double ub, double bound) {
+			this.parent = parent;
+			this.var = var;
+			this.lb = lb;
+			this.ub = ub;
+			this.bound = bound;
+		}
+	}
+
+	/* Depth-first branch and bound from the bounds of the model. The root phase, for
+	 * the listener, is the start solution and the root node; the branch phase the rest.
+	 *
+	 * @returns true if the tree was explored completely, false if it was stopped by an
+	 * unbounded relaxation or the iteration limit of a node
+	 */
+	private boolean branchAndBound() {
+		long phaseStart = System.nanoTime();
+		boolean inRoot = true;
+		double[] lb = Arrays.copyOf(varLB, numberOfVars);
+		double[] ub = Arrays.copyOf(varUB, numberOfVars);
+		// the objective only takes integer values if only integer variables with
+		// integer coefficients appear in it
+		boolean integralObjective = true;
+		for (int j = 0; j < numberOfVars; j++) {
+			if (objective[j] != 0 && (!integer[j] || objective[j] != Math.rint(objective[j]))) {
+				integralObjective = false;
+			}
+		}
+		double incumbent = Double.POSITIVE_INFINITY;
+		if (startVars != null) {
+			incumbent = tryStart(lb, ub);
+		}
+		ArrayList<Node> stack = new ArrayList<Node>();
+		stack.add(new Node(null, -1, 0, 0, Double.NEGATIVE_INFINITY));
+		int[] applied = new int[numberOfVars];
+		int stamp = 0;
+		try {
+			while (!stack.isEmpty()) {
+				Node node = stack.remove(stack.size() - 1);
+				if (inRoot && node.var >= 0 && listener != null) {
+					long now = System.nanoTime();
+					listener.phaseEnded("root", now - phaseStart);
+					phaseStart = now;
+					inRoot = false;
+				}
+				if (prune(node.bound, incumbent, integralObjective)) {
+					continue;
+				}
+				// set the bounds of the node, the deepest bound of a variable counts
+				System.arraycopy(varLB, 0, lb, 0, lb.length);
+				System.arraycopy(varUB, 0, ub, 0, ub.length);
+				stamp++;
+				for (Node n = node; n.var >= 0; n = n.parent) {
+					if (applied[n.var] != stamp) {
+						applied[n.var] = stamp;
+						lb[n.var] = n.lb;
+						ub[n.var] = n.ub;
+					}
+				}
+				numberOfNodes++;
+				if (listener != null && numberOfNodes % PROGRESS_INTERVAL == 0) {
+					reportProgress(stack, node.bound, incumbent);
+				}
+				int status = solveNode(lb, ub);
+				if (status == UNBOUNDED || status == ITERATION_LIMIT) {
+					// no optimal solution can be proved, the incumbent is kept
+					return false;
+				}
+				if (status == INFEASIBLE) {
+					continue;
+				}
+				double value = minimisedObjective();
+				if (listener != null && inRoot) {
+					reportProgress(stack, value, incumbent);
+				}
+				if (prune(value, incumbent, integralObjective)) {
+					continue;
+				}
+				int branch = mostFractional();
+				if (branch < 0) {
+					// an integer solution better than the incumbent
+					incumbent = value;
+					storeSolution();
+					if (listener != null) {
+						reportProgress(stack, incumbent, incumbent);
+					}
+					continue;
+				}
+				double floor = Math.floor(x[branch]);
+				Node down = new Node(node, branch, lb[branch], floor, value);
+				Node up = new Node(node, branch, floor + 1, ub[branch], value);
+				// the child on the side the variable rounds to is explored first
+				if (x[branch] - floor >= 0.5) {
+					stack.add(down);
+					stack.add(up);
+				} else {
+					stack.add(up);
+					stack.add(down);
+				}
+			}
+		} finally {
+			if (listener != null) {
+				listener.phaseEnded(inRoot ? "root" : "branch", System.nanoTime() - phaseStart);
+			}
+		}
+		return true;
+	}
+
+	/* Reports the incumbent and the bound to the listener: the lowest bound of the open
+	 * nodes and the node being solved, in the direction of the objective
+	 *
+	 * @param current - the bound of the node being solved
+	 */
+	private void reportProgress(ArrayList<Node> stack, double current, double incumbent) {
+		double bound = Math.min(current, incumbent);
+		for (Node open : stack) {
+			bound = Math.min(bound, open.bound);
+		}
+		if (maximize) {
+			listener.progress(numberOfNodes, -incumbent, -bound);
+		} else {
+			listener.progress(numberOfNodes, incumbent, bound);
+		}
+	}
+
+	// returns whether a node with the given bound cannot improve the incumbent
+	private boolean prune(double bound, double incumbent, boolean integralObjective) {
+		if (incumbent == Double.POSITIVE_INFINITY) {
+			return false;
+		}
+		if (integralObjective) {
+			return Math.ceil(bound - INTEGRALITY_TOLERANCE) >= incumbent;
+		}
+		return bound >= incumbent - 1e-9 * Math.max(1, Math.abs(incumbent));
+	}
+
+	// solves the LP of a node, adding lazy rows violated by an integer solution
+	private int solveNode(double[] lb, double[] ub) {
+		while (true) {
+			prepare(lb, ub);
+			int status = simplex();
+			if (status != OPTIMAL || lazyRows == null || mostFractional() >= 0) {
+				return status;
+			}
+			int rows = numberOfRows;
+			double[] values = Arrays.copyOf(x, numberOfVars);
+			lazyRows.separate(values, (expr, low, high) -> addRow(expr, low, high));
+			if (numberOfRows == rows) {
+				return status;
+			}
+		}
+	}
+
+	/* Completes the start solution by fixing its integer variables and solving the LP.
+	 * The basis is put back afterwards: the start is usually far from the optimum of
+	 * the LP relaxation, and the root would otherwise be solved again from the basis
+	 * of the start.
+	 *
+	 * @returns the objective value of the completed start, or infinity if it is infeasible
+	 */
+	private double tryStart(double[] lb, double[] ub) {
+		// brings the basis up to date with the rows added since the last solve first
+		prepare(lb, ub);
+		boolean keep = inverseValid;
+		int[] savedHead = null;
+		int[] savedWhere = null;
+		boolean[] savedAtUpper = null;
+		double[][] savedInverse = null;
+		int savedPivots = pivotsSinceRefactor;
+		if (keep) {
+			savedHead = head.clone();
+			savedWhere = where.clone();
+			savedAtUpper = atUpper.clone();
+			savedInverse = new double[lpRows][];
+			for (int p = 0; p < lpRows; p++) {
+				savedInverse[p] = inverse[p].clone();
+			}
+		}
+		for (int k = 0; k < startVars.length; k++) {
+			int var = startVars[k];
+			if (integer[var] && startValues[k] >= varLB[var] && startValues[k] <= varUB[var]) {
+				lb[var] = Math.rint(startValues[k]);
+				ub[var] = Math.rint(startValues[k]);
+			}
+		}
+		numberOfNodes++;
+		double value = Double.POSITIVE_INFINITY;
+		if (solveNode(lb, ub) == OPTIMAL && mostFractional() < 0) {
+			storeSolution();
+			value = minimisedObjective();
+		}
+		// lazy rows added for the start change the size of the basis, which is then kept
+		if (keep && lpVars == numberOfVars && lpRows == numberOfRows) {
+			head = savedHead;
+			where = savedWhere;
+			atUpper = savedAtUpper;
+			inverse = savedInverse;
+			inverseValid = true;
+			pivotsSinceRefactor = savedPivots;
+		}
+		return value;
+	}
+
+	// returns the integer variable furthest from an integer value, or -1 if there is none
+	private int mostFractional() {
+		int best = -1;
+		double bestDistance = INTEGRALITY_TOLERANCE;
+		for (int j = 0; j < numberOfVars; j++) {
+			if (integer[j]) {
+				double distance = Math.abs(x[j] - Math.rint(x[j]));
+				if (distance > bestDistance) {
+					best = j;
+					bestDistance = distance;
+				}
+			}
+		}
+		return best;
+	}
+
+	// returns the objective value of the current LP solution, as a minimisation
+	private double minimisedObjective() {
+		double value = 0;
+		for (int j = 0; j < numberOfVars; j++) {
+			value += cost[j] * x[j];
+		}
+		return value;
+	}
+
+	// stores the current LP solution as the solution of the model
+	private void storeSolution() {
+		this.solution = new double[numberOfVars];
+		double value = 0;
+		for (int j = 0; j < numberOfVars; j++) {
+			// integer variables get their rounded value
+			solution[j] = integer[j] ? Math.rint(x[j]) : x[j];
+			value += objective[j] * solution[j];
+		}
+		this.objValue = value;
+		this.hasSolution = true;
+	}
+
+	// stores the duals of the current basis, y = c_B B^-1, which is the reduced cost of
+	// the slack of every row; a maximisation was solved as the minimisation of -c
+	private void storeDuals() {
+		double[] basicCost = new double[lpRows];
+		for (int p = 0; p < lpRows; p++) {
+			basicCost[p] = cost[head[p]];
+		}
+		double[] dual = new double[lpRows];
+		computeReducedCosts(basicCost, false, dual, new double[lpVars + lpRows]);
+		this.duals = new double[numberOfRows];
+		for (int i = 0; i < numberOfRows; i++) {
+			duals[i] = maximize ? -dual[i] : dual[i];
+		}
+	}
+
+	/* Sets up the simplex method for the current model with the given bounds of the
+	 * variables, keeping the basis of the last solve where possible
+	 */
+	private void prepare(double[] lb, double[] ub) {
+		int n = numberOfVars;
+		int m = numberOfRows;
+		if (!columnsValid) {
+			buildColumns();
+		}
+		if (n != lpVars || m != lpRows || inverse == null) {
+			resize(n, m);
+		}
+		for (int j = 0; j < n; j++) {
+			lower[j] = lb[j];
+			upper[j] = ub[j];
+			cost[j] = maximize ? -objective[j] : objective[j];
+		}
+		for (int i = 0; i < m; i++) {
+			lower[n + i] = rowLB[i];
+			upper[n + i] = rowUB[i];
+			cost[n + i] = 0;
+		}
+		// variables outside the basis are at one of their bounds, or at 0 if they have none
+		for (int j = 0; j < n + m; j++) {
+			if (where[j] < 0) {
+				x[j] = nonbasicValue(j);
+			}
+		}
+		if (!inverseValid && !refactor()) {
+			slackBasis();
+		}
+		computeBasicValues();
+	}
+
+	// returns the value of a variable outside the basis
+	private double nonbasicValue(int j) {
+		if (atUpper[j] && upper[j] < Double.POSITIVE_INFINITY) {
+			return upper[j];
+		}
+		if (lower[j] > Double.NEGATIVE_INFINITY) {
+			atUpper[j] = false;
+			return lower[j];
+		}
+		if (upper[j] < Double.POSITIVE_INFINITY) {
+			atUpper[j] = true;
+			return upper[j];
+		}
+		return 0;
+	}
+
+	// builds the columns of the rows, with a counting sort on the variables
+	private void buildColumns() {
+		int n = numberOfVars;
+		columnStart = new int[n + 1];
+		for (int i = 0; i < numberOfRows; i++) {
+			for (int var : rowVars[i]) {
+				columnStart[var + 1]++;
+			}
+		}
+		for (int j = 0; j < n; j++) {
+			columnStart[j + 1] += columnStart[j];
+		}
+		int nonZeros = columnStart[n];
+		columnRows = new int[nonZeros];
+		columnCoefs = new double[nonZeros];
+		int[] next = Arrays.copyOf(columnStart, n);
+		for (int i = 0; i < numberOfRows; i++) {
+			for (int k = 0; k < rowVars[i].length; k++) {
+				int p = next[rowVars[i][k]]++;
+				columnRows[p] = i;
+				columnCoefs[p] = rowCoefs[i][k];
+			}
+		}
+		columnsValid = true;
+	}
+
+	/* Resizes the state of the simplex method after variables or rows were added.
+	 * New variables are left out of the basis and the slacks of new rows are added
+	 * to it, so the old basis can be kept.
+	 */
+	private void resize(int n, int m) {
+		int oldN = lpVars;
+		int oldM = lpRows;
+		boolean keep = inverse != null;
+		double[] oldX = x;
+		int[] oldWhere = where;
+		boolean[] oldAtUpper = atUpper;
+		int[] oldHead = head;
+		lower = new double[n + m];
+		upper = new double[n + m];
+		cost = new double[n + m];
+		x = new double[n + m];
+		where = new int[n + m];
+		atUpper = new boolean[n + m];
+		head = new int[m];
+		Arrays.fill(where, -1);
+		if (keep) {
+			// slack i moves from oldN + i to n + i
+			for (int j = 0; j < oldN + oldM; j++) {
+				int k = (j < oldN) ? j : n + (j - oldN);
+				x[k] = oldX[j];
+				atUpper[k] = oldAtUpper[j];
+			}
+			for (int i = 0; i < oldM; i++) {
+				head[i] = (oldHead[i] < oldN) ? oldHead[i] : n + (oldHead[i] - oldN);
+				where[head[i]] = i;
+			}
+			for (int i = oldM; i < m; i++) {
+				head[i] = n + i;
+				where[n + i] = i;
+			}
+		}
+		lpVars = n;
+		lpRows = m;
+		if (keep) {
+			inverseValid = false;
+		} else {
+			slackBasis();
+		}
+	}
+
+	// starts from the basis of all slacks, whose inverse is -I
+	private void slackBasis() {
+		int n = lpVars;
+		int m = lpRows;
+		Arrays.fill(where, -1);
+		inverse = new double[m][m];
+		for (int i = 0; i < m; i++) {
+			head[i] = n + i;
+			where[n + i] = i;
+			inverse[i][i] = -1;
+		}
+		for (int j = 0; j < n; j++) {
+			atUpper[j] = false;
+			x[j] = nonbasicValue(j);
+		}
+		inverseValid = true;
+		pivotsSinceRefactor = 0;
+	}
+
+	/* Computes the inverse of the basis from scratch, with Gauss-Jordan elimination
+	 *
+	 * @returns false if the basis is singular
+	 */
+	private boolean refactor() {
+		int m = lpRows;
+		int n = lpVars;
+		double[][] basis = new double[m][m];
+		for (int p = 0; p < m; p++) {
+			int j = head[p];
+			if (j < n) {
+				for (int k = columnStart[j]; k < columnStart[j + 1]; k++) {
+					basis[columnRows[k]][p] = columnCoefs[k];
+				}
+			} else {
+				basis[j - n][p] = -1;
+			}
+		}
+		double[][] result = new double[m][m];
+		for (int i = 0; i < m; i++) {
+			result[i][i] = 1;
+		}
+		// reduce basis to the identity; the same row operations turn result into the
+		// inverse, with row p of the inverse belonging to position p of the basis
+		for (int p = 0; p < m; p++) {
+			int pivot = p;
+			for (int i = p + 1; i < m; i++) {
+				if (Math.abs(basis[i][p]) > Math.abs(basis[pivot][p])) {
+					pivot = i;
+				}
+			}
+			if (Math.abs(basis[pivot][p]) < 1e-11) {
+				inverse = new double[m][m];
+				return false;
+			}
+			double[] swap = basis[p];
+			basis[p] = basis[pivot];
+			basis[pivot] = swap;
+			swap = result[p];
+			result[p] = result[pivot];
+			result[pivot] = swap;
+			double factor = 1 / basis[p][p];
+			for (int k = 0; k < m; k++) {
+				basis[p][k] *= factor;
+				result[p][k] *= factor;
+			}
+			for (int i = 0; i < m; i++) {
+				double a = basis[i][p];
+				if (i != p && a != 0) {
+					for (int k = 0; k < m; k++) {
+						basis[i][k] -= a * basis[p][k];
+						result[i][k] -= a * result[p][k];
+					}
+				}
+			}
+		}
+		inverse = result;
+		inverseValid = true;
+		pivotsSinceRefactor = 0;
+		return true;
+	}
+
+	// computes the values of the basic variables from the other variables: with the
+	// slacks, A x - s = 0, so x_B = -B^-1 N x_N
+	private void computeBasicValues() {
+		int n = lpVars;
+		int m = lpRows;
+		double[] rhs = new double[m];
+		for (int j = 0; j < n; j++) {
+			if (where[j] < 0 && x[j] != 0) {
+				for (int k = columnStart[j]; k < columnStart[j + 1]; k++) {
+					rhs[columnRows[k]] -= columnCoefs[k] * x[j];
+				}
+			}
+		}
+		for (int i = 0; i < m; i++) {
+			if (where[n + i] < 0) {
+				rhs[i] += x[n + i];
+			}
+		}
+		for (int p = 0; p < m; p++) {
+			double value = 0;
+			double[] row = inverse[p];
+			for (int i = 0; i < m; i++) {
+				value += row[i] * rhs[i];
+			}
+			x[head[p]] = value;
+		}
+	}
+
+	/* Solves the LP from the current basis. If the basis is optimal for different bounds
+	 * or has new rows, as in branch and bound and when rows are generated, it is still
+	 * dual feasible and the dual simplex method restores primal feasibility in a few
+	 * pivots; otherwise, or if the dual simplex method stalls, the primal simplex
+	 * method is used.
+	 *
+	 * @returns OPTIMAL, INFEASIBLE, UNBOUNDED or ITERATION_LIMIT
+	 */
+	private int simplex() {
+		if (!primalFeasible() && makeDualFeasible()) {
+			int status = dualSimplex();
+			if (status == INFEASIBLE) {
+				return INFEASIBLE;
+			}
+		}
+		return primalSimplex();
+	}
+
+	// returns whether every basic variable is within its bounds
+	private boolean primalFeasible() {
+		for (int p = 0; p < lpRows; p++) {
+			int j = head[p];
+			if (x[j] < lower[j] - FEASIBILITY_TOLERANCE || x[j] > upper[j] + FEASIBILITY_TOLERANCE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* Moves the variables outside the basis that have both bounds to the bound their
+	 * reduced cost asks for, which makes the basis dual feasible after branching has
+	 * loosened bounds again
+	 *
+	 * @returns whether the basis is dual feasible
+	 */
+	private boolean makeDualFeasible() {
+		int total = lpVars + lpRows;
+		double[] basicCost = new double[lpRows];
+		for (int p = 0; p < lpRows; p++) {
+			basicCost[p] = cost[head[p]];
+		}
+		double[] reduced = new double[total];
+		computeReducedCosts(basicCost, false, new double[lpRows], reduced);
+		boolean moved = false;
+		for (int j = 0; j < total; j++) {
+			if (where[j] >= 0) {
+				continue;
+			}
+			boolean wantsUpper = reduced[j] < -OPTIMALITY_TOLERANCE && x[j] < upper[j];
+			boolean wantsLower = reduced[j] > OPTIMALITY_TOLERANCE && x[j] > lower[j];
+			if (!wantsUpper && !wantsLower) {
+				continue;
+			}
+			if (Double.isInfinite(lower[j]) || Double.isInfinite(upper[j])) {
+				return false;
+			}
+			atUpper[j] = wantsUpper;
+			x[j] = wantsUpper ? upper[j] : lower[j];
+			moved = true;
+		}
+		if (moved) {
+			computeBasicValues();
+		}
+		return true;
+	}
+
+	// computes the duals y = c_B B^-1 and the reduced costs d = c - y A, the latter over
+	// the rows with a non-zero dual only; in phase 1 the costs of all variables are 0
+	private void computeReducedCosts(double[] basicCost, boolean phase1, double[] dual, double[] reduced) {
+		int n = lpVars;
+		int m = lpRows;
+		Arrays.fill(dual, 0);
+		for (int p = 0; p < m; p++) {
+			double c = basicCost[p];
+			if (c != 0) {
+				double[] row = inverse[p];
+				for (int i = 0; i < m; i++) {
+					dual[i] += c * row[i];
+				}
+			}
+		}
+		for (int j = 0; j < n; j++) {
+			reduced[j] = phase1 ? 0 : cost[j];
+		}
+		for (int i = 0; i < m; i++) {
+			double y = dual[i];
+			if (y != 0) {
+				int[] vars = rowVars[i];
+				double[] coefs = rowCoefs[i];
+				for (int k = 0; k < vars.length; k++) {
+					reduced[vars[k]] -= y * coefs[k];
+				}
+			}
+			// the column of slack i is -e_i
+			reduced[n + i] = y;
+		}
+	}
+
+	// computes the column of variable q in terms of the basis, alpha = B^-1 a_q
+	private void computeColumn(int q, double[] alpha) {
+		int n = lpVars;
+		int m = lpRows;
+		Arrays.fill(alpha, 0);
+		if (q < n) {
+			for (int k = columnStart[q]; k < columnStart[q + 1]; k++) {
+				int i = columnRows[k];
+				double a = columnCoefs[k];
+				for (int p = 0; p < m; p++) {
+					alpha[p] += inverse[p][i] * a;
+				}
+			}
+		} else {
+			int i = q - n;
+			for (int p = 0; p < m; p++) {
+				alpha[p] = -inverse[p][i];
+			}
+		}
+	}
+
+	/* Runs the dual simplex method from a dual feasible basis: the basic variable that
+	 * is furthest out of its bounds leaves the basis at that bound, and the variable
+	 * entering in its place is the one that keeps the reduced costs feasible
+	 *
+	 * @returns OPTIMAL once the basis is primal feasible, INFEASIBLE if the LP has no
+	 * solution, or -1 if the method stalled
+	 */
+	private int dualSimplex() {
+		int n = lpVars;
+		int m = lpRows;
+		int total = n + m;
+		double[] basicCost = new double[m];
+		double[] dual = new double[m];
+		double[] reduced = new double[total];
+		double[] pivotRow = new double[total];
+		double[] alpha = new double[m];
+		int refactorInterval = Math.max(100, m);
+		for (int iteration = 0; iteration < 10 * (total + 10); iteration++) {
+			if (pivotsSinceRefactor >= refactorInterval) {
+				if (!refactor()) {
+					slackBasis();
+					computeBasicValues();
+					return -1;
+				}
+				computeBasicValues();
+			}
+			// the leaving variable is the one furthest out of its bounds
+			int leaving = -1;
+			double worst = FEASIBILITY_TOLERANCE;
+			for (int p = 0; p < m; p++) {
+				int j = head[p];
+				double infeasibility = Math.max(lower[j] - x[j], x[j] - upper[j]);
+				if (infeasibility > worst) {
+					worst = infeasibility;
+					leaving = p;
+				}
+			}
+			if (leaving < 0) {
+				return OPTIMAL;
+			}
+			int out = head[leaving];
+			boolean increase = x[out] < lower[out];
+			for (int p = 0; p < m; p++) {
+				basicCost[p] = cost[head[p]];
+			}
+			computeReducedCosts(basicCost, false, dual, reduced);
+			// the row of the leaving variable, alpha_r = e_r B^-1 A, over the rows where
+			// e_r B^-1 is not zero
+			double[] rho = inverse[leaving];
+			Arrays.fill(pivotRow, 0);
+			for (int i = 0; i < m; i++) {
+				double r = rho[i];
+				if (r != 0) {
+					int[] vars = rowVars[i];
+					double[] coefs = rowCoefs[i];
+					for (int k = 0; k < vars.length; k++) {
+						pivotRow[vars[k]] += r * coefs[k];
+					}
+					pivotRow[n + i] = -r;
+				}
+			}
+			// the entering variable moves the leaving one towards its bound, and has the
+			// smallest ratio of reduced cost to pivot element
+			int entering = -1;
+			double bestRatio = Double.POSITIVE_INFINITY;
+			for (int j = 0; j < total; j++) {
+				double a = pivotRow[j];
+				if (where[j] >= 0 || Math.abs(a) <= PIVOT_TOLERANCE) {
+					continue;
+				}
+				// the leaving variable changes by -a per unit of the entering variable
+				int direction = ((a > 0) == increase) ? -1 : 1;
+				if ((direction > 0 && x[j] >= upper[j]) || (direction < 0 && x[j] <= lower[j])) {
+					continue;
+				}
+				double ratio = Math.max(0, direction * reduced[j]) / Math.abs(a);
+				if (ratio < bestRatio - 1e-12
+						|| (ratio <= bestRatio + 1e-12 && entering >= 0 && Math.abs(a) > Math.abs(pivotRow[entering]))) {
+					bestRatio = ratio;
+					entering = j;
+				}
+			}
+			if (entering < 0) {
+				// no variable can move the leaving variable to its bound
+				return INFEASIBLE;
+			}
+			computeColumn(entering, alpha);
+			if (Math.abs(alpha[leaving] - pivotRow[entering]) > 1e-6 * (1 + Math.abs(alpha[leaving]))) {
+				// the inverse has lost accuracy
+				if (!refactor()) {
+					slackBasis();
+					computeBasicValues();
+					return -1;
+				}
+				computeBasicValues();
+				continue;
+			}
+			numberOfIterations++;
+			double target = increase ? lower[out] : upper[out];
+			double delta = (x[out] - target) / alpha[leaving];
+			x[entering] += delta;
+			for (int p = 0; p < m; p++) {
+				if (alpha[p] != 0) {
+					x[head[p]] -= alpha[p] * delta;
+				}
+			}
+			x[out] = target;
+			atUpper[out] = !increase && upper[out] != lower[out];
+			where[out] = -1;
+			head[leaving] = entering;
+			where[entering] = leaving;
+			pivot(leaving, alpha);
+		}
+		return -1;
+	}
+
+	/* Runs the primal simplex method from the current basis, for at most
+	 * ITERATION_FACTOR iterations per variable and row
+	 *
+	 * @returns OPTIMAL, INFEASIBLE, UNBOUNDED or ITERATION_LIMIT
+	 */
+	private int primalSimplex() {
+		int n = lpVars;
+		int m = lpRows;
+		int total = n + m;
+		double[] basicCost = new double[m];
+		double[] dual = new double[m];
+		double[] reduced = new double[total];
+		double[] alpha = new double[m];
+		int degenerate = 0;
+		int refactorInterval = Math.max(100, m);
+		// whether the basic values have been recomputed since the last pivot
+		boolean verified = false;
+		long iterationLimit = numberOfIterations + (long) ITERATION_FACTOR * (total + 10);
+		while (numberOfIterations < iterationLimit) {
+			if (pivotsSinceRefactor >= refactorInterval) {
+				if (!refactor()) {
+					slackBasis();
+				}
+				computeBasicValues();
+			}
+			// phase 1 while some basic variable is out of its bounds
+			boolean phase1 = false;
+			for (int p = 0; p < m; p++) {
+				int j = head[p];
+				if (x[j] < lower[j] - FEASIBILITY_TOLERANCE) {
+					basicCost[p] = -1;
+					phase1 = true;
+				} else if (x[j] > upper[j] + FEASIBILITY_TOLERANCE) {
+					basicCost[p] = 1;
+					phase1 = true;
+				} else {
+					basicCost[p] = 0;
+				}
+			}
+			if (!phase1) {
+				for (int p = 0; p < m; p++) {
+					basicCost[p] = cost[head[p]];
+				}
+			}
+			computeReducedCosts(basicCost, phase1, dual, reduced);
+			// choose the entering variable: the largest reduced cost, or the first one
+			// with Bland's rule
+			boolean bland = degenerate > DEGENERATE_LIMIT;
+			int entering = -1;
+			int direction = 0;
+			double best = OPTIMALITY_TOLERANCE;
+			for (int j = 0; j < total; j++) {
+				if (where[j] >= 0) {
+					continue;
+				}
+				double d = reduced[j];
+				int dir = 0;
+				if (d < -best && x[j] < upper[j]) {
+					dir = 1;
+				} else if (d > best && x[j] > lower[j]) {
+					dir = -1;
+				}
+				if (dir != 0) {
+					entering = j;
+					direction = dir;
+					if (bland) {
+						break;
+					}
+					best = Math.abs(d);
+				}
+			}
+			if (entering < 0) {
+				if (!verified && pivotsSinceRefactor > 0) {
+					// confirm the result with basic values computed from scratch
+					computeBasicValues();
+					verified = true;
+					continue;
+				}
+				return phase1 ? INFEASIBLE : OPTIMAL;
+			}
+			computeColumn(entering, alpha);
+			// ratio test: the step stops at the first bound reached, a basic variable
+			// out of its bounds in phase 1 stops where it becomes feasible
+			double step = upper[entering] - lower[entering];
+			int leaving = -1;
+			double leavingValue = 0;
+			for (int p = 0; p < m; p++) {
+				double a = alpha[p];
+				if (Math.abs(a) <= PIVOT_TOLERANCE) {
+					continue;
+				}
+				int j = head[p];
+				double rate = -direction * a;
+				double limit = Double.POSITIVE_INFINITY;
+				double target = 0;
+				if (rate > 0) {
+					if (x[j] < lower[j] - FEASIBILITY_TOLERANCE) {
+						target = lower[j];
+					} else if (x[j] <= upper[j] + FEASIBILITY_TOLERANCE) {
+						target = upper[j];
+					} else {
+						continue;
+					}
+				} else {
+					if (x[j] > upper[j] + FEASIBILITY_TOLERANCE) {
+						target = upper[j];
+					} else if (x[j] >= lower[j] - FEASIBILITY_TOLERANCE) {
+						target = lower[j];
+					} else {
+						continue;
+					}
+				}
+				if (Double.isInfinite(target)) {
+					continue;
+				}
+				limit = Math.max(0, (target - x[j]) / rate);
+				boolean better;
+				if (leaving < 0 || limit < step - 1e-12) {
+					better = limit < step;
+				} else if (limit <= step + 1e-12) {
+					// break ties on the largest pivot, or the lowest index with Bland's rule
+					better = bland ? j < head[leaving] : Math.abs(a) > Math.abs(alpha[leaving]);
+				} else {
+					better = false;
+				}
+				if (better) {
+					step = limit;
+					leaving = p;
+					leavingValue = target;
+				}
+			}
+			if (step == Double.POSITIVE_INFINITY) {
+				return UNBOUNDED;
+			}
+			numberOfIterations++;
+			degenerate = (step < 1e-12) ? degenerate + 1 : 0;
+			// move the entering variable and update the basic variables
+			x[entering] += direction * step;
+			for (int p = 0; p < m; p++) {
+				if (alpha[p] != 0) {
+					x[head[p]] -= direction * step * alpha[p];
+				}
+			}
+			if (leaving < 0) {
+				// the entering variable went from one bound to the other
+				atUpper[entering] = direction > 0;
+				x[entering] = direction > 0 ? upper[entering] : lower[entering];
+				verified = false;
+				continue;
+			}
+			int out = head[leaving];
+			x[out] = leavingValue;
+			atUpper[out] = leavingValue == upper[out] && leavingValue != lower[out];
+			where[out] = -1;
+			head[leaving] = entering;
+			where[entering] = leaving;
+			pivot(leaving, alpha);
+			verified = false;
+		}
+		return ITERATION_LIMIT;
+	}
+
+	// updates the inverse for a new basic variable at position r with column alpha,
+	// only touching the rows where alpha is not zero
+	private void pivot(int r, double[] alpha) {
+		int m = lpRows;
+		double[] pivotRow = inverse[r];
+		double factor = 1 / alpha[r];
+		for (int k = 0; k < m; k++) {
+			pivotRow[k] *= factor;
+		}
+		for (int p = 0; p < m; p++) {
+			double a = alpha[p];
+			if (p != r && a != 0) {
+				double[] row = inverse[p];
+				for (int k = 0; k < m; k++) {
+					row[k] -= a * pivotRow[k];
+				}
+			}
+		}
+		pivotsSinceRefactor++;
+	}
+}
@@ -0,0 +1,361 @@
+/*******************************************************************************
+  * File: SimplexSolverCheck.java
+  * Checks SimplexSolver on random small models:
+  *  - the optimum of a MIP must be the best of all integer points
+  *  - the optimum of an LP must be the best of its vertices, which are found
+  *    by solving every square system of its rows and bounds
+  *  - a model re-solved after changes to bounds and rows, which uses the dual
+  *    simplex method, must have the optimum of a new solver built with them
+  *  - the dual of a row of an LP must be the change of the optimum when the
+  *    bounds of the row move, which is measured by moving them a little either
+  *    way; at a degenerate optimum it lies between the two changes
+  * A solved model must also report that it is optimal, and a model without a
+  * solution that it is infeasible.
+  * Usage: java SimplexSolverCheck [models]
+  * Exits with status 1 if any check fails.
+  ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SimplexSolverCheck {
+
+	private static final double TOLERANCE = 1e-6;
+
+	private static int checked = 0;
+	private static int failed = 0;
+
+	public static void main(String[] args) {
+		int models = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+		Random random = new Random(13);
+		for (int t = 0; t < models; t++) {
+			checkMip(t, random);
+			checkLp(t, random);
+			checkResolve(t, random);
+			checkDuals(t, random);
+		}
+		System.out.println("SimplexSolver: " + checked + " checked, " + failed + " failed");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+	// A random model: bounded variables and rows with a lower bound, an upper
+	// bound or both, some of them equalities
+	private static class Model {
+		int n;
+		int m;
+		double[][] a;
+		double[] rowLower;
+		double[] rowUpper;
+		double[] lower;
+		double[] upper;
+		double[] cost;
+		boolean integer;
+		boolean maximize;
+
+		Model(Random random, int n, int m, boolean integer) {
+			this.n = n;
+			this.m = m;
+			this.integer = integer;
+			this.maximize = random.nextBoolean();
+			this.a = new double[m][n];
+			this.rowLower = new double[m];
+			this.rowUpper = new double[m];
+			this.lower = new double[n];
+			this.upper = new double[n];
+			this.cost = new double[n];
+			for (int j = 0; j < n; j++) {
+				lower[j] = integer ? 0 : random.nextInt(3) - 1;
+				upper[j] = lower[j] + (integer ? 1 : 0) + random.nextInt(3);
+				cost[j] = random.nextInt(11) - 5;
+			}
+			for (int i = 0; i < m; i++) {
+				randomRow(random, i);
+			}
+		}
+
+		void randomRow(Random random, int i) {
+			for (int j = 0; j < n; j++) {
+				a[i][j] = (random.nextInt(3) > 0) ? random.nextInt(9) - 4 : 0;
+			}
+			// most rows hold at a random integer point, so that most models are feasible
+			double activity = 0;
+			for (int j = 0; j < n; j++) {
+				activity += a[i][j] * (lower[j] + random.nextInt((int) (upper[j] - lower[j]) + 1));
+			}
+			double bound = activity + random.nextInt(5) - ((random.nextInt(5) == 0) ? 0 : 4);
+			switch (random.nextInt(3)) {
+			case 0:
+				rowLower[i] = bound;
+				rowUpper[i] = Double.POSITIVE_INFINITY;
+				break;
+			case 1:
+				rowLower[i] = Double.NEGATIVE_INFINITY;
+				rowUpper[i] = 2 * activity - bound;
+				break;
+			default:
+				rowLower[i] = bound;
+				rowUpper[i] = Math.max(bound, activity) + random.nextInt(3);
+			}
+		}
+
+		void addRow(Random random) {
+			a = Arrays.copyOf(a, m + 1);
+			a[m] = new double[n];
+			rowLower = Arrays.copyOf(rowLower, m + 1);
+			rowUpper = Arrays.copyOf(rowUpper, m + 1);
+			m++;
+			randomRow(random, m - 1);
+		}
+
+		LinearExpr rowExpr(int i) {
+			LinearExpr expr = new LinearExpr();
+			for (int j = 0; j < n; j++) {
+				if (a[i][j] != 0) {
+					expr.addTerm(j, a[i][j]);
+				}
+			}
+			return expr;
+		}
+
+		SimplexSolver build() {
+			SimplexSolver solver = new SimplexSolver();
+			for (int j = 0; j < n; j++) {
+				solver.addVariable(lower[j], upper[j], integer);
+			}
+			for (int i = 0; i < m; i++) {
+				solver.addRow(rowExpr(i), rowLower[i], rowUpper[i]);
+			}
+			LinearExpr objective = new LinearExpr();
+			for (int j = 0; j < n; j++) {
+				objective.addTerm(j, cost[j]);
+			}
+			if (maximize) {
+				solver.maximize(objective);
+			} else {
+				solver.minimize(objective);
+			}
+			return solver;
+		}
+
+		// returns whether x is within the bounds and rows, to a tolerance
+		boolean feasible(double[] x) {
+			for (int j = 0; j < n; j++) {
+				if (x[j] < lower[j] - 1e-7 || x[j] > upper[j] + 1e-7) {
+					return false;
+				}
+			}
+			for (int i = 0; i < m; i++) {
+				double sum = 0;
+				for (int j = 0; j < n; j++) {
+					sum += a[i][j] * x[j];
+				}
+				if (sum < rowLower[i] - 1e-7 || sum > rowUpper[i] + 1e-7) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		double value(double[] x) {
+			double value = 0;
+			for (int j = 0; j < n; j++) {
+				value += cost[j] * x[j];
+			}
+			return value;
+		}
+
+		// returns the better of two objective values, NaN standing for no point at all
+		double better(double best, double value) {
+			if (Double.isNaN(best)) {
+				return value;
+			}
+			return maximize ? Math.max(best, value) : Math.min(best, value);
+		}
+	}
+
+	// compares the solve of the solver with the optimum, NaN if the model is infeasible
+	private static void compare(String name, SimplexSolver solver, double optimum) {
+		boolean solved = solver.solve();
+		checked++;
+		String error = null;
+		if (solved == Double.isNaN(optimum)) {
+			error = solved ? "solved" : "no solution";
+		} else if (!solved && !solver.isInfeasible()) {
+			error = "infeasible but not proven so";
+		} else if (solved && solver.isInfeasible()) {
+			error = "solved but reported infeasible";
+		} else if (solved && !solver.isOptimal()) {
+			error = "solved but not reported optimal";
+		} else if (solved && Math.abs(solver.getObjValue() - optimum) > TOLERANCE) {
+			error = "objective value " + solver.getObjValue();
+		}
+		if (error != null) {
+			failed++;
+			System.out.println(name + ": " + error + ", expected " + (Double.isNaN(optimum) ? "infeasible" : optimum));
+		}
+	}
+
+	private static void checkMip(int t, Random random) {
+		Model model = new Model(random, 1 + random.nextInt(7), 1 + random.nextInt(6), true);
+		// counts through every integer point within the bounds
+		double optimum = Double.NaN;
+		double[] x = new double[model.n];
+		while (true) {
+			if (model.feasible(x)) {
+				optimum = model.better(optimum, model.value(x));
+			}
+			int j = 0;
+			while (j < model.n && x[j] == model.upper[j]) {
+				x[j] = 0;
+				j++;
+			}
+			if (j == model.n) {
+				break;
+			}
+			x[j]++;
+		}
+		compare("MIP " + t, model.build(), optimum);
+	}
+
+	private static void checkLp(int t, Random random) {
+		Model model = new Model(random, 1 + random.nextInt(3), 1 + random.nextInt(4), false);
+		compare("LP " + t, model.build(), bestVertex(model));
+	}
+
+	// returns the best vertex of an LP with bounded variables, NaN if it has none
+	private static double bestVertex(Model model) {
+		int n = model.n;
+		ArrayList<double[]> planes = new ArrayList<double[]>();
+		for (int i = 0; i < model.m; i++) {
+			if (!Double.isInfinite(model.rowLower[i])) {
+				planes.add(plane(model.a[i], model.rowLower[i]));
+			}
+			if (!Double.isInfinite(model.rowUpper[i])) {
+				planes.add(plane(model.a[i], model.rowUpper[i]));
+			}
+		}
+		for (int j = 0; j < n; j++) {
+			double[] unit = new double[n];
+			unit[j] = 1;
+			planes.add(plane(unit, model.lower[j]));
+			planes.add(plane(unit, model.upper[j]));
+		}
+		double optimum = Double.NaN;
+		for (long set = 0; set < (1L << planes.size()); set++) {
+			if (Long.bitCount(set) != n) {
+				continue;
+			}
+			double[][] system = new double[n][];
+			int k = 0;
+			for (int p = 0; p < planes.size(); p++) {
+				if ((set >> p & 1) == 1) {
+					system[k++] = planes.get(p).clone();
+				}
+			}
+			double[] x = solveSystem(system);
+			if (x != null && model.feasible(x)) {
+				optimum = model.better(optimum, model.value(x));
+			}
+		}
+		return optimum;
+	}
+
+	// returns the coefficients followed by the right-hand side
+	private static double[] plane(double[] coefficients, double rhs) {
+		double[] plane = Arrays.copyOf(coefficients, coefficients.length + 1);
+		plane[coefficients.length] = rhs;
+		return plane;
+	}
+
+	// returns the solution of a square system by Gauss-Jordan elimination, null if it is singular
+	private static double[] solveSystem(double[][] system) {
+		int n = system.length;
+		for (int p = 0; p < n; p++) {
+			int pivot = p;
+			for (int i = p + 1; i < n; i++) {
+				if (Math.abs(system[i][p]) > Math.abs(system[pivot][p])) {
+					pivot = i;
+				}
+			}
+			if (Math.abs(system[pivot][p]) < 1e-9) {
+				return null;
+			}
+			double[] row = system[p];
+			system[p] = system[pivot];
+			system[pivot] = row;
+			for (int i = 0; i < n; i++) {
+				if (i != p) {
+					double factor = system[i][p] / system[p][p];
+					for (int k = p; k <= n; k++) {
+						system[i][k] -= factor * system[p][k];
+					}
+				}
+			}
+		}
+		double[] x = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = system[i][n] / system[i][i];
+		}
+		return x;
+	}
+
+	private static void checkResolve(int t, Random random) {
+		Model model = new Model(random, 2 + random.nextInt(5), 1 + random.nextInt(5), random.nextInt(3) == 0);
+		SimplexSolver solver = model.build();
+		solver.solve();
+		for (int round = 0; round < 3; round++) {
+			switch (random.nextInt(3)) {
+			case 0:
+				int j = random.nextInt(model.n);
+				model.lower[j] = model.integer ? random.nextInt(2) : random.nextInt(3) - 1;
+				model.upper[j] = model.lower[j] + random.nextInt(3);
+				solver.setBounds(j, model.lower[j], model.upper[j]);
+				break;
+			case 1:
+				int i = random.nextInt(model.m);
+				double shift = random.nextInt(5) - 2;
+				model.rowLower[i] += shift;
+				model.rowUpper[i] += shift;
+				solver.setRowBounds(i, model.rowLower[i], model.rowUpper[i]);
+				break;
+			default:
+				model.addRow(random);
+				solver.addRow(model.rowExpr(model.m - 1), model.rowLower[model.m - 1], model.rowUpper[model.m - 1]);
+			}
+			SimplexSolver fresh = model.build();
+			double optimum = fresh.solve() ? fresh.getObjValue() : Double.NaN;
+			compare("re-solve " + t + "." + round, solver, optimum);
+		}
+	}
+
+	private static void checkDuals(int t, Random random) {
+		Model model = new Model(random, 2 + random.nextInt(5), 1 + random.nextInt(5), false);
+		SimplexSolver solver = model.build();
+		if (!solver.solve()) {
+			return;
+		}
+		double optimum = solver.getObjValue();
+		double step = 1e-4;
+		for (int i = 0; i < model.m; i++) {
+			SimplexSolver up = model.build();
+			up.setRowBounds(i, model.rowLower[i] + step, model.rowUpper[i] + step);
+			SimplexSolver down = model.build();
+			down.setRowBounds(i, model.rowLower[i] - step, model.rowUpper[i] - step);
+			if (!up.solve() || !down.solve()) {
+				continue;
+			}
+			double upChange = (up.getObjValue() - optimum) / step;
+			double downChange = (optimum - down.getObjValue()) / step;
+			double dual = solver.getDual(i);
+			checked++;
+			if (dual < Math.min(upChange, downChange) - 1e-4 || dual > Math.max(upChange, downChange) + 1e-4) {
+				failed++;
+				System.out.println("duals " + t + ": row " + i + " has dual " + dual + ", the optimum changes by "
+						+ downChange + " and " + upChange);
+			}
+		}
+	}
+}
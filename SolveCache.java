@@ -0,0 +1,304 @@
+/*******************************************************************************
+  * File: SolveCache.java
+  * Class to remember the results of solves, so that an instance that is
+  * solved again with the same options is answered without the solver. A
+  * result is a double array, stored under a key: the SHA-256 hash of the
+  * model, its options and the parsed instance in a canonical form, see Key,
+  * so that the order of the nodes of an edge or of the edges in the file
+  * does not matter.
+  *
+  * The results are kept in memory in an LRU map of cache.size entries (1000
+  * by default, 0 turns the cache off). With the system property cache.dir
+  * they are also written to that directory, a file per result, so that later
+  * runs find them; when the files take more than cache.max_mb megabytes (64
+  * by default) the least recently used ones are deleted until they take
+  * three quarters of that. Hits, disk hits and misses are counted.
+  ******************************************************************************/
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+public class SolveCache {
+
+	// the first int of a result file
+	private static final int MAGIC = 0x534f4c56;
+
+	// the cache configured with the system properties, created when first used
+	private static SolveCache shared;
+
+	// the hash of a model, its options and an instance, built up value by value
+	public static class Key {
+		private MessageDigest digest;
+		private byte[] buffer = new byte[8];
+
+		// starts the key of a model, solved by the solver of the system property solver
+		public Key(String model) {
+			try {
+				this.digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			add(model);
+			add(System.getProperty("solver", "cplex"));
+		}
+
+		public Key add(String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			add(bytes.length);
+			digest.update(bytes);
+			return this;
+		}
+
+		public Key add(boolean value) {
+			digest.update((byte) (value ? 1 : 0));
+			return this;
+		}
+
+		public Key add(int value) {
+			for (int b = 0; b < 4; b++) {
+				buffer[b] = (byte) (value >>> (8 * b));
+			}
+			digest.update(buffer, 0, 4);
+			return this;
+		}
+
+		public Key add(long value) {
+			for (int b = 0; b < 8; b++) {
+				buffer[b] = (byte) (value >>> (8 * b));
+			}
+			digest.update(buffer, 0, 8);
+			return this;
+		}
+
+		// adds a double, with 0.0 and -0.0 the same
+		public Key add(double value) {
+			return add(Double.doubleToLongBits(value + 0.0));
+		}
+
+		public Key add(int[] values) {
+			add(values.length);
+			for (int value : values) {
+				add(value);
+			}
+			return this;
+		}
+
+		public Key add(double[] values) {
+			add(values.length);
+			for (double value : values) {
+				add(value);
+			}
+			return this;
+		}
+
+		/* Adds a set of undirected edges, in any order and with the nodes of an edge in
+		 * any order; repeated edges count once
+		 */
+		public Key addEdges(int[] first, int[] second, int numberOfEdges) {
+			long[] edges = new long[numberOfEdges];
+			for (int e = 0; e < numberOfEdges; e++) {
+				int u = Math.min(first[e], second[e]);
+				int v = Math.max(first[e], second[e]);
+				edges[e] = ((long) u << 32) | (v & 0xffffffffL);
+			}
+			Arrays.sort(edges);
+			int distinct = 0;
+			for (int e = 0; e < numberOfEdges; e++) {
+				if (e == 0 || edges[e] != edges[e - 1]) {
+					edges[distinct++] = edges[e];
+				}
+			}
+			add(distinct);
+			for (int e = 0; e < distinct; e++) {
+				add(edges[e]);
+			}
+			return this;
+		}
+
+		// returns the key as hexadecimal digits; the key cannot be extended afterwards
+		public String toString() {
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+			}
+			return hex.toString();
+		}
+	}
+
+	private LinkedHashMap<String, double[]> memory;
+	private Path directory;
+	private long maximumBytes;
+	// the size of the files in the directory, as far as this cache knows
+	private long diskBytes;
+
+	private long hits;
+	private long diskHits;
+	private long misses;
+
+	/* Creates a cache
+	 *
+	 * @param entries - the number of results kept in memory
+	 * @param directory - the directory of the results on disk, or null to keep them in memory only
+	 * @param maximumBytes - the size the files on disk may take
+	 */
+	public SolveCache(int entries, String directory, long maximumBytes) throws IOException {
+		this.memory = new LinkedHashMap<String, double[]>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, double[]> eldest) {
+				return size() > entries;
+			}
+		};
+		this.maximumBytes = maximumBytes;
+		if (directory != null) {
+			this.directory = Paths.get(directory);
+			Files.createDirectories(this.directory);
+			for (File file : files()) {
+				diskBytes += file.length();
+			}
+		}
+	}
+
+	/* Returns the cache configured with the system properties cache.size, cache.dir and
+	 * cache.max_mb, or null if cache.size is 0
+	 */
+	public static synchronized SolveCache getShared() {
+		if (shared == null) {
+			int size = Integer.getInteger("cache.size", 1000);
+			if (size <= 0) {
+				return null;
+			}
+			try {
+				shared = new SolveCache(size, System.getProperty("cache.dir"),
+						Long.getLong("cache.max_mb", 64) * 1048576);
+			} catch (IOException e) {
+				System.out.println("Could not open the cache directory (" + e + "), caching in memory only");
+				try {
+					shared = new SolveCache(size, null, 0);
+				} catch (IOException impossible) {
+					throw new UncheckedIOException(impossible);
+				}
+			}
+		}
+		return shared;
+	}
+
+	/* Looks up a result, in memory first and then on disk
+	 *
+	 * @returns a copy of the result, or null if it is not in the cache
+	 */
+	public synchronized double[] get(String key) {
+		double[] result = memory.get(key);
+		if (result == null && directory != null) {
+			result = read(key);
+			if (result != null) {
+				diskHits++;
+				memory.put(key, result);
+			}
+		}
+		if (result == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return result.clone();
+	}
+
+	// stores a result, replacing an earlier one under the same key
+	public synchronized void put(String key, double[] result) {
+		memory.put(key, result.clone());
+		if (directory != null) {
+			write(key, result);
+		}
+	}
+
+	// returns the result on disk, or null if there is none or it cannot be read
+	private double[] read(String key) {
+		File file = directory.resolve(key).toFile();
+		if (!file.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				return null;
+			}
+			double[] result = new double[in.readInt()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = in.readDouble();
+			}
+			// the least recently used files are deleted first
+			file.setLastModified(System.currentTimeMillis());
+			return result;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	// writes a result to disk through a temporary file, so that no reader sees half of it
+	private void write(String key, double[] result) {
+		try {
+			Path temporary = Files.createTempFile(directory, key, ".tmp");
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(result.length);
+				for (double value : result) {
+					out.writeDouble(value);
+				}
+			}
+			Path file = directory.resolve(key);
+			long replaced = Files.exists(file) ? Files.size(file) : 0;
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			diskBytes += Files.size(file) - replaced;
+			if (diskBytes > maximumBytes) {
+				prune();
+			}
+		} catch (IOException e) {
+			System.out.println("Could not write " + key + " to the cache: " + e);
+		}
+	}
+
+	// deletes the least recently used files until they take three quarters of the maximum
+	private void prune() {
+		File[] files = files();
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		diskBytes = 0;
+		for (File file : files) {
+			diskBytes += file.length();
+		}
+		for (int i = 0; i < files.length && diskBytes > maximumBytes / 4 * 3; i++) {
+			long length = files[i].length();
+			if (files[i].delete()) {
+				diskBytes -= length;
+			}
+		}
+	}
+
+	// returns the result files in the directory
+	private File[] files() {
+		File[] files = directory.toFile().listFiles((dir, name) -> !name.endsWith(".tmp"));
+		return (files == null) ? new File[0] : files;
+	}
+
+	// returns the number of lookups that found a result, in memory or on disk
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	// returns the number of lookups that found a result on disk only
+	public synchronized long getDiskHits() {
+		return this.diskHits;
+	}
+
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	// returns the counters on one line, for the console
+	public synchronized String getSummary() {
+		return "Cache: " + hits + " hits (" + diskHits + " from disk), " + misses + " misses, " + memory.size()
+				+ " results in memory" + ((directory != null) ? ", " + diskBytes + " bytes on disk" : "");
+	}
+}
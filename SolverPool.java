@@ -0,0 +1,131 @@
+/*******************************************************************************
+  * File: SolverPool.java
+  * Class to solve many small models from one JVM without paying for a new
+  * solver every time. Every worker thread of the pool creates one solver
+  * with LinearSolver.create() when it takes its first job and keeps it until
+  * the pool is closed; after every job the model is removed with clear(),
+  * so cplex keeps its environment and license between jobs. Jobs wait in
+  * the queue of the pool until a worker is free.
+  *
+  * A job builds its model on the solver it is given and must not end it.
+  ******************************************************************************/
+
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+public class SolverPool implements AutoCloseable {
+
+	// a model to build and solve on the solver of a worker
+	public interface Job<T> {
+		T solve(LinearSolver solver) throws Exception;
+	}
+
+	private ExecutorService executor;
+	private int threads;
+	// the solver of every worker, created on its first job
+	private ThreadLocal<LinearSolver> solver = new ThreadLocal<LinearSolver>();
+	private ArrayList<LinearSolver> solvers = new ArrayList<LinearSolver>();
+	private long jobsDone;
+
+	/* Creates a pool
+	 *
+	 * @param workers - the number of jobs that are solved at the same time
+	 * @param threads - the number of threads of every solver, or 0 to share the cores
+	 * between the workers
+	 */
+	public SolverPool(int workers, int threads) {
+		this.executor = Executors.newFixedThreadPool(workers);
+		this.threads = (threads > 0) ? threads
+				: Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+	}
+
+	/* Queues a job
+	 *
+	 * @returns the result of the job once a worker has solved it
+	 */
+	public <T> CompletableFuture<T> submit(Job<T> job) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		try {
+			executor.execute(() -> run(job, result));
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	// solves the job on the solver of this worker and clears it for the next job
+	private <T> void run(Job<T> job, CompletableFuture<T> result) {
+		LinearSolver current = null;
+		try {
+			// creating the solver fails the job if, e.g., cplex has no license
+			current = workerSolver();
+			result.complete(job.solve(current));
+		} catch (Throwable e) {
+			result.completeExceptionally(e);
+		}
+		if (current != null) {
+			try {
+				current.clear();
+			} catch (RuntimeException e) {
+				// the solver is in an unknown state, the next job gets a new one
+				discard(current);
+			}
+		}
+		synchronized (this) {
+			jobsDone++;
+		}
+	}
+
+	// returns the solver of the calling worker, creating it on its first job
+	private LinearSolver workerSolver() {
+		LinearSolver current = solver.get();
+		if (current == null) {
+			current = LinearSolver.create();
+			current.setQuiet();
+			current.setThreads(threads);
+			solver.set(current);
+			synchronized (this) {
+				solvers.add(current);
+			}
+		}
+		return current;
+	}
+
+	// ends the solver of the calling worker
+	private void discard(LinearSolver current) {
+		solver.remove();
+		synchronized (this) {
+			solvers.remove(current);
+		}
+		current.end();
+	}
+
+	// returns the number of solvers the workers hold
+	public synchronized int getNumberOfSolvers() {
+		return this.solvers.size();
+	}
+
+	// returns the number of jobs done so far
+	public synchronized long getJobsDone() {
+		return this.jobsDone;
+	}
+
+	// solves the jobs still in the queue, then ends the solvers
+	public void close() {
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				// keep waiting for the last jobs
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			for (LinearSolver current : solvers) {
+				current.end();
+			}
+			solvers.clear();
+		}
+	}
+}
@@ -0,0 +1,441 @@
+/*******************************************************************************
+  * File: StochasticInvestment.java
+  * Class to plan the investments of InvestmentPlan when the payouts are not
+  * known exactly, as a two-stage stochastic program over a set of equally
+  * likely scenarios. The projects and the fractions invested in them are
+  * chosen first, for all scenarios; the money in the bank follows in every
+  * scenario, and a shortfall in a year is covered by a loan at the borrowing
+  * rate of the rules, so that every plan can be carried out. The expected
+  * capital at the end is maximised.
+  * Usage: java [-Dsolver=java] StochasticInvestment rules scenarios
+  *            [-extensive] [-threads n]
+  *
+  * The scenarios are read in the format of InvestmentPlanner, a budget and a
+  * payout matrix per scenario. By default the model is solved with the
+  * L-shaped method: a master problem over the first stage with a bound on
+  * the expected capital, which is cut off by the duals of the scenarios at
+  * every plan of the master until the bound is reached. The scenarios have
+  * the same LP with a different right-hand side, so they are split into
+  * blocks, each with one LP that is re-solved for all of its scenarios, and
+  * the blocks are solved in parallel on a fork-join pool of n threads (the
+  * number of cores by default). With -extensive one model with a copy of the
+  * second stage per scenario is solved instead.
+  ******************************************************************************/
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+public class StochasticInvestment {
+
+	// the L-shaped method stops when the bound is within this fraction of the best plan
+	private static final double TOLERANCE = 1e-6;
+	private static final int MAXIMUM_ITERATIONS = 1000;
+	// the number of blocks of scenarios per thread, so that a slow block does not
+	// keep the other threads waiting
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	private InvestmentPlanner.Rules rules;
+	private int numberOfProjects;
+	private int numberOfYears;
+	private int numberOfScenarios;
+	// the budget of scenario s in year y is budget[s * years + y], and the payout of
+	// project p payout[(s * projects + p) * years + y]
+	private int[] budget;
+	private int[] payout;
+	private double growth;
+	private double loanGrowth;
+
+	// the solution
+	private boolean[] chosen;
+	private double[] fraction;
+	private double[] capital;
+	private double objValue;
+	private int iterations;
+
+	/* Reads the scenarios from a file in the format of InvestmentPlanner
+	 *
+	 * @param rules - the rules of the projects
+	 * @param filename - the file with the scenarios
+	 */
+	public StochasticInvestment(InvestmentPlanner.Rules rules, String filename) throws IOException {
+		ArrayList<int[]> budgets = new ArrayList<int[]>();
+		ArrayList<int[][]> payouts = new ArrayList<int[][]>();
+		try (InstanceReader in = new InstanceReader(filename)) {
+			while (in.hasNext()) {
+				budgets.add(InvestmentPlanner.readBudget(in));
+				payouts.add(InvestmentPlanner.readPayout(in));
+			}
+			in.printSummary();
+		}
+		if (budgets.isEmpty()) {
+			throw new IllegalArgumentException(filename + " has no scenarios");
+		}
+		init(rules, budgets, payouts);
+	}
+
+	/* Creates the model from scenarios
+	 *
+	 * @param rules - the rules of the projects
+	 * @param budgets - the budget of every year in every scenario
+	 * @param payouts - the payout of every project in every year in every scenario
+	 */
+	public StochasticInvestment(InvestmentPlanner.Rules rules, ArrayList<int[]> budgets, ArrayList<int[][]> payouts) {
+		init(rules, budgets, payouts);
+	}
+
+	// stores the scenarios in flat arrays
+	private void init(InvestmentPlanner.Rules rules, ArrayList<int[]> budgets, ArrayList<int[][]> payouts) {
+		this.rules = rules;
+		this.numberOfScenarios = budgets.size();
+		this.numberOfYears = budgets.get(0).length;
+		this.numberOfProjects = payouts.get(0).length;
+		rules.check(numberOfProjects);
+		this.growth = 1 + rules.getInterest();
+		this.loanGrowth = 1 + rules.getBorrowingRate();
+		if (loanGrowth < growth) {
+			// borrowing to put the money in the bank would give unbounded capital
+			throw new IllegalArgumentException("the borrowing rate is below the interest");
+		}
+		this.budget = new int[numberOfScenarios * numberOfYears];
+		this.payout = new int[numberOfScenarios * numberOfProjects * numberOfYears];
+		for (int s = 0; s < numberOfScenarios; s++) {
+			int[] b = budgets.get(s);
+			int[][] m = payouts.get(s);
+			if (b.length != numberOfYears || m.length != numberOfProjects) {
+				throw new IllegalArgumentException("scenario " + (s + 1) + " has " + m.length + " projects and "
+						+ b.length + " years instead of " + numberOfProjects + " and " + numberOfYears);
+			}
+			System.arraycopy(b, 0, budget, s * numberOfYears, numberOfYears);
+			for (int p = 0; p < numberOfProjects; p++) {
+				if (m[p].length != numberOfYears) {
+					throw new IllegalArgumentException("scenario " + (s + 1) + " has a payout matrix of "
+							+ m[p].length + " years instead of " + numberOfYears);
+				}
+				System.arraycopy(m[p], 0, payout, (s * numberOfProjects + p) * numberOfYears, numberOfYears);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: java [-Dsolver=java] StochasticInvestment rules scenarios [-extensive] [-threads n]");
+			return;
+		}
+		boolean extensive = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].equals("-extensive")) {
+				extensive = true;
+			} else if (args[i].equals("-threads") && i + 1 < args.length) {
+				threads = Math.max(1, Integer.parseInt(args[++i]));
+			}
+		}
+		StochasticInvestment model = new StochasticInvestment(new InvestmentPlanner.Rules(args[0]), args[1]);
+		long startTime = System.currentTimeMillis();
+		boolean solved = extensive ? model.solveExtensive() : model.solveLShaped(threads);
+		if (!solved) {
+			System.out.println("No plan meets the rules");
+			return;
+		}
+		System.out.println("Expected final capital " + model.getObjValue() + " over " + model.numberOfScenarios
+				+ " scenarios, lowest " + model.getLowestCapital());
+		for (int p = 0; p < model.numberOfProjects; p++) {
+			if (model.isChosen(p)) {
+				System.out.println("Percentage invested in project " + (p + 1) + ": " + model.getFraction(p) * 100 + "%");
+			}
+		}
+		if (!extensive) {
+			System.out.println(model.getIterations() + " iterations on " + threads + " threads");
+		}
+		System.out.println("Running time = " + (System.currentTimeMillis() - startTime) + "ms");
+	}
+
+	/* Solves the model with a copy of the second stage for every scenario
+	 *
+	 * @returns true if a plan meets the rules
+	 */
+	public boolean solveExtensive() {
+		LinearSolver solver = LinearSolver.create();
+		try {
+			solver.setQuiet();
+			int[] projectsChosen = solver.addVariables(numberOfProjects, 0, 1, true);
+			int[] percentageInvested = solver.addVariables(numberOfProjects, 0, 1, false);
+			InvestmentPlanner.addRules(solver, rules, projectsChosen, percentageInvested);
+			int[][] bank = new int[numberOfScenarios][];
+			int[][] borrowed = new int[numberOfScenarios][];
+			LinearExpr objective = new LinearExpr();
+			for (int s = 0; s < numberOfScenarios; s++) {
+				bank[s] = solver.addVariables(numberOfYears, 0, Double.POSITIVE_INFINITY, false);
+				borrowed[s] = solver.addVariables(numberOfYears, 0, Double.POSITIVE_INFINITY, false);
+				for (int year = 0; year < numberOfYears; year++) {
+					LinearExpr balance = balance(bank[s], borrowed[s], year);
+					for (int p = 0; p < numberOfProjects; p++) {
+						balance.addTerm(percentageInvested[p], payout[(s * numberOfProjects + p) * numberOfYears + year]);
+					}
+					solver.addEq(balance, -budget[s * numberOfYears + year]);
+				}
+				objective.addTerm(bank[s][numberOfYears - 1], growth / numberOfScenarios);
+				objective.addTerm(borrowed[s][numberOfYears - 1], -loanGrowth / numberOfScenarios);
+			}
+			solver.maximize(objective);
+			if (!solver.solve()) {
+				return false;
+			}
+			this.objValue = solver.getObjValue();
+			storePlan(solver.getValues(projectsChosen), solver.getValues(percentageInvested));
+			this.capital = new double[numberOfScenarios];
+			for (int s = 0; s < numberOfScenarios; s++) {
+				capital[s] = growth * solver.getValue(bank[s][numberOfYears - 1])
+						- loanGrowth * solver.getValue(borrowed[s][numberOfYears - 1]);
+			}
+			return true;
+		} finally {
+			solver.end();
+		}
+	}
+
+	/* Returns the cash flow of a year without the projects: the money of the year before
+	 * with interest, less the loan of the year before with interest, plus the new loan,
+	 * less the money kept in the bank. With the projects it equals minus the budget.
+	 */
+	private LinearExpr balance(int[] bank, int[] borrowed, int year) {
+		LinearExpr balance = new LinearExpr();
+		if (year > 0) {
+			balance.addTerm(bank[year - 1], growth);
+			balance.addTerm(borrowed[year - 1], -loanGrowth);
+		}
+		balance.addTerm(borrowed[year], 1);
+		balance.addTerm(bank[year], -1);
+		return balance;
+	}
+
+	// the second stage of a block of scenarios, with one LP for all of them
+	private class Block implements Callable<double[]> {
+		private int first;
+		private int last;
+		private LinearSolver solver;
+		private int[] balanceRows;
+		// the plan to evaluate, set before the block is called
+		private double[] fraction;
+
+		// creates the block of scenarios first to last - 1
+		Block(int first, int last) {
+			this.first = first;
+			this.last = last;
+			solver = LinearSolver.create();
+			solver.setQuiet();
+			solver.setThreads(1);
+			int[] bank = solver.addVariables(numberOfYears, 0, Double.POSITIVE_INFINITY, false);
+			int[] borrowed = solver.addVariables(numberOfYears, 0, Double.POSITIVE_INFINITY, false);
+			balanceRows = new int[numberOfYears];
+			for (int year = 0; year < numberOfYears; year++) {
+				balanceRows[year] = solver.addEq(balance(bank, borrowed, year), 0);
+			}
+			solver.maximize(new LinearExpr().addTerm(bank[numberOfYears - 1], growth)
+					.addTerm(borrowed[numberOfYears - 1], -loanGrowth));
+		}
+
+		/* Solves the second stage of every scenario of the block for the plan, which is
+		 * only in the right-hand sides: the budget plus the payouts of the plan.
+		 *
+		 * @returns the total capital of the scenarios, followed by its derivative to the
+		 * fraction of every project
+		 */
+		public double[] call() {
+			double[] result = new double[1 + numberOfProjects];
+			for (int s = first; s < last; s++) {
+				int start = s * numberOfProjects * numberOfYears;
+				for (int year = 0; year < numberOfYears; year++) {
+					double rhs = -budget[s * numberOfYears + year];
+					for (int p = 0; p < numberOfProjects; p++) {
+						rhs -= payout[start + p * numberOfYears + year] * fraction[p];
+					}
+					solver.setRowBounds(balanceRows[year], rhs, rhs);
+				}
+				if (!solver.solve()) {
+					throw new IllegalStateException("the second stage of scenario " + (s + 1) + " has no solution");
+				}
+				capital[s] = solver.getObjValue();
+				result[0] += capital[s];
+				for (int year = 0; year < numberOfYears; year++) {
+					double dual = solver.getDual(balanceRows[year]);
+					for (int p = 0; p < numberOfProjects; p++) {
+						result[1 + p] -= dual * payout[start + p * numberOfYears + year];
+					}
+				}
+			}
+			return result;
+		}
+
+		void end() {
+			solver.end();
+		}
+	}
+
+	/* Solves the model with the L-shaped method. The expected capital is a concave
+	 * function of the fractions, so the capital and its derivative at any plan give an
+	 * upper bound on it everywhere: the cut theta <= Q(f') + g (f - f'). The master
+	 * maximises theta under the rules and the cuts so far, which bounds the optimum
+	 * from above, and every plan it gives is evaluated on all scenarios, which gives a
+	 * solution, until the two meet.
+	 *
+	 * @param threads - the number of scenarios that are solved at the same time
+	 *
+	 * @returns true if a plan meets the rules
+	 */
+	public boolean solveLShaped(int threads) {
+		LinearSolver master = LinearSolver.create();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		ArrayList<Block> blocks = new ArrayList<Block>();
+		try {
+			master.setQuiet();
+			int[] projectsChosen = master.addVariables(numberOfProjects, 0, 1, true);
+			int[] percentageInvested = master.addVariables(numberOfProjects, 0, 1, false);
+			InvestmentPlanner.addRules(master, rules, projectsChosen, percentageInvested);
+			int theta = master.addVariable(Double.NEGATIVE_INFINITY, optimisticCapital(), false);
+			master.maximize(new LinearExpr().addTerm(theta, 1));
+			int numberOfBlocks = Math.min(numberOfScenarios, threads * BLOCKS_PER_THREAD);
+			for (int b = 0; b < numberOfBlocks; b++) {
+				blocks.add(new Block((int) ((long) numberOfScenarios * b / numberOfBlocks),
+						(int) ((long) numberOfScenarios * (b + 1) / numberOfBlocks)));
+			}
+			double[] scenarioCapital = new double[numberOfScenarios];
+			this.capital = scenarioCapital;
+			double best = Double.NEGATIVE_INFINITY;
+			double[] bestChosen = null;
+			double[] bestFraction = null;
+			double[] bestCapital = new double[numberOfScenarios];
+			for (iterations = 1; iterations <= MAXIMUM_ITERATIONS; iterations++) {
+				if (bestChosen != null) {
+					master.setStart(projectsChosen, bestChosen);
+				}
+				if (!master.solve()) {
+					return false;
+				}
+				double bound = master.getObjValue();
+				if (bestChosen != null && bound - best <= TOLERANCE * Math.max(1, Math.abs(best))) {
+					break;
+				}
+				double[] planChosen = master.getValues(projectsChosen);
+				double[] planFraction = master.getValues(percentageInvested);
+				double[] value = evaluate(pool, blocks, planFraction);
+				double expected = value[0] / numberOfScenarios;
+				if (expected > best) {
+					best = expected;
+					bestChosen = planChosen;
+					bestFraction = planFraction;
+					System.arraycopy(scenarioCapital, 0, bestCapital, 0, numberOfScenarios);
+				}
+				// theta - g f <= Q(f') - g f'
+				LinearExpr cut = new LinearExpr().addTerm(theta, 1);
+				double rhs = expected;
+				for (int p = 0; p < numberOfProjects; p++) {
+					double slope = value[1 + p] / numberOfScenarios;
+					cut.addTerm(percentageInvested[p], -slope);
+					rhs -= slope * planFraction[p];
+				}
+				master.addLe(cut, rhs);
+			}
+			this.objValue = best;
+			this.capital = bestCapital;
+			storePlan(bestChosen, bestFraction);
+			return true;
+		} finally {
+			pool.shutdown();
+			for (Block block : blocks) {
+				block.end();
+			}
+			master.end();
+		}
+	}
+
+	// returns the total capital of all scenarios at the plan and its derivative to the
+	// fractions, with the blocks solved on the pool
+	private double[] evaluate(ForkJoinPool pool, ArrayList<Block> blocks, double[] plan) {
+		for (Block block : blocks) {
+			block.fraction = plan;
+		}
+		double[] total = new double[1 + numberOfProjects];
+		// the blocks are added up in order, so the result does not depend on the threads
+		for (Future<double[]> future : pool.invokeAll(blocks)) {
+			try {
+				double[] result = future.get();
+				for (int k = 0; k < total.length; k++) {
+					total[k] += result[k];
+				}
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+		return total;
+	}
+
+	// returns an upper bound on the expected capital: every budget and every payout that
+	// is positive in some plan, kept in the bank until the end
+	private double optimisticCapital() {
+		double total = 0;
+		for (int s = 0; s < numberOfScenarios; s++) {
+			double money = 0;
+			for (int year = 0; year < numberOfYears; year++) {
+				money = money * growth + Math.max(0, budget[s * numberOfYears + year]);
+				for (int p = 0; p < numberOfProjects; p++) {
+					money += Math.max(0, payout[(s * numberOfProjects + p) * numberOfYears + year]);
+				}
+			}
+			total += money * growth;
+		}
+		return total / numberOfScenarios;
+	}
+
+	// stores the first stage of the solution
+	private void storePlan(double[] chosenValues, double[] fractionValues) {
+		this.chosen = new boolean[numberOfProjects];
+		this.fraction = fractionValues;
+		for (int p = 0; p < numberOfProjects; p++) {
+			chosen[p] = chosenValues[p] > 0.5;
+		}
+	}
+
+	// returns whether a project is chosen
+	public boolean isChosen(int project) {
+		return this.chosen[project];
+	}
+
+	// returns the fraction invested in a project
+	public double getFraction(int project) {
+		return this.fraction[project];
+	}
+
+	// returns the capital at the end in a scenario
+	public double getCapital(int scenario) {
+		return this.capital[scenario];
+	}
+
+	// returns the lowest capital at the end over the scenarios
+	public double getLowestCapital() {
+		double lowest = Double.POSITIVE_INFINITY;
+		for (double value : capital) {
+			lowest = Math.min(lowest, value);
+		}
+		return lowest;
+	}
+
+	// returns the expected capital at the end
+	public double getObjValue() {
+		return this.objValue;
+	}
+
+	// returns the number of master problems solved by the L-shaped method
+	public int getIterations() {
+		return this.iterations;
+	}
+
+	// returns the number of scenarios
+	public int getNumberOfScenarios() {
+		return this.numberOfScenarios;
+	}
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+  * File: Telemetry.java
+  * Class to record where the time of a run goes: the durations of its phases
+  * (parse, build and the phases the solver reports: presolve, root and
+  * branch), counters such as the number of nodes and simplex iterations, the
+  * memory in use, and the incumbent, bound and gap of branch and bound over
+  * time. All times are measured with System.nanoTime().
+  *
+  * Every phase and every report of the solver is also committed as a JFR
+  * event (solver.Phase and solver.Progress), which costs next to nothing
+  * unless a recording runs, e.g. with -XX:StartFlightRecording. With the
+  * system property telemetry set to a file name without extension, report()
+  * appends the run to name.csv (a row per phase, counter and report of the
+  * solver) and to name.json (one JSON object per run and line), so several
+  * runs of a program end up in the same files.
+  ******************************************************************************/
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+public class Telemetry implements LinearSolver.SolveListener {
+
+	// the JFR event of a phase that has ended
+	@Name("solver.Phase")
+	@Label("Phase")
+	@Category("Solver")
+	static class PhaseEvent extends Event {
+		@Label("Run")
+		String run;
+		@Label("Phase")
+		String phase;
+		@Label("Duration")
+		@Timespan(Timespan.NANOSECONDS)
+		long nanos;
+	}
+
+	// the JFR event of a report of branch and bound
+	@Name("solver.Progress")
+	@Label("Progress")
+	@Category("Solver")
+	static class ProgressEvent extends Event {
+		@Label("Run")
+		String run;
+		@Label("Nodes")
+		long nodes;
+		@Label("Incumbent")
+		double incumbent;
+		@Label("Bound")
+		double bound;
+		@Label("Relative gap")
+		double gap;
+	}
+
+	private String run;
+	private long origin = System.nanoTime();
+	// the total duration of every phase, in the order in which they first ended
+	private LinkedHashMap<String, Long> phases = new LinkedHashMap<String, Long>();
+	private LinkedHashMap<String, Double> counters = new LinkedHashMap<String, Double>();
+	// every report of the solver: the seconds since the start, nodes, incumbent, bound and gap
+	private ArrayList<double[]> progress = new ArrayList<double[]>();
+	// the phase timed with begin, if any
+	private String current;
+	private long currentStart;
+
+	// creates the telemetry of a run, e.g. the name of the instance
+	public Telemetry(String run) {
+		this.run = run;
+	}
+
+	// starts timing a phase, ending the phase timed before
+	public synchronized void begin(String phase) {
+		end();
+		current = phase;
+		currentStart = System.nanoTime();
+	}
+
+	// ends the phase timed with begin
+	public synchronized void end() {
+		if (current != null) {
+			phaseEnded(current, System.nanoTime() - currentStart);
+			current = null;
+		}
+	}
+
+	public synchronized void phaseEnded(String phase, long nanos) {
+		phases.merge(phase, nanos, Long::sum);
+		PhaseEvent event = new PhaseEvent();
+		if (event.isEnabled()) {
+			event.run = run;
+			event.phase = phase;
+			event.nanos = nanos;
+			event.commit();
+		}
+	}
+
+	public synchronized void progress(long nodes, double incumbent, double bound) {
+		double gap = gap(incumbent, bound);
+		progress.add(new double[] { (System.nanoTime() - origin) / 1e9, nodes, incumbent, bound, gap });
+		ProgressEvent event = new ProgressEvent();
+		if (event.isEnabled()) {
+			event.run = run;
+			event.nodes = nodes;
+			event.incumbent = incumbent;
+			event.bound = bound;
+			event.gap = gap;
+			event.commit();
+		}
+	}
+
+	// returns the relative gap between incumbent and bound as cplex defines it
+	private static double gap(double incumbent, double bound) {
+		if (Double.isInfinite(incumbent) || Double.isNaN(incumbent)) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return Math.abs(incumbent - bound) / (1e-10 + Math.abs(incumbent));
+	}
+
+	// records a counter, replacing an earlier value
+	public synchronized void record(String name, double value) {
+		counters.put(name, value);
+	}
+
+	// records the nodes and simplex iterations of the last solve of the solver, added
+	// to those of earlier solves
+	public synchronized void recordSolver(LinearSolver solver) {
+		counters.merge("nodes", (double) solver.getNumberOfNodes(), Double::sum);
+		counters.merge("iterations", (double) solver.getNumberOfIterations(), Double::sum);
+	}
+
+	/* Records the memory in use: the Java heap, and the resident memory of the process,
+	 * which includes the memory cplex allocates outside the heap (Linux only)
+	 */
+	public synchronized void recordMemory() {
+		long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		counters.put("heap_mb", heap / 1048576.0);
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+				if (line.startsWith("VmRSS:")) {
+					String[] tokens = line.trim().split("\\s+");
+					counters.put("resident_mb", Long.parseLong(tokens[1]) / 1024.0);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// no /proc on this system, only the heap is known
+		}
+	}
+
+	// returns the total duration of a phase in ms, or 0 if it never ended
+	public synchronized double getMillis(String phase) {
+		Long nanos = phases.get(phase);
+		return (nanos == null) ? 0 : nanos / 1e6;
+	}
+
+	// returns a counter, or NaN if it was not recorded
+	public synchronized double getCounter(String name) {
+		Double value = counters.get(name);
+		return (value == null) ? Double.NaN : value;
+	}
+
+	// returns the phases and counters on one line, for the console
+	public synchronized String getSummary() {
+		StringBuilder summary = new StringBuilder(run).append(':');
+		for (Map.Entry<String, Long> phase : phases.entrySet()) {
+			summary.append(String.format(Locale.ROOT, " %s %.3f ms", phase.getKey(), phase.getValue() / 1e6));
+		}
+		for (Map.Entry<String, Double> counter : counters.entrySet()) {
+			summary.append(' ').append(counter.getKey()).append(' ').append(format(counter.getValue()));
+		}
+		return summary.toString();
+	}
+
+	/* Appends the run to the files named by the system property telemetry, if it is
+	 * set. Runs on several threads are written one after another.
+	 */
+	public void report() {
+		String name = System.getProperty("telemetry");
+		if (name == null) {
+			return;
+		}
+		end();
+		synchronized (Telemetry.class) {
+			try {
+				writeCsv(name + ".csv");
+				writeJson(name + ".json");
+			} catch (IOException e) {
+				System.out.println("Could not write the telemetry to " + name + ": " + e);
+			}
+		}
+	}
+
+	/* Appends the run to a CSV file, with a header if the file is new: a row per
+	 * phase (its duration in ms), per counter and per report of the solver
+	 */
+	public synchronized void writeCsv(String filename) throws IOException {
+		boolean header = !new File(filename).exists();
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(filename, true)))) {
+			if (header) {
+				out.println("run,kind,name,value,seconds,nodes,incumbent,bound");
+			}
+			String name = ResultSink.csvField(run, ',');
+			for (Map.Entry<String, Long> phase : phases.entrySet()) {
+				out.println(name + ",phase," + phase.getKey() + "," + format(phase.getValue() / 1e6) + ",,,,");
+			}
+			for (Map.Entry<String, Double> counter : counters.entrySet()) {
+				out.println(name + ",counter," + counter.getKey() + "," + format(counter.getValue()) + ",,,,");
+			}
+			for (double[] report : progress) {
+				out.println(name + ",progress,gap," + format(report[4]) + "," + format(report[0]) + ","
+						+ (long) report[1] + "," + format(report[2]) + "," + format(report[3]));
+			}
+		}
+	}
+
+	// appends the run to a file as one JSON object on one line
+	public synchronized void writeJson(String filename) throws IOException {
+		StringBuilder json = new StringBuilder("{\"run\":").append(ResultSink.jsonString(run)).append(",\"phases\":{");
+		String separator = "";
+		for (Map.Entry<String, Long> phase : phases.entrySet()) {
+			json.append(separator).append('"').append(phase.getKey()).append("\":").append(jsonNumber(phase.getValue() / 1e6));
+			separator = ",";
+		}
+		json.append("},\"counters\":{");
+		separator = "";
+		for (Map.Entry<String, Double> counter : counters.entrySet()) {
+			json.append(separator).append('"').append(counter.getKey()).append("\":").append(jsonNumber(counter.getValue()));
+			separator = ",";
+		}
+		json.append("},\"progress\":[");
+		separator = "";
+		for (double[] report : progress) {
+			json.append(separator).append("{\"seconds\":").append(jsonNumber(report[0])).append(",\"nodes\":")
+					.append((long) report[1]).append(",\"incumbent\":").append(jsonNumber(report[2]))
+					.append(",\"bound\":").append(jsonNumber(report[3])).append(",\"gap\":").append(jsonNumber(report[4]))
+					.append('}');
+			separator = ",";
+		}
+		json.append("]}");
+		try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(filename, true)))) {
+			out.println(json);
+		}
+	}
+
+	// returns a whole number as a long, so that it is written without trailing zeros
+	private static Number number(double value) {
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return (long) value;
+		}
+		return value;
+	}
+
+	// returns a number with a decimal point in every locale, without trailing zeros
+	private static String format(double value) {
+		return String.valueOf(number(value));
+	}
+
+	// returns a number for JSON, see ResultSink.jsonValue
+	private static String jsonNumber(double value) {
+		return ResultSink.jsonValue(number(value));
+	}
+}
@@ -0,0 +1,598 @@
+/*******************************************************************************
+  * File: VertexCover.java
+  * Class to solve the minimum weight vertex cover problem of a Graph2 (D0).
+  * The graph is first kernelized with reductions that keep an optimal cover:
+  *  - a vertex on a self loop is in the cover
+  *  - a vertex of weight 0 with edges is in the cover
+  *  - a vertex at least as heavy as its neighbours together is left out, and
+  *    its neighbours are in the cover (this includes isolated vertices)
+  *  - a vertex u of degree 1 lighter than its neighbour v is folded into v:
+  *    v loses the weight of u, and u is in the cover exactly when v is not
+  *  - if u and v are adjacent, every other neighbour of u is a neighbour of v
+  *    and v is not heavier than u, then v is in the cover
+  * The remaining kernel is solved with a LinearSolver: first the LP relaxation, whose
+  * basic solutions are half-integral, so that vertices at 0 and 1 can be fixed
+  * (Nemhauser-Trotter), and then the ILP on the same model with one
+  * constraint per undirected edge, started from a primal-dual 2-approximation.
+  * Vertices are only fixed by an LP that was solved to optimality, and when the
+  * ILP is stopped by a limit its best cover, or else the 2-approximation, is
+  * returned with the status feasible, see getStatus.
+  * Optionally the edge rows are generated lazily, see setLazy.
+  ******************************************************************************/
+
+import java.util.Arrays;
+
+public class VertexCover {
+
+	private static final int UNDECIDED = 0;
+	private static final int IN_COVER = 1;
+	private static final int NOT_IN_COVER = 2;
+	private static final int FOLDED = 3;
+	// vertices of higher degree are not checked for domination
+	private static final int MAXIMUM_DOMINATION_DEGREE = 32;
+
+	private int numberOfNodes;
+	private double[] originalWeight;
+	// the weight of every vertex, lowered by folding
+	private double[] weight;
+	// the neighbours of every vertex, without self loops or repeated edges
+	private CsrGraph adjacency;
+	private int[] status;
+	// the number of undecided neighbours of every vertex
+	private int[] degree;
+	// folds[2k] was folded into folds[2k + 1]
+	private int[] folds;
+	private int numberOfFolds;
+
+	// work list of vertices whose neighbourhood changed
+	private int[] queue;
+	private boolean[] queued;
+	private int queueHead;
+	private int queueSize;
+
+	// whether the edge rows are generated lazily
+	private boolean lazy;
+	// edgeAdded[k] is true if the edge at position k of the adjacency has its row
+	private boolean[] edgeAdded;
+	private int rowsGenerated;
+
+	// statistics of the last solve
+	private int kernelNodes;
+	private int kernelEdges;
+	private int fixedByLP;
+	private double heuristicValue;
+	// optimal if the cover is proven optimal, feasible if the solver was stopped first
+	private String solveStatus;
+	// whether the LP relaxation of the kernel was solved to optimality
+	private boolean lpOptimal;
+
+	// records the phases of the solve, if set
+	private Telemetry telemetry;
+	// the empty solver the kernel is solved on, if set; otherwise every solve creates one
+	private LinearSolver givenSolver;
+	// the results of earlier solves, if set
+	private SolveCache cache;
+
+	// creates the problem for the nodes and edges of the graph
+	public VertexCover(Graph2 graph) {
+		this.numberOfNodes = graph.getNumberOfNodes();
+		int m = graph.getNumberOfEdges();
+		this.originalWeight = new double[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++) {
+			this.originalWeight[graph.getNodeID(i)] = graph.getNodeWeight(i);
+		}
+		this.weight = originalWeight.clone();
+		this.status = new int[numberOfNodes];
+		int[] src = new int[m];
+		int[] dst = new int[m];
+		for (int e = 0; e < m; e++) {
+			src[e] = graph.getFirstNode(e);
+			dst[e] = graph.getSecondNode(e);
+			// the only way to cover a self loop is to take its vertex
+			if (src[e] == dst[e]) {
+				this.status[src[e]] = IN_COVER;
+			}
+		}
+		this.adjacency = CsrGraph.fromEdges(numberOfNodes, m, src, dst, true, true);
+	}
+
+	/* Applies the reductions until none of them applies anymore
+	 *
+	 * @returns the number of vertices left undecided
+	 */
+	public int reduce() {
+		int n = this.numberOfNodes;
+		this.degree = new int[n];
+		this.folds = new int[2 * n];
+		this.queue = new int[n];
+		this.queued = new boolean[n];
+		for (int u = 0; u < n; u++) {
+			if (status[u] == UNDECIDED) {
+				for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+					if (status[adjacency.neighbor(k)] == UNDECIDED) {
+						degree[u]++;
+					}
+				}
+			}
+		}
+		for (int u = 0; u < n; u++) {
+			enqueue(u);
+		}
+		while (queueSize > 0) {
+			int u = dequeue();
+			if (status[u] == UNDECIDED) {
+				reduceVertex(u);
+			}
+		}
+		int undecided = 0;
+		for (int u = 0; u < n; u++) {
+			if (status[u] == UNDECIDED) {
+				undecided++;
+			}
+		}
+		return undecided;
+	}
+
+	// applies the first reduction that fits vertex u
+	private void reduceVertex(int u) {
+		// a free vertex covers its edges at no cost
+		if (weight[u] <= 0 && degree[u] > 0) {
+			decide(u, IN_COVER);
+			return;
+		}
+		double neighbourWeight = 0;
+		int lastNeighbour = -1;
+		for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+			int v = adjacency.neighbor(k);
+			if (status[v] == UNDECIDED) {
+				neighbourWeight += weight[v];
+				lastNeighbour = v;
+			}
+		}
+		// taking all neighbours is never worse than taking u
+		if (weight[u] >= neighbourWeight) {
+			for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+				int v = adjacency.neighbor(k);
+				if (status[v] == UNDECIDED) {
+					decide(v, IN_COVER);
+				}
+			}
+			decide(u, NOT_IN_COVER);
+			return;
+		}
+		// fold a light vertex of degree 1 into its neighbour
+		if (degree[u] == 1) {
+			int v = lastNeighbour;
+			weight[v] -= weight[u];
+			folds[2 * numberOfFolds] = u;
+			folds[2 * numberOfFolds + 1] = v;
+			numberOfFolds++;
+			decide(u, FOLDED);
+			return;
+		}
+		// a neighbour v that is adjacent to all other neighbours of u and not heavier
+		// than u is in the cover
+		if (degree[u] <= MAXIMUM_DOMINATION_DEGREE) {
+			for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+				int v = adjacency.neighbor(k);
+				if (status[v] == UNDECIDED && weight[v] <= weight[u] && dominates(v, u)) {
+					decide(v, IN_COVER);
+					return;
+				}
+			}
+		}
+	}
+
+	// returns whether every undecided neighbour of u other than v is a neighbour of v
+	private boolean dominates(int v, int u) {
+		for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+			int x = adjacency.neighbor(k);
+			if (x != v && status[x] == UNDECIDED && !adjacency.isNeighbor(v, x)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// removes u from the graph with the given status, and revisits its neighbours
+	private void decide(int u, int newStatus) {
+		status[u] = newStatus;
+		for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+			int v = adjacency.neighbor(k);
+			if (status[v] == UNDECIDED) {
+				degree[v]--;
+				enqueue(v);
+			}
+		}
+	}
+
+	private void enqueue(int u) {
+		if (!queued[u]) {
+			queued[u] = true;
+			queue[(queueHead + queueSize) % queue.length] = u;
+			queueSize++;
+		}
+	}
+
+	private int dequeue() {
+		int u = queue[queueHead];
+		queueHead = (queueHead + 1) % queue.length;
+		queueSize--;
+		queued[u] = false;
+		return u;
+	}
+
+	/* Reduces the graph, solves the kernel with the solver and undoes the folds
+	 *
+	 * @returns for every node 1 if it is in the cover and 0 otherwise
+	 */
+	public double[] solve() {
+		String key = (cache != null) ? cacheKey() : null;
+		if (key != null) {
+			double[] result = cache.get(key);
+			if (result != null) {
+				kernelNodes = (int) result[0];
+				kernelEdges = (int) result[1];
+				fixedByLP = (int) result[2];
+				rowsGenerated = (int) result[3];
+				heuristicValue = result[4];
+				// only optimal covers are stored
+				solveStatus = "optimal";
+				lpOptimal = true;
+				return Arrays.copyOfRange(result, 5, result.length);
+			}
+		}
+		if (telemetry != null) {
+			telemetry.begin("reduce");
+		}
+		reduce();
+		if (telemetry != null) {
+			telemetry.end();
+		}
+		// number the undecided vertices of the kernel
+		int[] index = new int[numberOfNodes];
+		Arrays.fill(index, -1);
+		int[] kernel = new int[numberOfNodes];
+		kernelNodes = 0;
+		for (int u = 0; u < numberOfNodes; u++) {
+			if (status[u] == UNDECIDED) {
+				index[u] = kernelNodes;
+				kernel[kernelNodes++] = u;
+			}
+		}
+		kernelEdges = 0;
+		fixedByLP = 0;
+		// the reductions keep an optimal cover, so an empty kernel is solved
+		solveStatus = "optimal";
+		lpOptimal = true;
+		if (kernelNodes > 0) {
+			solveKernel(kernel, index);
+		}
+		// undo the folds in reverse order
+		for (int f = numberOfFolds - 1; f >= 0; f--) {
+			int u = folds[2 * f];
+			int v = folds[2 * f + 1];
+			status[u] = (status[v] == IN_COVER) ? NOT_IN_COVER : IN_COVER;
+		}
+		double[] cover = new double[numberOfNodes];
+		for (int u = 0; u < numberOfNodes; u++) {
+			cover[u] = (status[u] == IN_COVER) ? 1 : 0;
+		}
+		// a cover found by a solve that was stopped by a limit is not the answer for good
+		if (key != null && solveStatus.equals("optimal") && lpOptimal) {
+			double[] result = new double[5 + numberOfNodes];
+			result[0] = kernelNodes;
+			result[1] = kernelEdges;
+			result[2] = fixedByLP;
+			result[3] = rowsGenerated;
+			result[4] = heuristicValue;
+			System.arraycopy(cover, 0, result, 5, numberOfNodes);
+			cache.put(key, result);
+		}
+		return cover;
+	}
+
+	// returns the key of the graph and the options in the cache, before the reductions
+	private String cacheKey() {
+		int m = adjacency.getNumberOfEntries();
+		int[] first = new int[m];
+		int[] second = new int[m];
+		int e = 0;
+		for (int u = 0; u < numberOfNodes; u++) {
+			for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+				first[e] = u;
+				second[e++] = adjacency.neighbor(k);
+			}
+		}
+		// self loops are not in the adjacency, they put their vertex in the cover
+		return new SolveCache.Key("vertexcover").add(lazy).add(originalWeight).add(status).addEdges(first, second, e)
+				.toString();
+	}
+
+	// adds the row of the edge at position k in the row of u to the model
+	private void addEdgeRow(LinearSolver solver, int[] nodes, int[] index, int u, int k) {
+		solver.addGe(edgeRow(nodes, index, u, adjacency.neighbor(k)), 1);
+		edgeAdded[k] = true;
+		rowsGenerated++;
+	}
+
+	// returns the left hand side of the row of edge (u, v)
+	private LinearExpr edgeRow(int[] nodes, int[] index, int u, int v) {
+		LinearExpr constraint = new LinearExpr();
+		constraint.addTerm(nodes[index[u]], 1);
+		constraint.addTerm(nodes[index[v]], 1);
+		return constraint;
+	}
+
+	/* Adds the edge rows that are violated by integer solutions found during branch and
+	 * bound. The solver may call it from several threads, so updating the counters is
+	 * synchronized.
+	 */
+	private class EdgeRows implements LinearSolver.LazyRows {
+		private int[] nodes;
+		private int[] kernel;
+		private int[] index;
+
+		EdgeRows(int[] nodes, int[] kernel, int[] index) {
+			this.nodes = nodes;
+			this.kernel = kernel;
+			this.index = index;
+		}
+
+		public void separate(double[] values, LinearSolver.RowSink sink) {
+			double[] x = new double[nodes.length];
+			for (int i = 0; i < x.length; i++) {
+				x[i] = values[nodes[i]];
+			}
+			for (int i = 0; i < x.length; i++) {
+				int u = kernel[i];
+				for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+					int v = adjacency.neighbor(k);
+					if (v > u && status[v] == UNDECIDED && x[i] + x[index[v]] < 0.5) {
+						synchronized (VertexCover.this) {
+							if (!edgeAdded[k]) {
+								edgeAdded[k] = true;
+								rowsGenerated++;
+							}
+						}
+						sink.addRow(edgeRow(nodes, index, u, v), 1, Double.POSITIVE_INFINITY);
+					}
+				}
+			}
+		}
+	}
+
+	// solves the kernel and sets the status of its vertices
+	private void solveKernel(int[] kernel, int[] index) {
+		LinearSolver solver = (givenSolver != null) ? givenSolver : LinearSolver.create();
+		try {
+			if (telemetry != null) {
+				telemetry.begin("build");
+				solver.setListener(telemetry);
+			}
+			int[] nodes = solver.addVariables(kernelNodes, 0, 1, false);
+			LinearExpr obj = new LinearExpr();
+			for (int i = 0; i < kernelNodes; i++) {
+				obj.addTerm(nodes[i], weight[kernel[i]]);
+			}
+			solver.minimize(obj);
+			// add one constraint per undirected edge of the kernel, in lazy mode only for
+			// the edges of a maximal matching
+			edgeAdded = new boolean[adjacency.getNumberOfEntries()];
+			boolean[] matched = new boolean[kernelNodes];
+			rowsGenerated = 0;
+			for (int i = 0; i < kernelNodes; i++) {
+				int u = kernel[i];
+				for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+					int v = adjacency.neighbor(k);
+					if (v > u && status[v] == UNDECIDED) {
+						kernelEdges++;
+						if (!lazy || (!matched[i] && !matched[index[v]])) {
+							matched[i] = true;
+							matched[index[v]] = true;
+							addEdgeRow(solver, nodes, index, u, k);
+						}
+					}
+				}
+			}
+			if (telemetry != null) {
+				telemetry.end();
+			}
+			// solve the LP relaxation, its basic solutions are half-integral; in lazy
+			// mode violated edges are added until there are none
+			lpOptimal = solver.solve() && solver.isOptimal();
+			double[] lp = lpOptimal ? solver.getValues(nodes) : null;
+			while (lazy && lpOptimal) {
+				int violated = 0;
+				for (int i = 0; i < kernelNodes; i++) {
+					int u = kernel[i];
+					for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+						int v = adjacency.neighbor(k);
+						if (v > u && status[v] == UNDECIDED && !edgeAdded[k] && lp[i] + lp[index[v]] < 1 - 1e-6) {
+							addEdgeRow(solver, nodes, index, u, k);
+							violated++;
+						}
+					}
+				}
+				if (violated == 0) {
+					break;
+				}
+				lpOptimal = solver.solve() && solver.isOptimal();
+				lp = lpOptimal ? solver.getValues(nodes) : null;
+			}
+			// fix the vertices at 0 or 1, some optimal cover agrees with them; this only
+			// holds for an optimal solution of the LP
+			double[] start = new double[kernelNodes];
+			Arrays.fill(start, -1);
+			boolean[] fixed = new boolean[kernelNodes];
+			for (int i = 0; lpOptimal && i < kernelNodes; i++) {
+				if (lp[i] > 1 - 1e-6) {
+					solver.setBounds(nodes[i], 1, 1);
+					start[i] = 1;
+					fixed[i] = true;
+					fixedByLP++;
+				} else if (lp[i] < 1e-6) {
+					solver.setBounds(nodes[i], 0, 0);
+					start[i] = 0;
+					fixed[i] = true;
+					fixedByLP++;
+				}
+			}
+			// cover the remaining edges with the primal-dual 2-approximation
+			primalDual(kernel, index, start, fixed);
+			heuristicValue = 0;
+			for (int i = 0; i < kernelNodes; i++) {
+				heuristicValue += start[i] * weight[kernel[i]];
+			}
+			// turn the variables into binary variables and solve the ILP from the start
+			solver.setInteger(nodes, true);
+			solver.setStart(nodes, start);
+			// edges still missing are added when an integer solution violates them
+			if (lazy) {
+				solver.setLazyRows(new EdgeRows(nodes, kernel, index));
+			}
+			boolean solved = solver.solve();
+			if (telemetry != null) {
+				telemetry.recordSolver(solver);
+			}
+			// without a solution of the ILP the 2-approximation is the cover
+			double[] values = solved ? solver.getValues(nodes) : start;
+			solveStatus = (solved && solver.isOptimal()) ? "optimal" : "feasible";
+			for (int i = 0; i < kernelNodes; i++) {
+				status[kernel[i]] = (values[i] > 0.5) ? IN_COVER : NOT_IN_COVER;
+			}
+		} finally {
+			if (solver != givenSolver) {
+				solver.end();
+			}
+		}
+	}
+
+	/* Completes a partial cover with the primal-dual algorithm of Bar-Yehuda and Even:
+	 * every uncovered edge pays the smaller residual weight of its vertices, and vertices
+	 * that are fully paid join the cover. Afterwards, vertices whose neighbours are all
+	 * in the cover are removed again, heaviest first.
+	 *
+	 * @param start - 1 or 0 for vertices already decided, -1 for the others; on return
+	 * every entry is 1 or 0
+	 * @param fixed - whether a vertex is fixed, fixed vertices are never removed
+	 */
+	private void primalDual(int[] kernel, int[] index, double[] start, boolean[] fixed) {
+		double[] residual = new double[kernelNodes];
+		for (int i = 0; i < kernelNodes; i++) {
+			residual[i] = weight[kernel[i]];
+		}
+		for (int i = 0; i < kernelNodes; i++) {
+			int u = kernel[i];
+			for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+				int v = adjacency.neighbor(k);
+				if (v > u && status[v] == UNDECIDED) {
+					int j = index[v];
+					if (start[i] == 1 || start[j] == 1) {
+						continue;
+					}
+					double paid = Math.min(residual[i], residual[j]);
+					residual[i] -= paid;
+					residual[j] -= paid;
+					if (residual[i] <= 0) {
+						start[i] = 1;
+					}
+					if (residual[j] <= 0) {
+						start[j] = 1;
+					}
+				}
+			}
+		}
+		for (int i = 0; i < kernelNodes; i++) {
+			if (start[i] != 1) {
+				start[i] = 0;
+			}
+		}
+		// remove redundant vertices, heaviest first
+		Integer[] order = new Integer[kernelNodes];
+		for (int i = 0; i < kernelNodes; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(weight[kernel[b]], weight[kernel[a]]));
+		for (int i : order) {
+			if (start[i] == 1 && !fixed[i] && allNeighboursCovered(kernel[i], index, start)) {
+				start[i] = 0;
+			}
+		}
+	}
+
+	// returns whether every undecided neighbour of u is in the cover
+	private boolean allNeighboursCovered(int u, int[] index, double[] start) {
+		for (int k = adjacency.neighborStart(u); k < adjacency.neighborEnd(u); k++) {
+			int v = adjacency.neighbor(k);
+			if (status[v] == UNDECIDED && start[index[v]] != 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// returns the weight of the given cover in the original graph
+	public double coverWeight(double[] cover) {
+		double value = 0;
+		for (int u = 0; u < numberOfNodes; u++) {
+			value += cover[u] * originalWeight[u];
+		}
+		return value;
+	}
+
+	// records the phases of the solve and the progress of the solver in the telemetry
+	public void setTelemetry(Telemetry telemetry) {
+		this.telemetry = telemetry;
+	}
+
+	// solves the kernel on the given empty solver, e.g. one of a SolverPool, which is left
+	// to the caller to clear or end
+	public void setSolver(LinearSolver solver) {
+		this.givenSolver = solver;
+	}
+
+	// looks up the cover of the same graph in the cache before solving, and stores it after
+	// if it is proven optimal
+	public void setCache(SolveCache cache) {
+		this.cache = cache;
+	}
+
+	// generate the edge rows lazily: the LP starts from the edges of a maximal matching
+	// and adds violated edges until there are none, the ILP adds edges in a lazy
+	// constraint callback
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	// returns the number of edge rows in the model after the last solve
+	public int getRowsGenerated() {
+		return this.rowsGenerated;
+	}
+
+	// returns the number of vertices in the kernel that was given to the solver
+	public int getKernelNodes() {
+		return this.kernelNodes;
+	}
+
+	// returns the number of edges in the kernel that was given to the solver
+	public int getKernelEdges() {
+		return this.kernelEdges;
+	}
+
+	// returns the number of kernel vertices fixed by the LP relaxation
+	public int getFixedByLP() {
+		return this.fixedByLP;
+	}
+
+	// returns the weight of the kernel part of the heuristic start (folded weights)
+	public double getHeuristicValue() {
+		return this.heuristicValue;
+	}
+
+	// returns the status of the last solve: optimal, or feasible if the solver was
+	// stopped before proving the cover optimal
+	public String getStatus() {
+		return this.solveStatus;
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+  * File: VertexCoverCheck.java
+  * Checks VertexCover against brute force on random small graphs in the
+  * format of B*.txt, with zero weights, self loops, pendant vertices and
+  * repeated edges, so that every reduction is used. The cover must cover
+  * every edge and have the weight of the best of all subsets of the nodes,
+  * with the edge rows added at once and lazily, and be reported optimal.
+  * Usage: java [-Dsolver=java] VertexCoverCheck [graphs]
+  * Exits with status 1 if any check fails.
+  ******************************************************************************/
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class VertexCoverCheck {
+
+	public static void main(String[] args) throws IOException {
+		int graphs = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		Random random = new Random(11);
+		int checked = 0;
+		int failed = 0;
+		int emptyKernels = 0;
+		for (int t = 0; t < graphs; t++) {
+			int n = 2 + random.nextInt(13);
+			int[] weight = new int[n];
+			for (int i = 0; i < n; i++) {
+				weight[i] = (random.nextInt(8) == 0) ? 0 : 1 + random.nextInt(6);
+			}
+			// sparse graphs leave pendant vertices to fold, dense ones dominated vertices
+			int density = 1 + random.nextInt(6);
+			ArrayList<int[]> edges = new ArrayList<int[]>();
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n; j++) {
+					if (random.nextInt(10) < density) {
+						edges.add(new int[] { i, j });
+					}
+				}
+				if (random.nextInt(20) == 0) {
+					edges.add(new int[] { i, i });
+				}
+			}
+			if (!edges.isEmpty() && random.nextInt(4) == 0) {
+				edges.add(edges.get(random.nextInt(edges.size())).clone());
+			}
+			double best = bestCover(n, weight, edges);
+			byte[] text = graphText(n, weight, edges);
+			for (boolean lazy : new boolean[] { false, true }) {
+				VertexCover problem = new VertexCover(new Graph2(new InstanceReader("graph " + t, text)));
+				problem.setLazy(lazy);
+				double[] cover = problem.solve();
+				if (!lazy && problem.getKernelNodes() == 0) {
+					emptyKernels++;
+				}
+				double value = 0;
+				for (int i = 0; i < n; i++) {
+					value += cover[i] * weight[i];
+				}
+				boolean covers = true;
+				for (int[] edge : edges) {
+					covers &= cover[edge[0]] + cover[edge[1]] >= 1;
+				}
+				checked++;
+				boolean optimal = problem.getStatus().equals("optimal");
+				if (!covers || !optimal || Math.abs(value - best) > 1e-9) {
+					failed++;
+					System.out.println("graph " + t + (lazy ? " (lazy)" : "") + ": weight " + value
+							+ (covers ? "" : " and an edge not covered") + (optimal ? "" : " (not optimal)")
+							+ ", brute force " + best);
+				}
+			}
+		}
+		System.out.println("VertexCover: " + checked + " checked (" + emptyKernels + " graphs reduced to an empty "
+				+ "kernel), " + failed + " failed");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+	// returns the weight of the lightest cover, trying every subset of the nodes
+	private static double bestCover(int n, int[] weight, ArrayList<int[]> edges) {
+		double best = Double.POSITIVE_INFINITY;
+		for (int set = 0; set < (1 << n); set++) {
+			boolean covers = true;
+			for (int[] edge : edges) {
+				if ((set >> edge[0] & 1) == 0 && (set >> edge[1] & 1) == 0) {
+					covers = false;
+					break;
+				}
+			}
+			if (covers) {
+				double value = 0;
+				for (int i = 0; i < n; i++) {
+					if ((set >> i & 1) == 1) {
+						value += weight[i];
+					}
+				}
+				best = Math.min(best, value);
+			}
+		}
+		return best;
+	}
+
+	// returns the graph in the format of B*.txt
+	private static byte[] graphText(int n, int[] weight, ArrayList<int[]> edges) {
+		StringBuilder text = new StringBuilder();
+		text.append(n).append('\n').append(edges.size()).append('\n');
+		for (int i = 0; i < n; i++) {
+			text.append(i).append('\t').append(weight[i]).append('\n');
+		}
+		for (int[] edge : edges) {
+			text.append(edge[0]).append('\t').append(edge[1]).append("\t1\n");
+		}
+		return text.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+}